@@ -0,0 +1,132 @@
+package com.faust0z.BookLibraryAPI.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent checkouts of one book, each by a different user in its own transaction. It compares the single checkout
+ * statement with the flow it replaced, which locks the book's row with SELECT ... FOR UPDATE for the rule checks. The
+ * database is a PostgreSQL started with Testcontainers, so Docker is required.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+public class LoanCheckoutBenchmark {
+
+    private static final int USERS = 100_000;
+    private static final int MAX_ACTIVE_LOANS = 3;
+
+    private PostgreSQLContainer<?> postgres;
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private LoanRepositoryCustomImpl loanRepository;
+
+    private UUID[] userIds;
+    private UUID bookId;
+    private final AtomicInteger nextUser = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:17-alpine");
+        postgres.start();
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(postgres.getJdbcUrl());
+        dataSource.setUsername(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        dataSource.setMaximumPoolSize(32);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        loanRepository = new LoanRepositoryCustomImpl(dataSource);
+
+        jdbcTemplate.update("""
+                INSERT INTO users (id, email, name, password)
+                SELECT gen_random_uuid(), 'reader-' || i || '@example.com', 'Reader ' || i, 'not-a-real-hash'
+                FROM generate_series(1, ?) i
+                """, USERS);
+        userIds = jdbcTemplate.queryForList("SELECT id FROM users", UUID.class).toArray(UUID[]::new);
+        bookId = UUID.randomUUID();
+        // Enough copies to never sell out, every checkout goes through the whole flow
+        jdbcTemplate.update("INSERT INTO books (id, name, author, publication_date, copies) VALUES (?, ?, ?, ?, ?)",
+                bookId, "Hyped Release", "Popular Author", LocalDate.of(2026, 10, 1), 1_000_000_000);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    // Every user can borrow the book again, so each iteration starts from the same state
+    @Setup(Level.Iteration)
+    public void clearLoans() {
+        jdbcTemplate.update("DELETE FROM loans");
+        nextUser.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+        postgres.stop();
+    }
+
+    private UUID nextUser() {
+        return userIds[nextUser.getAndIncrement() % userIds.length];
+    }
+
+    @Benchmark
+    public LoanCheckout singleStatement() {
+        UUID userId = nextUser();
+        LocalDate today = LocalDate.now();
+        return transactionTemplate.execute(status -> loanRepository.checkout(UUID.randomUUID(), userId, bookId, today,
+                today.plusWeeks(2), MAX_ACTIVE_LOANS));
+    }
+
+    @Benchmark
+    public Boolean pessimisticLocking() {
+        UUID userId = nextUser();
+        LocalDate today = LocalDate.now();
+        return transactionTemplate.execute(status -> {
+            int copies = jdbcTemplate.queryForObject("SELECT copies FROM books WHERE id = ? FOR UPDATE", Integer.class,
+                    bookId);
+            int activeLoans = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM loans WHERE user_id = ? AND return_date IS NULL", Integer.class, userId);
+            boolean hasBook = jdbcTemplate.queryForObject("""
+                    SELECT EXISTS (SELECT 1 FROM loans WHERE user_id = ? AND book_id = ? AND return_date IS NULL)
+                    """, Boolean.class, userId, bookId);
+            if (copies <= 0 || hasBook || activeLoans >= MAX_ACTIVE_LOANS) return false;
+
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.update("UPDATE books SET copies = copies - 1, last_modified_at = ? WHERE id = ?", now, bookId);
+            jdbcTemplate.update("""
+                    INSERT INTO loans (id, loan_date, due_date, user_id, book_id, created_at, last_modified_at)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    """, UUID.randomUUID(), today, today.plusWeeks(2), userId, bookId, now, now);
+            return true;
+        });
+    }
+}
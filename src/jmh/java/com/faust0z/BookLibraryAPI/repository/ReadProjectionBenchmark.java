@@ -0,0 +1,164 @@
+package com.faust0z.BookLibraryAPI.repository;
+
+import com.faust0z.BookLibraryAPI.BookLibraryAPIApplication;
+import com.faust0z.BookLibraryAPI.dto.AdminLoanDTO;
+import com.faust0z.BookLibraryAPI.dto.AdminUserDTO;
+import com.faust0z.BookLibraryAPI.dto.BookDTO;
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.entity.LoanEntity;
+import com.faust0z.BookLibraryAPI.entity.UserEntity;
+import com.faust0z.BookLibraryAPI.mapper.BookMapper;
+import com.faust0z.BookLibraryAPI.mapper.LoanMapper;
+import com.faust0z.BookLibraryAPI.mapper.UserMapper;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The list reads before and after they selected DTOs directly: entities loaded into the persistence context and mapped
+ * with MapStruct, against the constructor expressions the repositories use now. Each read runs in the transaction its
+ * service used to run it in. Run it with {@code -prof gc} to compare the allocation per read. The application runs
+ * against a PostgreSQL started with Testcontainers, so Docker is required.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-Dlogback.configurationFile=logback-jmh.xml"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class ReadProjectionBenchmark {
+
+    private static final int USERS = 2_000;
+    private static final int BOOKS = 5_000;
+    private static final int LOANS = 20_000;
+    // Same as BookService.getBooks with its default page size, plus the extra row telling if there is a next page
+    private static final int PAGE_ROWS = 21;
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext context;
+
+    private BookRepository bookRepository;
+    private UserRepository userRepository;
+    private LoanRepository loanRepository;
+    private BookMapper bookMapper;
+    private UserMapper userMapper;
+    private LoanMapper loanMapper;
+    private EntityManager entityManager;
+    private TransactionTemplate transaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:17-alpine");
+        postgres.start();
+        context = new SpringApplicationBuilder(BookLibraryAPIApplication.class).run(
+                "--spring.datasource.url=" + postgres.getJdbcUrl(),
+                "--spring.datasource.username=" + postgres.getUsername(),
+                "--spring.datasource.password=" + postgres.getPassword(),
+                "--spring.flyway.enabled=true",
+                "--spring.cache.type=none",
+                "--spring.data.redis.repositories.enabled=false",
+                "--server.port=0");
+
+        bookRepository = context.getBean(BookRepository.class);
+        userRepository = context.getBean(UserRepository.class);
+        loanRepository = context.getBean(LoanRepository.class);
+        bookMapper = context.getBean(BookMapper.class);
+        userMapper = context.getBean(UserMapper.class);
+        loanMapper = context.getBean(LoanMapper.class);
+        entityManager = context.getBean(EntityManager.class);
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        transaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("""
+                INSERT INTO users (id, email, name, password)
+                SELECT gen_random_uuid(), 'reader-' || i || '@example.com', 'Reader ' || i, 'not-a-real-hash'
+                FROM generate_series(1, ?) i
+                """, USERS);
+        jdbcTemplate.update("""
+                INSERT INTO books (id, name, author, publication_date, copies)
+                SELECT gen_random_uuid(), 'Book ' || i, 'Author ' || i % 500, DATE '1950-01-01' + i, 5
+                FROM generate_series(1, ?) i
+                """, BOOKS);
+        jdbcTemplate.update("""
+                WITH u AS (SELECT array_agg(id ORDER BY id) AS ids FROM users),
+                     b AS (SELECT array_agg(id ORDER BY id) AS ids FROM books)
+                INSERT INTO loans (id, loan_date, due_date, return_date, user_id, book_id)
+                SELECT gen_random_uuid(), DATE '2020-01-01' + i % 2000, DATE '2020-01-15' + i % 2000,
+                       CASE WHEN i % 10 = 0 THEN NULL ELSE DATE '2020-01-08' + i % 2000 END,
+                       u.ids[1 + i % array_length(u.ids, 1)], b.ids[1 + (i * 7) % array_length(b.ids, 1)]
+                FROM generate_series(1, ?) i, u, b
+                """, LOANS);
+        jdbcTemplate.execute("ANALYZE users, books, loans");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public List<BookDTO> bookPageProjection() {
+        return readOnlyTransaction.execute(status ->
+                bookRepository.findPage(null, null, null, null, PageRequest.of(0, PAGE_ROWS)));
+    }
+
+    @Benchmark
+    public List<BookDTO> bookPageEntities() {
+        return readOnlyTransaction.execute(status -> bookMapper.toDtoList(entityManager
+                .createQuery("SELECT b FROM BookEntity b ORDER BY b.id", BookEntity.class)
+                .setMaxResults(PAGE_ROWS)
+                .getResultList()));
+    }
+
+    @Benchmark
+    public List<AdminUserDTO> allUsersProjection() {
+        return readOnlyTransaction.execute(status -> userRepository.findAllAdminDtos());
+    }
+
+    @Benchmark
+    public List<AdminUserDTO> allUsersEntities() {
+        return readOnlyTransaction.execute(status -> entityManager
+                .createQuery("SELECT u FROM UserEntity u", UserEntity.class)
+                .getResultList().stream()
+                .map(userMapper::toAdminDto)
+                .toList());
+    }
+
+    @Benchmark
+    public List<AdminLoanDTO> allLoansProjection() {
+        return readOnlyTransaction.execute(status -> loanRepository.findAllAdminDtos());
+    }
+
+    // LoanService.getAllLoans was a read-write transaction, so the loaded entities were dirty checked on commit
+    @Benchmark
+    public List<AdminLoanDTO> allLoansEntities() {
+        return transaction.execute(status -> loanMapper.toAdminDtoList(entityManager
+                .createQuery("SELECT l FROM LoanEntity l JOIN FETCH l.user JOIN FETCH l.book", LoanEntity.class)
+                .getResultList()));
+    }
+}
@@ -0,0 +1,93 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.BookSuggestionDTO;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency of an autocomplete lookup, as sent on every keystroke. Sample time mode reports the percentiles, the p99 of
+ * {@code suggest} has to stay under 1 ms. Every prefix of a few real titles and authors is looked up in turn, from one
+ * char to the whole text, while other threads do the same.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+public class BookSuggestionIndexBenchmark {
+
+    private static final String[] WORDS = {"the", "dark", "tower", "night", "shining", "winter", "garden", "house",
+            "river", "silent", "city", "last", "king", "queen", "stone", "glass", "shadow", "fire", "ocean", "storm",
+            "secret", "lost", "empire", "dream", "road", "war", "peace", "song", "light", "wolf"};
+    private static final String[] NAMES = {"Stephen", "Ursula", "Gabriel", "Jorge", "Isabel", "Julio", "Haruki", "Toni",
+            "Agatha", "Arthur", "Mary", "Leo", "Clarice", "Octavia", "Terry", "Neil"};
+    private static final String[] SURNAMES = {"King", "Le Guin", "García Márquez", "Borges", "Allende", "Cortázar",
+            "Murakami", "Morrison", "Christie", "Clarke", "Shelley", "Tolstoy", "Lispector", "Butler", "Pratchett",
+            "Gaiman", "Sábato", "Ocampo", "Puig", "Piglia"};
+    private static final int LIMIT = 10;
+
+    @Param({"100000"})
+    public int books;
+
+    private BookSuggestionIndex index;
+    private String[] prefixes;
+    private final AtomicInteger nextPrefix = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        List<BookSnapshot> catalog = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            String name = title(random) + " " + i;
+            String author = NAMES[random.nextInt(NAMES.length)] + " " + SURNAMES[random.nextInt(SURNAMES.length)]
+                    + " " + random.nextInt(2_000);
+            catalog.add(new BookSnapshot(UUID.randomUUID(), name, author, null, 1));
+        }
+        // Same path as books created after startup, the repository is not needed
+        index = new BookSuggestionIndex(null);
+        index.onBooksChanged(new BooksChangedEvent(catalog));
+
+        List<String> typed = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            BookSnapshot book = catalog.get(random.nextInt(books));
+            for (String text : List.of(book.name(), book.author())) {
+                for (int length = 1; length <= text.length(); length++) typed.add(text.substring(0, length));
+            }
+        }
+        prefixes = typed.toArray(String[]::new);
+    }
+
+    private static String title(Random random) {
+        int words = 1 + random.nextInt(4);
+        StringBuilder title = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+        for (int i = 1; i < words; i++) title.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        return Character.toUpperCase(title.charAt(0)) + title.substring(1);
+    }
+
+    @Benchmark
+    public List<BookSuggestionDTO> suggest() {
+        return index.suggest(prefixes[Math.floorMod(nextPrefix.getAndIncrement(), prefixes.length)], LIMIT);
+    }
+}
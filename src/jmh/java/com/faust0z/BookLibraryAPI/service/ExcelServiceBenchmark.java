@@ -0,0 +1,81 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Throughput of the Excel export and import over synthetic catalogs. Run it with the {@code benchmark} Maven profile,
+ * which also enables the gc profiler (allocation rate) and {@link PeakHeapProfiler}.
+ * The heap is fixed, so peak heap results are comparable between runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Dlogback.configurationFile=logback-jmh.xml"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class ExcelServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private ExcelService excelService;
+    private List<BookEntity> books;
+    private byte[] workbook;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        excelService = new ExcelService();
+        // Seeded, so every run measures the same catalog
+        Random random = new Random(42);
+        books = IntStream.range(0, rows).mapToObj(i -> {
+            BookEntity book = new BookEntity();
+            book.setName("Book " + i + " " + Long.toHexString(random.nextLong()));
+            book.setAuthor("Author " + random.nextInt(rows / 10 + 1));
+            book.setPublicationDate(LocalDate.of(1900, 1, 1).plusDays(random.nextInt(45_000)));
+            book.setCopies(random.nextInt(20));
+            return book;
+        }).toList();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        excelService.exportBooksToExcel(books.stream(), out);
+        workbook = out.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        excelService.shutdown();
+    }
+
+    @Benchmark
+    public void export() {
+        // Discards the bytes, so the measure does not include growing an in-memory copy of the file
+        excelService.exportBooksToExcel(books.stream(), OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public List<BookEntity> importBooks() {
+        return excelService.importBooksFromExcel(new ByteArrayInputStream(workbook));
+    }
+}
@@ -0,0 +1,68 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention on the copies of a single hot book, as held by {@link HotBookLedger}. Every thread takes a copy and gives
+ * it back, so the book never sells out. One stripe is the same as a single shared counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Threads(Threads.MAX)
+public class StripedCounterBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int stripes;
+
+    private StripedCounter copies;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        copies = new StripedCounter(stripes);
+        copies.set(stripes * 1_000);
+    }
+
+    @Benchmark
+    public boolean reserveAndCancel() {
+        boolean taken = copies.tryTake();
+        if (taken) copies.give();
+        return taken;
+    }
+
+    // Only one copy per stripe is left, threads keep moving to other stripes
+    @Benchmark
+    public boolean reserveAndCancelNearlySoldOut(NearlySoldOut state) {
+        boolean taken = state.copies.tryTake();
+        if (taken) state.copies.give();
+        return taken;
+    }
+
+    @State(Scope.Benchmark)
+    public static class NearlySoldOut {
+        private StripedCounter copies;
+
+        @Setup(Level.Trial)
+        public void setUp(StripedCounterBenchmark benchmark) {
+            copies = new StripedCounter(benchmark.stripes);
+            copies.set(benchmark.stripes);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.faust0z.BookLibraryAPI.config;
+
+import org.apache.poi.openxml4j.util.ZipSecureFile;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Apache POI limits for the uploaded spreadsheets. {@link ZipSecureFile} keeps them in static fields, so they apply to
+ * every workbook opened in the JVM, not only to this application's. They are set once, when the class is loaded.
+ */
+@Configuration
+public class PoiConfig {
+
+    // Upper bound for any uncompressed part of an uploaded file, also guards against zip bombs
+    static final long MAX_ENTRY_SIZE = 256L * 1024 * 1024;
+
+    static {
+        ZipSecureFile.setMaxEntrySize(MAX_ENTRY_SIZE);
+    }
+}
@@ -2,15 +2,31 @@ package com.faust0z.BookLibraryAPI.controller;
 
 import com.faust0z.BookLibraryAPI.dto.AdminBookDTO;
 import com.faust0z.BookLibraryAPI.dto.BookDTO;
+import com.faust0z.BookLibraryAPI.dto.BookFileFormat;
+import com.faust0z.BookLibraryAPI.dto.BookPageDTO;
+import com.faust0z.BookLibraryAPI.dto.BookSuggestionDTO;
+import com.faust0z.BookLibraryAPI.dto.BulkBookRequestDTO;
+import com.faust0z.BookLibraryAPI.dto.BulkBookResultDTO;
+import com.faust0z.BookLibraryAPI.dto.CatalogFacetsDTO;
 import com.faust0z.BookLibraryAPI.dto.CreateBookDTO;
+import com.faust0z.BookLibraryAPI.dto.ImportJobDTO;
 import com.faust0z.BookLibraryAPI.dto.UpdateBookDTO;
+import com.faust0z.BookLibraryAPI.service.BookAvailabilityFeed;
+import com.faust0z.BookLibraryAPI.service.BookAvailabilityService;
+import com.faust0z.BookLibraryAPI.service.BookImportService;
 import com.faust0z.BookLibraryAPI.service.BookService;
+import com.faust0z.BookLibraryAPI.service.CatalogExportCache;
+import com.faust0z.BookLibraryAPI.service.CatalogFacetsService;
+import com.faust0z.BookLibraryAPI.service.CatalogVersionService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -20,13 +36,21 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @RestController
@@ -35,34 +59,165 @@ import java.util.UUID;
 public class BookController {
 
     private final BookService bookService;
+    private final CatalogVersionService catalogVersionService;
+    private final CatalogFacetsService catalogFacetsService;
+    private final BookAvailabilityService bookAvailabilityService;
+    private final BookAvailabilityFeed bookAvailabilityFeed;
+    private final BookImportService bookImportService;
+    private final CatalogExportCache catalogExportCache;
 
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, CatalogVersionService catalogVersionService,
+                          CatalogFacetsService catalogFacetsService, BookAvailabilityService bookAvailabilityService,
+                          BookAvailabilityFeed bookAvailabilityFeed, BookImportService bookImportService,
+                          CatalogExportCache catalogExportCache) {
         this.bookService = bookService;
+        this.catalogVersionService = catalogVersionService;
+        this.catalogFacetsService = catalogFacetsService;
+        this.bookAvailabilityService = bookAvailabilityService;
+        this.bookAvailabilityFeed = bookAvailabilityFeed;
+        this.bookImportService = bookImportService;
+        this.catalogExportCache = catalogExportCache;
     }
 
-    @Operation(summary = "Get all books")
+    @Operation(
+            summary = "Get a page of books",
+            description = "Books are paginated with a cursor. Pass the returned nextCursor to get the following page. " +
+                    "Can filter by author and publication year."
+    )
     @GetMapping
-    public ResponseEntity<List<BookDTO>> getAllBooks() {
-        List<BookDTO> books = bookService.getAllBooks();
+    public ResponseEntity<BookPageDTO> getBooks(
+            @Parameter(description = "Exact author name", example = "Stephen King")
+            @RequestParam(name = "author", required = false) String author,
+            @Parameter(description = "Publication year", example = "1986")
+            @RequestParam(name = "year", required = false) Integer year,
+            @Parameter(description = "The nextCursor of the previous page")
+            @RequestParam(name = "cursor", required = false) UUID cursor,
+            @Parameter(description = "Page size (max 100)", example = "20")
+            @RequestParam(name = "size", required = false) Integer size,
+            WebRequest request) {
+        // Checked before reading anything, so unchanged catalogs are answered with a 304 after one Redis round trip
+        String eTag = catalogVersionService.getCatalogETag();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+
+        // Cached pages only hold metadata, the copies are merged in fresh
+        BookPageDTO books = bookAvailabilityService.withAvailability(bookService.getBooks(author, year, cursor, size));
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(books);
+    }
+
+    @Operation(
+            summary = "Get the whole book catalog",
+            description = "Streams every book as a JSON array. Prefer the paginated endpoint unless the full catalog is needed."
+    )
+    @GetMapping("/all")
+    public ResponseEntity<StreamingResponseBody> getAllBooks() {
+        StreamingResponseBody body = bookService::writeAllBooksAsJson;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @Operation(
+            summary = "Search books by title and author",
+            description = "Full-text search over the book's title and author. Results are ordered by relevance."
+    )
+    @GetMapping("/search")
+    public ResponseEntity<List<BookDTO>> searchBooks(
+            @Parameter(description = "Search terms. Supports quoted phrases, 'or' and '-' to exclude words", example = "king shining")
+            @RequestParam(name = "q") String query,
+            @Parameter(description = "Zero-based page number", example = "0")
+            @RequestParam(name = "page", required = false) Integer page,
+            @Parameter(description = "Page size (max 100)", example = "20")
+            @RequestParam(name = "size", required = false) Integer size) {
+        List<BookDTO> books = bookService.searchBooks(query, page, size);
         return ResponseEntity.ok(books);
     }
 
+    @Operation(
+            summary = "Get catalog statistics by author and publication date",
+            description = "Amount of books and available copies per author, publication decade and publication year."
+    )
+    @GetMapping("/facets")
+    public ResponseEntity<CatalogFacetsDTO> getFacets(
+            @Parameter(description = "Maximum amount of authors to return, the ones with the most books first", example = "50")
+            @RequestParam(name = "authorLimit", required = false) Integer authorLimit,
+            WebRequest request) {
+        String eTag = catalogVersionService.getCatalogETag();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(catalogFacetsService.getFacets(authorLimit));
+    }
+
+    @Operation(
+            summary = "Subscribe to changes in the available copies of books",
+            description = "Server-Sent Events stream. Every time loans, returns or book edits are committed, an 'availability' " +
+                    "event is sent with a JSON array of {bookId, copies}. Use it instead of polling a book's copies."
+    )
+    @GetMapping(value = "/availability", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailability() {
+        return bookAvailabilityFeed.subscribe();
+    }
+
+    @Operation(
+            summary = "Autocomplete book titles and authors",
+            description = "Returns titles and authors starting with the given text, or containing a word that does."
+    )
+    @GetMapping("/suggest")
+    public ResponseEntity<List<BookSuggestionDTO>> suggestBooks(
+            @Parameter(description = "The text typed so far", example = "steph")
+            @RequestParam(name = "q") String query,
+            @Parameter(description = "Maximum amount of suggestions (max 20)", example = "10")
+            @RequestParam(name = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(bookService.suggestBooks(query, limit));
+    }
+
     @Operation(summary = "Get a single book by ID")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Book found successfully"),
+            @ApiResponse(responseCode = "304", description = "Book not modified since the given ETag"),
             @ApiResponse(responseCode = "404", description = "Book not found (Invalid ID)")
     })
     @GetMapping("/{bookId}")
-    public ResponseEntity<BookDTO> getBookById(@PathVariable UUID bookId) {
-        BookDTO book = bookService.getBookbyId(bookId);
-        return ResponseEntity.ok(book);
+    public ResponseEntity<BookDTO> getBookById(@PathVariable UUID bookId, WebRequest request) {
+        // A missing book has no validators, the service reports it as not found
+        Optional<LocalDateTime> lastModifiedAt = catalogVersionService.getBookLastModifiedAt(bookId);
+        String eTag = lastModifiedAt.map(modifiedAt -> catalogVersionService.getBookETag(bookId, modifiedAt))
+                .orElse(null);
+        if (eTag != null && request.checkNotModified(eTag, toEpochMilli(lastModifiedAt.get()))) {
+            return null;
+        }
+
+        BookDTO book = bookAvailabilityService.withAvailability(bookService.getBookbyId(bookId));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate());
+        if (eTag != null) {
+            // The cached book is not evicted on loans or imports, so its lastModifiedAt may be older than the row's
+            LocalDateTime modifiedAt = lastModifiedAt.get();
+            book.setLastModifiedAt(modifiedAt);
+            response.eTag(eTag).lastModified(modifiedAt.atZone(ZoneId.systemDefault()));
+        }
+        return response.body(book);
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
     @Operation(summary = "Post a new book. Requires ADMIN role.")
     @ApiResponses({
             @ApiResponse(responseCode = "201", description = "Book created successfully"),
             @ApiResponse(responseCode = "403", description = "Forbidden. User does not have ADMIN privileges."),
-            @ApiResponse(responseCode = "400", description = "Invalid input (e.g., future date, negative copies)")
+            @ApiResponse(responseCode = "400", description = "Invalid input (e.g., future date, negative copies)"),
+            @ApiResponse(responseCode = "409", description = "A book with the same name, author and publication date exists")
     })
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping
@@ -76,7 +231,8 @@ public class BookController {
             @ApiResponse(responseCode = "200", description = "Book updated successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid input (e.g., future date, negative copies)"),
             @ApiResponse(responseCode = "403", description = "Forbidden. User does not have ADMIN privileges."),
-            @ApiResponse(responseCode = "404", description = "Book not found (Invalid ID)")
+            @ApiResponse(responseCode = "404", description = "Book not found (Invalid ID)"),
+            @ApiResponse(responseCode = "409", description = "A book with the same name, author and publication date exists")
     })
     @PreAuthorize("hasRole('ADMIN')")
     @PatchMapping("/{bookId}")
@@ -85,32 +241,150 @@ public class BookController {
         return ResponseEntity.ok(updatedBook);
     }
 
-    @Operation(summary = "Export all books to Excel. Requires ADMIN role.")
+    @Operation(
+            summary = "Create and update many books at once. Requires ADMIN role.",
+            description = "Everything is saved in a single transaction. If any book is invalid or not found, nothing is saved."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Books saved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid input (e.g., future date, negative copies)"),
+            @ApiResponse(responseCode = "403", description = "Forbidden. User does not have ADMIN privileges."),
+            @ApiResponse(responseCode = "404", description = "A book to update was not found (Invalid ID)"),
+            @ApiResponse(responseCode = "409", description = "A book with the same name, author and publication date exists")
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkBookResultDTO> bulkSaveBooks(@Valid @RequestBody BulkBookRequestDTO bulkDTO) {
+        BulkBookResultDTO result = bookService.bulkSaveBooks(bulkDTO);
+        return ResponseEntity.ok(result);
+    }
+
+    @Operation(
+            summary = "Export all books. Requires ADMIN role.",
+            description = "The format is taken from the format parameter, or else from the Accept header: " +
+                    "Excel (the default), CSV (text/csv) or newline delimited JSON (application/x-ndjson). " +
+                    "Exports are generated once per catalog version and format, then served from disk. " +
+                    "A single byte range can be requested to resume an interrupted download, " +
+                    "an export that is not generated yet is always sent whole."
+    )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Books exported successfully"),
-            @ApiResponse(responseCode = "403", description = "Forbidden. User does not have ADMIN privileges.")
+            @ApiResponse(responseCode = "206", description = "The requested byte range of the export"),
+            @ApiResponse(responseCode = "304", description = "The catalog did not change since the given ETag"),
+            @ApiResponse(responseCode = "403", description = "Forbidden. User does not have ADMIN privileges."),
+            @ApiResponse(responseCode = "416", description = "The requested range is past the end of the export")
     })
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportBooks() {
-        byte[] excelContent = bookService.exportBooksToExcel();
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @Parameter(description = "The file format, overrides the Accept header", example = "CSV")
+            @RequestParam(name = "format", required = false) BookFileFormat format,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(name = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(name = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            WebRequest request) {
+        BookFileFormat fileFormat = format != null ? format : BookFileFormat.fromAcceptHeader(accept);
+        // Read before generating, so a write racing with the export can only make the file newer than its ETag
+        String version = catalogVersionService.getCatalogVersionKey();
+        String eTag = catalogExportCache.getETag(fileFormat, version);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=books_inventory.xlsx")
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .body(excelContent);
+        CatalogExportCache.CachedExport export = catalogExportCache.findExport(fileFormat, version).orElse(null);
+        if (export == null) {
+            // Generated inside the async body, so no request thread waits for the whole catalog to be written. Its size
+            // is unknown until then, so it is sent whole without a Content-Length, even when a range was requested
+            return exportResponse(ResponseEntity.ok(), fileFormat, eTag)
+                    .body(out -> {
+                        CatalogExportCache.CachedExport generated = catalogExportCache.getExport(fileFormat, version);
+                        generated.transferTo(out, 0, generated.size());
+                    });
+        }
+
+        long size = export.size();
+        HttpRange byteRange = singleByteRange(range, ifRange, eTag);
+        if (byteRange == null) {
+            return exportResponse(ResponseEntity.ok(), fileFormat, eTag)
+                    .contentLength(size)
+                    .body(out -> export.transferTo(out, 0, size));
+        }
+
+        long start = byteRange.getRangeStart(size);
+        if (start >= size) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .build();
+        }
+        long end = byteRange.getRangeEnd(size);
+        return exportResponse(ResponseEntity.status(HttpStatus.PARTIAL_CONTENT), fileFormat, eTag)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size)
+                .contentLength(end - start + 1)
+                .body(out -> export.transferTo(out, start, end - start + 1));
     }
 
-    @Operation(summary = "Import books from Excel. Requires ADMIN role.")
+    private ResponseEntity.BodyBuilder exportResponse(ResponseEntity.BodyBuilder response, BookFileFormat format,
+                                                      String eTag) {
+        return response
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=books_inventory." + format.getExtension())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                // Without the format parameter the body depends on the Accept header
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(format.toMediaType());
+    }
+
+    // Only a single range is served. Malformed, multiple or outdated (If-Range) ranges get the whole file, as RFC 9110 allows
+    private HttpRange singleByteRange(String range, String ifRange, String eTag) {
+        if (range == null || (ifRange != null && !ifRange.equals(eTag))) return null;
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? ranges.getFirst() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Operation(
+            summary = "Import books from an Excel, CSV or NDJSON file. Requires ADMIN role.",
+            description = "The format is taken from the format parameter, or else from the file's extension. " +
+                    "The file is imported in the background. Poll the returned job to follow its progress. " +
+                    "Invalid rows are skipped and reported in the job. In INSERT mode every row is a new book and a chunk " +
+                    "containing an existing one fails. UPSERT mode matches books on title, author and publication date " +
+                    "and only updates their copies, so the same file can be imported again."
+    )
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Books imported successfully"),
-            @ApiResponse(responseCode = "400", description = "Invalid Excel file or data"),
-            @ApiResponse(responseCode = "403", description = "Forbidden. User does not have ADMIN privileges.")
+            @ApiResponse(responseCode = "202", description = "Import job queued"),
+            @ApiResponse(responseCode = "403", description = "Forbidden. User does not have ADMIN privileges."),
+            @ApiResponse(responseCode = "413", description = "The file is larger than the maximum upload size (100 MB by default)"),
+            @ApiResponse(responseCode = "503", description = "Too many imports in progress")
     })
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<String> importBooks(@RequestParam("file") MultipartFile file) throws IOException {
-        int count = bookService.importBooksFromExcel(file.getInputStream());
-        return ResponseEntity.ok("Successfully imported " + count + " books.");
+    public ResponseEntity<ImportJobDTO> importBooks(
+            @RequestParam("file") MultipartFile file,
+            @Parameter(description = "How rows are saved", example = "UPSERT")
+            @RequestParam(name = "mode", defaultValue = "INSERT") ImportJobDTO.Mode mode,
+            @Parameter(description = "The file format, overrides the file's extension", example = "CSV")
+            @RequestParam(name = "format", required = false) BookFileFormat format) throws IOException {
+        BookFileFormat fileFormat = format != null ? format : BookFileFormat.fromFilename(file.getOriginalFilename());
+        ImportJobDTO job = bookImportService.submit(file.getInputStream(), mode, fileFormat);
+        return ResponseEntity.accepted()
+                .location(URI.create("/books/import/" + job.getJobId()))
+                .body(job);
+    }
+
+    @Operation(summary = "Get the progress of an import job. Requires ADMIN role.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Job found successfully"),
+            @ApiResponse(responseCode = "403", description = "Forbidden. User does not have ADMIN privileges."),
+            @ApiResponse(responseCode = "404", description = "Job not found or finished more than an hour ago")
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<ImportJobDTO> getImportJob(@PathVariable UUID jobId) {
+        return ResponseEntity.ok(bookImportService.getJob(jobId));
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,12 @@
 package com.faust0z.BookLibraryAPI.controller;
 
 import com.faust0z.BookLibraryAPI.dto.AdminLoanDTO;
+import com.faust0z.BookLibraryAPI.dto.BatchCheckoutRequestDTO;
+import com.faust0z.BookLibraryAPI.dto.BatchLoanResultDTO;
+import com.faust0z.BookLibraryAPI.dto.BatchReturnRequestDTO;
 import com.faust0z.BookLibraryAPI.dto.CreateLoanDTO;
 import com.faust0z.BookLibraryAPI.dto.LoanDTO;
+import com.faust0z.BookLibraryAPI.service.AuditExportService;
 import com.faust0z.BookLibraryAPI.service.LoanService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -10,7 +14,9 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -23,6 +29,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.UUID;
@@ -33,9 +40,11 @@ import java.util.UUID;
 public class LoanController {
 
     private final LoanService loanService;
+    private final AuditExportService auditExportService;
 
-    public LoanController(LoanService loanService) {
+    public LoanController(LoanService loanService, AuditExportService auditExportService) {
         this.loanService = loanService;
+        this.auditExportService = auditExportService;
     }
 
     @Operation(
@@ -69,6 +78,26 @@ public class LoanController {
         return ResponseEntity.ok(loan);
     }
 
+    @Operation(
+            summary = "Export books, users and the loan history to Excel for auditors. Requires ADMIN role.",
+            description = "Writes one workbook with a Books, a Users and a Loans sheet. Loans include the user's " +
+                    "name and email and the book's title and author. All sheets reflect the same point in time."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Workbook exported successfully"),
+            @ApiResponse(responseCode = "403", description = "Forbidden. User does not have ADMIN privileges.")
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/audit-export")
+    public ResponseEntity<StreamingResponseBody> exportAuditWorkbook() {
+        StreamingResponseBody body = auditExportService::exportAuditWorkbook;
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=library_audit.xlsx")
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .body(body);
+    }
+
     @Operation(summary = "Get the loans of the current logged user")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Loans found successfully"),
@@ -94,6 +123,38 @@ public class LoanController {
         return new ResponseEntity<>(createdLoan, HttpStatus.CREATED);
     }
 
+    @Operation(
+            summary = "Post many Loans at once. Requires ADMIN role.",
+            description = "Creates up to 100 loans in one transaction, checked in the order given with the same rules " +
+                    "as a single loan. A rejected loan does not stop the others, each one gets its own result."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Batch processed, see each item's result"),
+            @ApiResponse(responseCode = "400", description = "Invalid input, the batch is empty or too large"),
+            @ApiResponse(responseCode = "403", description = "Forbidden. User does not have ADMIN privileges.")
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchLoanResultDTO>> createLoans(@Valid @RequestBody BatchCheckoutRequestDTO request) {
+        return ResponseEntity.ok(loanService.createLoans(request.getLoans()));
+    }
+
+    @Operation(
+            summary = "Return many Loans at once. Requires ADMIN role.",
+            description = "Returns up to 1000 loans in one transaction. A loan that is not found or was already " +
+                    "returned does not stop the others, each one gets its own result."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Batch processed, see each item's result"),
+            @ApiResponse(responseCode = "400", description = "Invalid input, the batch is empty or too large"),
+            @ApiResponse(responseCode = "403", description = "Forbidden. User does not have ADMIN privileges.")
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @PatchMapping("/batch/return")
+    public ResponseEntity<List<BatchLoanResultDTO>> returnLoans(@Valid @RequestBody BatchReturnRequestDTO request) {
+        return ResponseEntity.ok(loanService.returnLoans(request.getLoanIds()));
+    }
+
     @Operation(summary = "Return a borrowed Loan")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Loan returned successfully"),
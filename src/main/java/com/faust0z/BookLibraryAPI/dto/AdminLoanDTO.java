@@ -1,12 +1,16 @@
 package com.faust0z.BookLibraryAPI.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
 import java.util.UUID;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class AdminLoanDTO {
     @Schema(description = "The loan's id", example = "e428d134-616f-41ae-b060-4284319a74ed")
     private UUID id;
@@ -2,12 +2,16 @@ package com.faust0z.BookLibraryAPI.dto;
 
 import com.faust0z.BookLibraryAPI.entity.Role;
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class AdminUserDTO {
     @Schema(description = "The user's id", example = "1c70cf24-cea0-41a9-a4e3-38628c075a43")
     private UUID id;
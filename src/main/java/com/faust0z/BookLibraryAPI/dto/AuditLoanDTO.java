@@ -0,0 +1,27 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * A row of the Loans sheet of the audit export, with the names auditors look for next to the ids.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditLoanDTO {
+    private UUID id;
+    private LocalDate loanDate;
+    private LocalDate dueDate;
+    private LocalDate returnDate;
+    private UUID userId;
+    private String userName;
+    private String userEmail;
+    private UUID bookId;
+    private String bookName;
+    private String bookAuthor;
+}
@@ -0,0 +1,19 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BatchCheckoutRequestDTO {
+    @Schema(description = "Loans to create, in order. Earlier loans of a user count towards their loan limit first")
+    @NotEmpty(message = "The list of loans to create cannot be empty.")
+    @Size(max = 100, message = "Cannot create more than 100 loans at once.")
+    private List<@NotNull @Valid CreateLoanDTO> loans = new ArrayList<>();
+}
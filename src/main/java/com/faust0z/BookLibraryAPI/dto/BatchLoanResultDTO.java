@@ -0,0 +1,31 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchLoanResultDTO {
+    @Schema(description = "Position of the item in the request, starting at 0", example = "0")
+    private int index;
+
+    @Schema(description = "Whether the loan was created or returned", example = "true")
+    private boolean success;
+
+    @Schema(description = "The loan's id", example = "e428d134-616f-41ae-b060-4284319a74ed")
+    private UUID loanId;
+
+    @Schema(description = "The created or returned loan, only when it succeeded")
+    private LoanDTO loan;
+
+    @Schema(description = "The error a single request would have failed with", example = "LoanLimitExceededException")
+    private String error;
+
+    @Schema(description = "Why the item failed", example = "User has reached the maximum loan limit of 3")
+    private String message;
+}
@@ -0,0 +1,19 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class BatchReturnRequestDTO {
+    @Schema(description = "Ids of the loans to return")
+    @NotEmpty(message = "The list of loans to return cannot be empty.")
+    @Size(max = 1000, message = "Cannot return more than 1000 loans at once.")
+    private List<@NotNull UUID> loanIds = new ArrayList<>();
+}
@@ -0,0 +1,19 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookAvailabilityDTO {
+    @Schema(description = "The book's id", example = "e428d134-616f-41ae-b060-4284319a74ed")
+    private UUID bookId;
+
+    @Schema(description = "The amount of available copies of the book", example = "4")
+    private Integer copies;
+}
@@ -1,13 +1,17 @@
 package com.faust0z.BookLibraryAPI.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class BookDTO {
     @Schema(description = "The book's id", example = "e428d134-616f-41ae-b060-4284319a74ed")
     private UUID id;
@@ -26,4 +30,7 @@ public class BookDTO {
 
     @Schema(description = "The book was added on this date", example = "2024-01-01T10:00:00")
     private LocalDateTime createdAt;
+
+    @Schema(description = "The book was last modified on this date", example = "2024-01-01T10:00:00")
+    private LocalDateTime lastModifiedAt;
 }
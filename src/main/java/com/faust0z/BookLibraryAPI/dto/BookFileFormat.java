@@ -0,0 +1,69 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@Getter
+@RequiredArgsConstructor
+public enum BookFileFormat {
+    XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx"),
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String mediaType;
+    private final String extension;
+
+    /**
+     * The format the Accept header prefers: the highest q-value wins, then the most specific type, whatever order they
+     * are written in. A wildcard matches the first format it includes, so browsers that only send wildcards get XLSX.
+     * Formats named with {@code q=0} are refused. XLSX when no format is acceptable.
+     */
+    public static BookFileFormat fromAcceptHeader(String accept) {
+        if (accept == null || accept.isBlank()) return XLSX;
+        List<MediaType> requested;
+        try {
+            requested = new ArrayList<>(MediaType.parseMediaTypes(accept));
+            MimeTypeUtils.sortBySpecificity(requested);
+        } catch (InvalidMediaTypeException | InvalidMimeTypeException e) {
+            return XLSX;
+        }
+
+        for (MediaType range : requested) {
+            // Sorted by quality first, so every range left is refused too
+            if (range.getQualityValue() == 0) break;
+            for (BookFileFormat format : values()) {
+                if (range.includes(format.toMediaType()) && !isRefused(format, requested)) return format;
+            }
+        }
+        return XLSX;
+    }
+
+    public MediaType toMediaType() {
+        return MediaType.parseMediaType(mediaType);
+    }
+
+    private static boolean isRefused(BookFileFormat format, List<MediaType> requested) {
+        return requested.stream().anyMatch(range -> range.getQualityValue() == 0 && !range.isWildcardSubtype()
+                && range.isCompatibleWith(format.toMediaType()));
+    }
+
+    /**
+     * The format matching the file's extension, XLSX when it has no known one.
+     */
+    public static BookFileFormat fromFilename(String filename) {
+        if (filename == null || filename.lastIndexOf('.') < 0) return XLSX;
+        String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        for (BookFileFormat format : values()) {
+            if (format.extension.equals(extension)) return format;
+        }
+        return XLSX;
+    }
+}
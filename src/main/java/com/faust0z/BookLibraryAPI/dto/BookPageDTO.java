@@ -0,0 +1,21 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPageDTO {
+    @Schema(description = "The books in this page")
+    private List<BookDTO> books;
+
+    @Schema(description = "Cursor to request the next page with. Null when this is the last page",
+            example = "e428d134-616f-41ae-b060-4284319a74ed")
+    private UUID nextCursor;
+}
@@ -0,0 +1,27 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSuggestionDTO {
+    @Schema(description = "The suggested text", example = "The Shining")
+    private String text;
+
+    @Schema(description = "Whether the suggestion is a book title or an author", example = "TITLE")
+    private Type type;
+
+    @Schema(description = "The book's id. Only present for title suggestions", example = "e428d134-616f-41ae-b060-4284319a74ed")
+    private UUID bookId;
+
+    public enum Type {
+        TITLE,
+        AUTHOR
+    }
+}
@@ -0,0 +1,26 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+public class BulkBookRequestDTO {
+    @Schema(description = "Books to create")
+    @NotNull(message = "The list of books to create cannot be null.")
+    @Size(max = 10000, message = "Cannot create more than 10000 books at once.")
+    private List<@Valid CreateBookDTO> create = new ArrayList<>();
+
+    @Schema(description = "Changes to existing books, keyed by the book's id")
+    @NotNull(message = "The books to update cannot be null.")
+    @Size(max = 10000, message = "Cannot update more than 10000 books at once.")
+    private Map<UUID, @Valid UpdateBookDTO> update = new HashMap<>();
+}
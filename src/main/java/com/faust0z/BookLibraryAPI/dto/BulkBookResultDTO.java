@@ -0,0 +1,15 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BulkBookResultDTO {
+    @Schema(description = "Amount of books created", example = "1200")
+    private int created;
+
+    @Schema(description = "Amount of books updated", example = "350")
+    private int updated;
+}
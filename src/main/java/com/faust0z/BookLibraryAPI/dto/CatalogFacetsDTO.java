@@ -0,0 +1,28 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogFacetsDTO {
+    @Schema(description = "Amount of books in the catalog", example = "1500")
+    private long totalBooks;
+
+    @Schema(description = "Available copies across the whole catalog", example = "4200")
+    private long totalCopies;
+
+    @Schema(description = "Authors with the most books, in descending order")
+    private List<FacetDTO> authors;
+
+    @Schema(description = "Books per publication decade, in ascending order")
+    private List<FacetDTO> decades;
+
+    @Schema(description = "Books per publication year, in ascending order")
+    private List<FacetDTO> years;
+}
@@ -0,0 +1,20 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetDTO {
+    @Schema(description = "The facet's value (an author, a year or a decade)", example = "Stephen King")
+    private String value;
+
+    @Schema(description = "Amount of books with this value", example = "12")
+    private long books;
+
+    @Schema(description = "Available copies of those books", example = "30")
+    private long copies;
+}
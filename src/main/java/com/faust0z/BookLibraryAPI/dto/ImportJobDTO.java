@@ -0,0 +1,60 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJobDTO {
+    @Schema(description = "The import job's id", example = "7b0f7c1e-4f7a-4a39-9a8e-2f1d3c5b6a70")
+    private UUID jobId;
+
+    @Schema(description = "The job's current state", example = "RUNNING")
+    private Status status;
+
+    @Schema(description = "Whether rows are always inserted or upserted on title, author and publication date", example = "UPSERT")
+    private Mode mode;
+
+    @Schema(description = "The format of the imported file", example = "CSV")
+    private BookFileFormat format;
+
+    @Schema(description = "Amount of books saved so far", example = "48000")
+    private long rowsProcessed;
+
+    @Schema(description = "Amount of books inserted or whose copies changed. Upserts skip rows that did not change", example = "1500")
+    private long rowsChanged;
+
+    @Schema(description = "Amount of rows skipped because they were invalid or could not be saved", example = "12")
+    private long rowsFailed;
+
+    @Schema(description = "Average amount of rows handled per second since the job started", example = "9600.5")
+    private double rowsPerSecond;
+
+    @Schema(description = "When the job started running", example = "2025-05-20T10:15:30Z")
+    private Instant startedAt;
+
+    @Schema(description = "When the job finished", example = "2025-05-20T10:15:35Z")
+    private Instant finishedAt;
+
+    @Schema(description = "The first errors found, one per failed row or chunk", example = "[\"Title is required at row 18\"]")
+    private List<String> errors;
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    public enum Mode {
+        INSERT,
+        UPSERT
+    }
+}
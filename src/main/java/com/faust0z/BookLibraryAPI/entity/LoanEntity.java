@@ -36,6 +36,10 @@ public class LoanEntity extends BaseEntity {
     @Column(name = "return_date")
     private LocalDate returnDate;
 
+    // Only changed by SQL (see LoanRepositoryCustom), saving a loaded loan must not write back a stale value
+    @Column(name = "copy_pending", nullable = false, updatable = false)
+    private boolean copyPending;
+
     @ManyToOne(fetch = FetchType.LAZY) // Many loans can belong to one user
     @JoinColumn(name = "user_id", nullable = false)
     private UserEntity user;
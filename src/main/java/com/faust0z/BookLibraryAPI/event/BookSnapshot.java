@@ -0,0 +1,13 @@
+package com.faust0z.BookLibraryAPI.event;
+
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+public record BookSnapshot(UUID id, String name, String author, LocalDate publicationDate, Integer copies) {
+
+    public static BookSnapshot from(BookEntity book) {
+        return new BookSnapshot(book.getId(), book.getName(), book.getAuthor(), book.getPublicationDate(), book.getCopies());
+    }
+}
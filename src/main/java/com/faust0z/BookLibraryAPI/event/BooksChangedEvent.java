@@ -0,0 +1,20 @@
+package com.faust0z.BookLibraryAPI.event;
+
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+
+import java.util.List;
+
+/**
+ * Published whenever books are created or modified. Listeners should use
+ * {@code @TransactionalEventListener} so they only see committed changes.
+ */
+public record BooksChangedEvent(List<BookSnapshot> books) {
+
+    public static BooksChangedEvent of(BookEntity book) {
+        return new BooksChangedEvent(List.of(BookSnapshot.from(book)));
+    }
+
+    public static BooksChangedEvent of(List<BookEntity> books) {
+        return new BooksChangedEvent(books.stream().map(BookSnapshot::from).toList());
+    }
+}
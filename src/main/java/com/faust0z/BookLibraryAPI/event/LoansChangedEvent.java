@@ -0,0 +1,11 @@
+package com.faust0z.BookLibraryAPI.event;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Published when many loans are created or returned at once, so the cached loans of each user and loan are evicted
+ * once per batch. Listeners should use {@code @TransactionalEventListener} so they only see committed changes.
+ */
+public record LoansChangedEvent(Set<UUID> userIds, Set<UUID> loanIds) {
+}
@@ -0,0 +1,10 @@
+package com.faust0z.BookLibraryAPI.event;
+
+import java.util.List;
+
+/**
+ * Books changed by a transaction committed on another instance, relayed through Redis. Only published to the
+ * in-memory views of the catalog, the shared state in Redis and the database was already updated by that instance.
+ */
+public record RemoteBooksChangedEvent(List<BookSnapshot> books) {
+}
@@ -2,6 +2,8 @@ package com.faust0z.BookLibraryAPI.exception;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -9,15 +11,19 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final String BOOK_NATURAL_KEY = "uk_books_natural_key";
+
     private ResponseEntity<Map<String, Object>> buildResponse(Exception e, HttpStatus status, HttpServletRequest request) {
         return buildResponse(e, e.getClass().getSimpleName(), e.getMessage(), status, request);
     }
@@ -67,6 +73,30 @@ public class GlobalExceptionHandler {
         return buildResponse(e, HttpStatus.CONFLICT, request);
     }
 
+    // Unique constraints backstop the service checks, the database message is not shown as it includes the row's values
+    @ExceptionHandler({DataIntegrityViolationException.class, ConstraintViolationException.class})
+    public ResponseEntity<Map<String, Object>> handleDataIntegrityViolation(RuntimeException e, HttpServletRequest request) {
+        String constraint = null;
+        for (Throwable cause = e; cause != null && constraint == null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) constraint = violation.getConstraintName();
+        }
+        String message = BOOK_NATURAL_KEY.equals(constraint)
+                ? "A book with the same name, author and publication date already exists."
+                : "The request conflicts with existing data.";
+        return buildResponse(e, "DataConflict", message, HttpStatus.CONFLICT, request);
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Map<String, Object>> handleRejectedExecution(RejectedExecutionException e, HttpServletRequest request) {
+        return buildResponse(e, "ServiceUnavailable", e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE, request);
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Map<String, Object>> handleMaxUploadSize(MaxUploadSizeExceededException e, HttpServletRequest request) {
+        return buildResponse(e, "PayloadTooLarge", "The uploaded file exceeds the maximum upload size.",
+                HttpStatus.PAYLOAD_TOO_LARGE, request);
+    }
+
     @ExceptionHandler(AuthenticationException.class)
     public ResponseEntity<Map<String, Object>> handleAuthenticationException(AuthenticationException e, HttpServletRequest request) {
         return buildResponse(e, "AuthenticationFailure", "Incorrect email or password", HttpStatus.UNAUTHORIZED, request);
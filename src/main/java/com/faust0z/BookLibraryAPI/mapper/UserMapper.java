@@ -13,8 +13,6 @@ import org.mapstruct.MappingTarget;
 import org.mapstruct.NullValuePropertyMappingStrategy;
 import org.mapstruct.ReportingPolicy;
 
-import java.util.List;
-
 @Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.IGNORE)
 public interface UserMapper {
 
@@ -22,8 +20,6 @@ public interface UserMapper {
 
     AdminUserDTO toAdminDto(UserEntity user);
 
-    List<AdminUserDTO> toAdminDtoList(List<UserEntity> users);
-
     MyUserDetailsDTO toMyDetailsDto(UserEntity user);
 
     @Mapping(target = "password", ignore = true)
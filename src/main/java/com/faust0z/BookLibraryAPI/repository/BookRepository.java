@@ -1,19 +1,79 @@
 package com.faust0z.BookLibraryAPI.repository;
 
+import com.faust0z.BookLibraryAPI.dto.BookAvailabilityDTO;
+import com.faust0z.BookLibraryAPI.dto.BookDTO;
 import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface BookRepository extends JpaRepository<BookEntity, UUID> {
+public interface BookRepository extends JpaRepository<BookEntity, UUID>, BookRepositoryCustom {
+
+    // Keyset pagination: the page starts right after the cursor, so no OFFSET rows are scanned and discarded.
+    // Selects the DTO directly (arguments in BookDTO's field order) to skip entity hydration and dirty checking
+    @Query("""
+            SELECT new com.faust0z.BookLibraryAPI.dto.BookDTO(
+                b.id, b.name, b.author, b.publicationDate, b.copies, b.createdAt, b.lastModifiedAt)
+            FROM BookEntity b
+            WHERE (:author IS NULL OR b.author = :author)
+              AND (:publishedFrom IS NULL OR b.publicationDate BETWEEN :publishedFrom AND :publishedTo)
+              AND (:cursor IS NULL OR b.id > :cursor)
+            ORDER BY b.id
+            """)
+    List<BookDTO> findPage(String author, LocalDate publishedFrom, LocalDate publishedTo, UUID cursor, Pageable pageable);
+
+    // search_vector is a generated tsvector column (name + author) with a GIN index, see V5 migration
+    @Query(value = """
+            SELECT b.* FROM books b, websearch_to_tsquery('simple', :query) q
+            WHERE b.search_vector @@ q
+            ORDER BY ts_rank(b.search_vector, q) DESC, b.id
+            LIMIT :limit OFFSET :offset
+            """, nativeQuery = true)
+    List<BookEntity> search(String query, int limit, long offset);
+
+    // Arguments follow BookSnapshot's component order
+    @Query("""
+            SELECT new com.faust0z.BookLibraryAPI.event.BookSnapshot(b.id, b.name, b.author, b.publicationDate, b.copies)
+            FROM BookEntity b
+            """)
+    List<BookSnapshot> findAllSnapshots();
+
+    @Query("""
+            SELECT new com.faust0z.BookLibraryAPI.dto.BookAvailabilityDTO(b.id, b.copies)
+            FROM BookEntity b WHERE b.id IN :bookIds
+            """)
+    List<BookAvailabilityDTO> findAvailabilityByIdIn(Collection<UUID> bookIds);
+
+    // Must be consumed inside a transaction. The fetch size makes the driver use a cursor instead of loading every row
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b FROM BookEntity b")
+    Stream<BookEntity> streamAll();
+
+    // Primary key lookup behind the book's ETag, so unchanged books are answered without loading them
+    @Query("SELECT b.lastModifiedAt FROM BookEntity b WHERE b.id = :bookId")
+    Optional<LocalDateTime> findLastModifiedAt(UUID bookId);
 
     @Transactional
     @Modifying
-    @Query("UPDATE BookEntity b SET b.copies = b.copies + 1 WHERE b.id = :bookId")
+    @Query("UPDATE BookEntity b SET b.copies = b.copies + 1, b.lastModifiedAt = LOCAL DATETIME WHERE b.id = :bookId")
     void incrementCopies(UUID bookId);
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.faust0z.BookLibraryAPI.repository;
+
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+
+import java.util.List;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Inserts new books with PostgreSQL's COPY instead of one INSERT per book. Ids and audit timestamps are set on the
+     * given entities, which are not attached to the persistence context. Must run inside a transaction.
+     */
+    void copyInsert(List<BookEntity> books);
+
+    /**
+     * Inserts the books, or updates the copies of the existing book with the same name, author and publication date.
+     * Rows whose copies already match are left untouched. When the same book appears more than once, the last one wins.
+     *
+     * @return the books that were inserted or updated
+     */
+    List<BookSnapshot> upsertByNaturalKey(List<BookEntity> books);
+}
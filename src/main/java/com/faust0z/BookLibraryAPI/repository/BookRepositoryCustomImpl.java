@@ -0,0 +1,160 @@
+package com.faust0z.BookLibraryAPI.repository;
+
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Slf4j
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    private static final String COPY_SQL = """
+            COPY books (id, name, author, publication_date, copies, created_at, last_modified_at)
+            FROM STDIN WITH (FORMAT csv)
+            """;
+    // Rows are sent to the server every time this much text is buffered
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // The whole batch is sent as one array per column, so the statement text is the same whatever the batch size.
+    // The WHERE clause skips rows whose copies did not change, so re-imports do not rewrite (and bloat) them
+    private static final String UPSERT_SQL = """
+            INSERT INTO books AS b (id, name, author, publication_date, copies, created_at, last_modified_at)
+            SELECT t.id, t.name, t.author, t.publication_date, t.copies, ?::timestamp, ?::timestamp
+            FROM unnest(?::uuid[], ?::varchar[], ?::varchar[], ?::date[], ?::int[])
+                AS t(id, name, author, publication_date, copies)
+            ON CONFLICT (name, author, publication_date) DO UPDATE
+                SET copies = EXCLUDED.copies, last_modified_at = EXCLUDED.last_modified_at
+                WHERE b.copies IS DISTINCT FROM EXCLUDED.copies
+            RETURNING b.id, b.name, b.author, b.publication_date, b.copies
+            """;
+
+    private record NaturalKey(String name, String author, LocalDate publicationDate) {
+    }
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    public BookRepositoryCustomImpl(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void copyInsert(List<BookEntity> books) {
+        if (books.isEmpty()) return;
+
+        // Bound to the surrounding JPA transaction, so the copied rows commit or roll back with it
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            try {
+                // PostgreSQL keeps microseconds, so the entities get the timestamps that are stored
+                LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+                StringBuilder rows = new StringBuilder(BUFFER_SIZE + 1024);
+                for (BookEntity book : books) {
+                    if (book.getId() == null) book.setId(UUID.randomUUID());
+                    book.setCreatedAt(now);
+                    book.setLastModifiedAt(now);
+                    appendRow(rows, book);
+                    if (rows.length() >= BUFFER_SIZE) write(copyIn, rows);
+                }
+                write(copyIn, rows);
+
+                long copied = copyIn.endCopy();
+                log.debug("Copied {} books into the database", copied);
+            } finally {
+                if (copyIn.isActive()) copyIn.cancelCopy();
+            }
+        } catch (SQLException e) {
+            throw new SQLStateSQLExceptionTranslator().translate("COPY books", COPY_SQL, e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    @Override
+    public List<BookSnapshot> upsertByNaturalKey(List<BookEntity> books) {
+        if (books.isEmpty()) return List.of();
+
+        // A statement cannot update the same row twice, so repeated books are collapsed first
+        Map<NaturalKey, BookEntity> unique = new LinkedHashMap<>();
+        books.forEach(book -> unique.put(new NaturalKey(book.getName(), book.getAuthor(), book.getPublicationDate()), book));
+        List<BookEntity> rows = new ArrayList<>(unique.values());
+
+        UUID[] ids = new UUID[rows.size()];
+        String[] names = new String[rows.size()];
+        String[] authors = new String[rows.size()];
+        String[] publicationDates = new String[rows.size()];
+        Integer[] copies = new Integer[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            BookEntity book = rows.get(i);
+            ids[i] = UUID.randomUUID();
+            names[i] = book.getName();
+            authors[i] = book.getAuthor();
+            publicationDates[i] = book.getPublicationDate() != null ? book.getPublicationDate().toString() : null;
+            copies[i] = book.getCopies();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<BookSnapshot> changed = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPSERT_SQL);
+            statement.setObject(1, now);
+            statement.setObject(2, now);
+            statement.setArray(3, connection.createArrayOf("uuid", ids));
+            statement.setArray(4, connection.createArrayOf("varchar", names));
+            statement.setArray(5, connection.createArrayOf("varchar", authors));
+            statement.setArray(6, connection.createArrayOf("date", publicationDates));
+            statement.setArray(7, connection.createArrayOf("int4", copies));
+            return statement;
+        }, (rs, rowNum) -> new BookSnapshot(rs.getObject("id", UUID.class), rs.getString("name"), rs.getString("author"),
+                rs.getObject("publication_date", LocalDate.class), rs.getInt("copies")));
+
+        log.debug("Upserted {} books, {} of them inserted or changed", rows.size(), changed.size());
+        return changed;
+    }
+
+    private void write(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    // CSV format: an unquoted empty field is NULL, text is always quoted so it may hold commas, quotes and new lines
+    private void appendRow(StringBuilder rows, BookEntity book) {
+        rows.append(book.getId()).append(',');
+        appendText(rows, book.getName());
+        rows.append(',');
+        appendText(rows, book.getAuthor());
+        rows.append(',');
+        if (book.getPublicationDate() != null) rows.append(book.getPublicationDate());
+        rows.append(',');
+        if (book.getCopies() != null) rows.append(book.getCopies());
+        rows.append(',').append(book.getCreatedAt())
+                .append(',').append(book.getLastModifiedAt())
+                .append('\n');
+    }
+
+    private void appendText(StringBuilder rows, String value) {
+        if (value == null) return;
+        rows.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
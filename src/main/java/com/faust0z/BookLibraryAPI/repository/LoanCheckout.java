@@ -0,0 +1,17 @@
+package com.faust0z.BookLibraryAPI.repository;
+
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+
+/**
+ * Result of {@link LoanRepositoryCustom#checkout}. The book's copies, the active loans and {@code alreadyLoaned} were
+ * read at the start of the statement, so they explain a rejection but may be stale by the time it ends.
+ *
+ * @param loanedBook the book after its copy was taken, or null when no loan was created
+ */
+public record LoanCheckout(boolean userFound, boolean bookFound, String bookName, int copies, boolean alreadyLoaned,
+                           int activeLoans, BookSnapshot loanedBook) {
+
+    public boolean created() {
+        return loanedBook != null;
+    }
+}
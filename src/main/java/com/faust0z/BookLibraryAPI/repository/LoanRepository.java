@@ -1,6 +1,9 @@
 package com.faust0z.BookLibraryAPI.repository;
 
+import com.faust0z.BookLibraryAPI.dto.AdminLoanDTO;
+import com.faust0z.BookLibraryAPI.dto.AuditLoanDTO;
 import com.faust0z.BookLibraryAPI.entity.LoanEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -9,15 +12,26 @@ import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface LoanRepository extends JpaRepository<LoanEntity, UUID> {
+public interface LoanRepository extends JpaRepository<LoanEntity, UUID>, LoanRepositoryCustom {
 
     @Query("SELECT l FROM LoanEntity l JOIN FETCH l.user JOIN FETCH l.book WHERE l.user.id = :userId")
     List<LoanEntity> findByUserIdWithUserAndBook(UUID userId);
 
-    @Query("SELECT l FROM LoanEntity l JOIN FETCH l.user JOIN FETCH l.book")
-    List<LoanEntity> findAllWithUserAndBook();
+    // Arguments follow AdminLoanDTO's field order. The user id comes from the loan's FK, so users are not joined
+    @Query("""
+            SELECT new com.faust0z.BookLibraryAPI.dto.AdminLoanDTO(
+                l.id, l.loanDate, l.dueDate, l.returnDate, l.user.id, b.id, b.name)
+            FROM LoanEntity l JOIN l.book b
+            """)
+    List<AdminLoanDTO> findAllAdminDtos();
 
-    int countByUserIdAndReturnDateIsNull(UUID userId);
-
-    boolean existsByUserIdAndBookIdAndReturnDateIsNull(UUID userId, UUID bookId);
+    // Keyset pagination like BookRepository.findPage, arguments follow AuditLoanDTO's field order
+    @Query("""
+            SELECT new com.faust0z.BookLibraryAPI.dto.AuditLoanDTO(
+                l.id, l.loanDate, l.dueDate, l.returnDate, u.id, u.name, u.email, b.id, b.name, b.author)
+            FROM LoanEntity l JOIN l.user u JOIN l.book b
+            WHERE (:cursor IS NULL OR l.id > :cursor)
+            ORDER BY l.id
+            """)
+    List<AuditLoanDTO> findAuditPage(UUID cursor, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.faust0z.BookLibraryAPI.repository;
+
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface LoanRepositoryCustom {
+
+    record CheckoutItem(UUID loanId, UUID userId, UUID bookId) {
+    }
+
+    /**
+     * Checks the loan rules, takes a copy of the book and inserts the loan in a single statement, so a checkout costs
+     * one round trip to the database. The copy is only taken when the user and the book exist, the book has copies
+     * left, the user is not already loaning it and has fewer than {@code maxActiveLoans} active loans. Must run
+     * inside a transaction.
+     */
+    LoanCheckout checkout(UUID loanId, UUID userId, UUID bookId, LocalDate loanDate, LocalDate dueDate,
+                          int maxActiveLoans);
+
+    /**
+     * Like {@link #checkout}, for a copy already reserved elsewhere: the book's copies are neither checked nor
+     * changed. The loan is inserted with its copy pending, to be taken from the book by {@link #applyPendingCopies}.
+     */
+    LoanCheckout checkoutReserved(UUID loanId, UUID userId, UUID bookId, LocalDate loanDate, LocalDate dueDate,
+                                  int maxActiveLoans);
+
+    /**
+     * Like {@link #checkout} for many loans at once, with one statement whatever their number. Items are handled in
+     * order: earlier items of a user count towards their limit, and take the copies of a book first. An item loaning
+     * the same book as an earlier one of the same user counts as already loaned.
+     *
+     * @return one result per item, in the same order
+     */
+    List<LoanCheckout> checkoutAll(List<CheckoutItem> items, LocalDate loanDate, LocalDate dueDate, int maxActiveLoans);
+
+    /**
+     * Like {@link #checkoutAll}, for copies already reserved elsewhere, see {@link #checkoutReserved}.
+     */
+    List<LoanCheckout> checkoutAllReserved(List<CheckoutItem> items, LocalDate loanDate, LocalDate dueDate,
+                                           int maxActiveLoans);
+
+    /**
+     * Returns the loans not returned yet and gives their copies back, one UPDATE per book. A loan requested more than
+     * once is only returned by its first item. Must run inside a transaction.
+     *
+     * @return one result per requested id, in the same order
+     */
+    List<LoanReturn> returnAll(List<UUID> loanIds, LocalDate returnDate);
+
+    /**
+     * The book with the copies left once the pending ones are taken.
+     */
+    Optional<BookSnapshot> findAvailableCopies(UUID bookId);
+
+    /**
+     * Takes the pending copies of up to {@code maxLoans} loans from their books, one UPDATE per book. Loans locked by
+     * a concurrent call are skipped. Must run inside a transaction.
+     *
+     * @return the books whose copies changed, empty once no copies are pending
+     */
+    List<BookSnapshot> applyPendingCopies(int maxLoans);
+}
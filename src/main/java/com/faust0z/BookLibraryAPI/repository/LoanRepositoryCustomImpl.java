@@ -0,0 +1,357 @@
+package com.faust0z.BookLibraryAPI.repository;
+
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Slf4j
+public class LoanRepositoryCustomImpl implements LoanRepositoryCustom {
+
+    // Every CTE sees the same snapshot, only UPDATEs wait for concurrent checkouts of the book and re-check its row
+    // once they commit. The final SELECT always returns one row, since active_loans is an aggregate
+    private static final String CHECKOUT_CHECKS = """
+            WITH target_user AS (
+                SELECT id FROM users WHERE id = :userId
+            ), target_book AS (
+                SELECT id, name, author, publication_date, copies FROM books WHERE id = :bookId
+            ), active_loans AS (
+                SELECT count(*) AS loans, coalesce(bool_or(book_id = :bookId), false) AS has_book
+                FROM loans
+                WHERE user_id = :userId AND return_date IS NULL
+            )""";
+
+    private static final String CHECKOUT_RESULT = """
+            SELECT u.id IS NOT NULL AS user_found, tb.id IS NOT NULL AS book_found, tb.name AS book_name,
+                   tb.copies AS book_copies, a.has_book, a.loans AS active_loans,
+                   r.id AS loaned_id, r.name AS loaned_name, r.author AS loaned_author,
+                   r.publication_date AS loaned_publication_date, r.copies AS loaned_copies
+            FROM active_loans a
+            LEFT JOIN target_user u ON true
+            LEFT JOIN target_book tb ON true
+            LEFT JOIN reserved r ON true
+            """;
+
+    // The insert runs even though the final SELECT does not read it, and only when the update took a copy
+    static final String CHECKOUT_SQL = CHECKOUT_CHECKS + """
+            , reserved AS (
+                UPDATE books b SET copies = b.copies - 1, last_modified_at = :now
+                FROM target_user, active_loans a
+                WHERE b.id = :bookId AND b.copies > 0 AND NOT a.has_book AND a.loans < :maxActiveLoans
+                RETURNING b.id, b.name, b.author, b.publication_date, b.copies
+            ), inserted AS (
+                INSERT INTO loans (id, loan_date, due_date, user_id, book_id, created_at, last_modified_at)
+                SELECT :loanId, :loanDate, :dueDate, :userId, r.id, :now, :now FROM reserved r
+                RETURNING id
+            )
+            """ + CHECKOUT_RESULT;
+
+    // The books row is only read, so checkouts of the same book do not wait for each other
+    static final String CHECKOUT_RESERVED_SQL = CHECKOUT_CHECKS + """
+            , inserted AS (
+                INSERT INTO loans (id, loan_date, due_date, user_id, book_id, copy_pending, created_at, last_modified_at)
+                SELECT :loanId, :loanDate, :dueDate, :userId, tb.id, true, :now, :now
+                FROM target_user, target_book tb, active_loans a
+                WHERE NOT a.has_book AND a.loans < :maxActiveLoans
+                RETURNING book_id
+            ), reserved AS (
+                SELECT tb.* FROM target_book tb JOIN inserted i ON i.book_id = tb.id
+            )
+            """ + CHECKOUT_RESULT;
+
+    // Shared by both batch checkouts. Items are numbered by WITH ORDINALITY, the scalar parameters come first
+    private static final String BATCH_CHECKS = """
+            WITH RECURSIVE params AS (
+                SELECT ?::date AS loan_date, ?::date AS due_date, ?::int AS max_loans, ?::timestamp AS now
+            ), requested AS (
+                SELECT * FROM unnest(?::uuid[], ?::uuid[], ?::uuid[]) WITH ORDINALITY AS t(loan_id, user_id, book_id, ord)
+            ), checked AS (
+                SELECT r.*, u.id IS NOT NULL AS user_found, b.id IS NOT NULL AS book_found, b.name AS book_name,
+                       b.copies AS book_copies,
+                       EXISTS (SELECT 1 FROM loans l
+                               WHERE l.user_id = r.user_id AND l.book_id = r.book_id AND l.return_date IS NULL) AS had_book,
+                       (SELECT count(*) FROM loans l WHERE l.user_id = r.user_id AND l.return_date IS NULL) AS active_loans
+                FROM requested r
+                LEFT JOIN users u ON u.id = r.user_id
+                LEFT JOIN books b ON b.id = r.book_id
+            )""";
+
+    // Decides the items one at a time in ord order, as createLoan would be called for each of them, so only granted
+    // items count towards the loan limit, the copies and the books already loaned. Each step carries the loans granted
+    // so far per user and per book, and the (user, book) pairs granted. The copies are only checked when stock is set
+    private static final String BATCH_DECISIONS = """
+            , decided AS (
+                SELECT 0::bigint AS ord, false AS granted, false AS has_book, 0::bigint AS loans_before,
+                       NULL::int AS copies_left, '{}'::jsonb AS user_loans, '{}'::jsonb AS book_loans,
+                       '{}'::text[] AS pairs
+                UNION ALL
+                SELECT s.ord, g.granted, n.has_book, v.loans_before, v.copies_left,
+                       CASE WHEN g.granted
+                           THEN d.user_loans || jsonb_build_object(s.user_id::text, n.user_granted + 1)
+                           ELSE d.user_loans END,
+                       CASE WHEN g.granted
+                           THEN d.book_loans || jsonb_build_object(s.book_id::text, n.book_granted + 1)
+                           ELSE d.book_loans END,
+                       CASE WHEN g.granted THEN d.pairs || n.pair ELSE d.pairs END
+                FROM decided d
+                JOIN stocked s ON s.ord = d.ord + 1
+                CROSS JOIN LATERAL (
+                    SELECT coalesce((d.user_loans ->> s.user_id::text)::int, 0) AS user_granted,
+                           coalesce((d.book_loans ->> s.book_id::text)::int, 0) AS book_granted,
+                           s.user_id::text || '/' || s.book_id::text AS pair,
+                           s.had_book OR s.user_id::text || '/' || s.book_id::text = ANY (d.pairs) AS has_book
+                ) n
+                CROSS JOIN LATERAL (
+                    SELECT s.active_loans + n.user_granted AS loans_before, s.stock - n.book_granted AS copies_left
+                ) v
+                CROSS JOIN LATERAL (
+                    SELECT s.user_found AND s.book_found AND NOT n.has_book AND v.loans_before < p.max_loans
+                               AND coalesce(v.copies_left > 0, true) AS granted
+                    FROM params p
+                ) g
+            ), granted AS (
+                SELECT s.* FROM stocked s JOIN decided d ON d.ord = s.ord WHERE d.granted
+            )""";
+
+    // FOR UPDATE reads the latest committed copies, unlike the rest of the statement. Books are locked in id order,
+    // so two batches sharing books cannot deadlock. Each item gets a copy while the book's copies last
+    static final String CHECKOUT_ALL_SQL = BATCH_CHECKS + """
+            , locked AS (
+                SELECT b.id, b.copies FROM books b
+                WHERE b.id IN (SELECT book_id FROM checked WHERE user_found AND NOT had_book)
+                ORDER BY b.id
+                FOR UPDATE
+            ), stocked AS (
+                SELECT c.*, l.copies AS stock FROM checked c LEFT JOIN locked l ON l.id = c.book_id
+            )""" + BATCH_DECISIONS + """
+            , taken AS (
+                UPDATE books b SET copies = b.copies - t.copies, last_modified_at = p.now
+                FROM (SELECT book_id, count(*) AS copies FROM granted GROUP BY book_id) t, params p
+                WHERE b.id = t.book_id
+                RETURNING b.id, b.name, b.author, b.publication_date, b.copies
+            ), inserted AS (
+                INSERT INTO loans (id, loan_date, due_date, user_id, book_id, created_at, last_modified_at)
+                SELECT g.loan_id, p.loan_date, p.due_date, g.user_id, g.book_id, p.now, p.now
+                FROM granted g, params p
+                RETURNING id
+            )
+            SELECT c.user_found, c.book_found, c.book_name, coalesce(d.copies_left, c.book_copies) AS book_copies,
+                   d.has_book, d.loans_before AS active_loans,
+                   t.id AS loaned_id, t.name AS loaned_name, t.author AS loaned_author,
+                   t.publication_date AS loaned_publication_date, t.copies AS loaned_copies
+            FROM checked c
+            JOIN decided d ON d.ord = c.ord
+            LEFT JOIN taken t ON t.id = c.book_id AND d.granted
+            ORDER BY c.ord
+            """;
+
+    // The copies were reserved in the ledger, so they are not checked here
+    static final String CHECKOUT_ALL_RESERVED_SQL = BATCH_CHECKS + """
+            , stocked AS (
+                SELECT c.*, NULL::int AS stock FROM checked c
+            )""" + BATCH_DECISIONS + """
+            , inserted AS (
+                INSERT INTO loans (id, loan_date, due_date, user_id, book_id, copy_pending, created_at, last_modified_at)
+                SELECT g.loan_id, p.loan_date, p.due_date, g.user_id, g.book_id, true, p.now, p.now
+                FROM granted g, params p
+                RETURNING id
+            )
+            SELECT c.user_found, c.book_found, c.book_name, c.book_copies, d.has_book, d.loans_before AS active_loans,
+                   b.id AS loaned_id, b.name AS loaned_name, b.author AS loaned_author,
+                   b.publication_date AS loaned_publication_date, b.copies AS loaned_copies
+            FROM checked c
+            JOIN decided d ON d.ord = c.ord
+            LEFT JOIN books b ON b.id = c.book_id AND d.granted
+            ORDER BY c.ord
+            """;
+
+    // The loans joined by the final SELECT are read from the statement's snapshot, before they were returned
+    private static final String RETURN_ALL_SQL = """
+            WITH requested AS (
+                SELECT * FROM unnest(?::uuid[]) WITH ORDINALITY AS t(loan_id, ord)
+            ), returned AS (
+                UPDATE loans l SET return_date = ?, last_modified_at = ?
+                WHERE l.id IN (SELECT loan_id FROM requested) AND l.return_date IS NULL
+                RETURNING l.id, l.book_id
+            ), given AS (
+                UPDATE books b SET copies = b.copies + t.copies, last_modified_at = ?
+                FROM (SELECT book_id, count(*) AS copies FROM returned GROUP BY book_id) t
+                WHERE b.id = t.book_id
+                RETURNING b.id, b.name, b.author, b.publication_date, b.copies
+            ), first_requests AS (
+                SELECT loan_id, min(ord) AS ord FROM requested GROUP BY loan_id
+            )
+            SELECT r.loan_id, l.id IS NOT NULL AS loan_found, l.return_date, l.user_id, l.loan_date, l.due_date,
+                   g.id, g.name, g.author, g.publication_date, g.copies
+            FROM requested r
+            LEFT JOIN loans l ON l.id = r.loan_id
+            LEFT JOIN first_requests f ON f.ord = r.ord
+            LEFT JOIN returned ret ON ret.id = f.loan_id
+            LEFT JOIN given g ON g.id = ret.book_id
+            ORDER BY r.ord
+            """;
+
+    static final String AVAILABLE_COPIES_SQL = """
+            SELECT b.id, b.name, b.author, b.publication_date,
+                   b.copies - (SELECT count(*) FROM loans l WHERE l.book_id = b.id AND l.copy_pending) AS copies
+            FROM books b
+            WHERE b.id = :bookId
+            """;
+
+    // The copies of each book are taken with a single UPDATE, however many loans are pending for it
+    static final String APPLY_PENDING_COPIES_SQL = """
+            WITH applied AS (
+                UPDATE loans SET copy_pending = false
+                WHERE id IN (SELECT id FROM loans WHERE copy_pending LIMIT :maxLoans FOR UPDATE SKIP LOCKED)
+                RETURNING book_id
+            ), taken AS (
+                SELECT book_id, count(*) AS copies FROM applied GROUP BY book_id
+            )
+            UPDATE books b SET copies = b.copies - t.copies, last_modified_at = :now
+            FROM taken t
+            WHERE b.id = t.book_id
+            RETURNING b.id, b.name, b.author, b.publication_date, b.copies
+            """;
+
+    private static final RowMapper<BookSnapshot> BOOK_SNAPSHOT_MAPPER = (rs, rowNum) -> new BookSnapshot(
+            rs.getObject("id", UUID.class), rs.getString("name"), rs.getString("author"),
+            rs.getObject("publication_date", LocalDate.class), rs.getInt("copies"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public LoanRepositoryCustomImpl(DataSource dataSource) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    @Override
+    public LoanCheckout checkout(UUID loanId, UUID userId, UUID bookId, LocalDate loanDate, LocalDate dueDate,
+                                 int maxActiveLoans) {
+        return runCheckout(CHECKOUT_SQL, loanId, userId, bookId, loanDate, dueDate, maxActiveLoans);
+    }
+
+    @Override
+    public LoanCheckout checkoutReserved(UUID loanId, UUID userId, UUID bookId, LocalDate loanDate, LocalDate dueDate,
+                                         int maxActiveLoans) {
+        return runCheckout(CHECKOUT_RESERVED_SQL, loanId, userId, bookId, loanDate, dueDate, maxActiveLoans);
+    }
+
+    @Override
+    public List<LoanCheckout> checkoutAll(List<CheckoutItem> items, LocalDate loanDate, LocalDate dueDate,
+                                          int maxActiveLoans) {
+        return runCheckoutAll(CHECKOUT_ALL_SQL, items, loanDate, dueDate, maxActiveLoans);
+    }
+
+    @Override
+    public List<LoanCheckout> checkoutAllReserved(List<CheckoutItem> items, LocalDate loanDate, LocalDate dueDate,
+                                                  int maxActiveLoans) {
+        return runCheckoutAll(CHECKOUT_ALL_RESERVED_SQL, items, loanDate, dueDate, maxActiveLoans);
+    }
+
+    @Override
+    public List<LoanReturn> returnAll(List<UUID> loanIds, LocalDate returnDate) {
+        if (loanIds.isEmpty()) return List.of();
+
+        LocalDateTime now = LocalDateTime.now();
+        List<LoanReturn> returns = jdbcTemplate.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(RETURN_ALL_SQL);
+            statement.setArray(1, connection.createArrayOf("uuid", loanIds.toArray()));
+            statement.setObject(2, returnDate);
+            statement.setObject(3, now);
+            statement.setObject(4, now);
+            return statement;
+        }, (rs, rowNum) -> {
+            UUID bookId = rs.getObject("id", UUID.class);
+            return new LoanReturn(rs.getObject("loan_id", UUID.class), rs.getBoolean("loan_found"),
+                    rs.getObject("return_date", LocalDate.class), rs.getObject("user_id", UUID.class),
+                    rs.getObject("loan_date", LocalDate.class), rs.getObject("due_date", LocalDate.class),
+                    bookId == null ? null : BOOK_SNAPSHOT_MAPPER.mapRow(rs, rowNum));
+        });
+
+        log.debug("Returned {} of {} requested loans", returns.stream().filter(LoanReturn::returned).count(), loanIds.size());
+        return returns;
+    }
+
+    @Override
+    public Optional<BookSnapshot> findAvailableCopies(UUID bookId) {
+        return jdbcTemplate.query(AVAILABLE_COPIES_SQL, new MapSqlParameterSource("bookId", bookId), BOOK_SNAPSHOT_MAPPER)
+                .stream().findFirst();
+    }
+
+    @Override
+    public List<BookSnapshot> applyPendingCopies(int maxLoans) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("maxLoans", maxLoans)
+                .addValue("now", LocalDateTime.now());
+        List<BookSnapshot> books = jdbcTemplate.query(APPLY_PENDING_COPIES_SQL, params, BOOK_SNAPSHOT_MAPPER);
+
+        log.debug("Applied pending copies to {} books", books.size());
+        return books;
+    }
+
+    private LoanCheckout runCheckout(String sql, UUID loanId, UUID userId, UUID bookId, LocalDate loanDate,
+                                     LocalDate dueDate, int maxActiveLoans) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("loanId", loanId)
+                .addValue("userId", userId)
+                .addValue("bookId", bookId)
+                .addValue("loanDate", loanDate)
+                .addValue("dueDate", dueDate)
+                .addValue("maxActiveLoans", maxActiveLoans)
+                .addValue("now", LocalDateTime.now());
+
+        LoanCheckout checkout = jdbcTemplate.queryForObject(sql, params, (rs, rowNum) -> toCheckout(rs));
+
+        log.debug("Checkout of book {} by user {}: {}", bookId, userId, checkout);
+        return checkout;
+    }
+
+    private List<LoanCheckout> runCheckoutAll(String sql, List<CheckoutItem> items, LocalDate loanDate,
+                                              LocalDate dueDate, int maxActiveLoans) {
+        if (items.isEmpty()) return List.of();
+
+        UUID[] loanIds = new UUID[items.size()];
+        UUID[] userIds = new UUID[items.size()];
+        UUID[] bookIds = new UUID[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            loanIds[i] = items.get(i).loanId();
+            userIds[i] = items.get(i).userId();
+            bookIds[i] = items.get(i).bookId();
+        }
+
+        List<LoanCheckout> checkouts = jdbcTemplate.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setObject(1, loanDate);
+            statement.setObject(2, dueDate);
+            statement.setInt(3, maxActiveLoans);
+            statement.setObject(4, LocalDateTime.now());
+            statement.setArray(5, connection.createArrayOf("uuid", loanIds));
+            statement.setArray(6, connection.createArrayOf("uuid", userIds));
+            statement.setArray(7, connection.createArrayOf("uuid", bookIds));
+            return statement;
+        }, (rs, rowNum) -> toCheckout(rs));
+
+        log.debug("Checked out {} of {} requested loans", checkouts.stream().filter(LoanCheckout::created).count(),
+                items.size());
+        return checkouts;
+    }
+
+    private LoanCheckout toCheckout(ResultSet rs) throws SQLException {
+        UUID loanedId = rs.getObject("loaned_id", UUID.class);
+        BookSnapshot loanedBook = loanedId == null ? null : new BookSnapshot(loanedId, rs.getString("loaned_name"),
+                rs.getString("loaned_author"), rs.getObject("loaned_publication_date", LocalDate.class),
+                rs.getInt("loaned_copies"));
+        return new LoanCheckout(rs.getBoolean("user_found"), rs.getBoolean("book_found"), rs.getString("book_name"),
+                rs.getInt("book_copies"), rs.getBoolean("has_book"), rs.getInt("active_loans"), loanedBook);
+    }
+}
@@ -0,0 +1,20 @@
+package com.faust0z.BookLibraryAPI.repository;
+
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Result of returning one loan with {@link LoanRepositoryCustom#returnAll}. The loan's fields were read at the start
+ * of the statement.
+ *
+ * @param returnedBook the book after its copy was given back, or null when the loan was not returned
+ */
+public record LoanReturn(UUID loanId, boolean found, LocalDate previousReturnDate, UUID userId, LocalDate loanDate,
+                         LocalDate dueDate, BookSnapshot returnedBook) {
+
+    public boolean returned() {
+        return returnedBook != null;
+    }
+}
@@ -1,9 +1,13 @@
 package com.faust0z.BookLibraryAPI.repository;
 
+import com.faust0z.BookLibraryAPI.dto.AdminUserDTO;
 import com.faust0z.BookLibraryAPI.entity.UserEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -11,4 +15,20 @@ import java.util.UUID;
 public interface UserRepository extends JpaRepository<UserEntity, UUID> {
 
     Optional<UserEntity> findByEmail(String email);
+
+    // Arguments follow AdminUserDTO's field order
+    @Query("""
+            SELECT new com.faust0z.BookLibraryAPI.dto.AdminUserDTO(u.id, u.name, u.email, u.createdAt, u.lastModifiedAt, u.role)
+            FROM UserEntity u
+            """)
+    List<AdminUserDTO> findAllAdminDtos();
+
+    // Keyset pagination like BookRepository.findPage
+    @Query("""
+            SELECT new com.faust0z.BookLibraryAPI.dto.AdminUserDTO(u.id, u.name, u.email, u.createdAt, u.lastModifiedAt, u.role)
+            FROM UserEntity u
+            WHERE (:cursor IS NULL OR u.id > :cursor)
+            ORDER BY u.id
+            """)
+    List<AdminUserDTO> findAdminDtoPage(UUID cursor, Pageable pageable);
 }
@@ -0,0 +1,125 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.AdminUserDTO;
+import com.faust0z.BookLibraryAPI.dto.AuditLoanDTO;
+import com.faust0z.BookLibraryAPI.dto.BookDTO;
+import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import com.faust0z.BookLibraryAPI.repository.LoanRepository;
+import com.faust0z.BookLibraryAPI.repository.UserRepository;
+import com.faust0z.BookLibraryAPI.service.ExcelService.SheetColumn;
+import com.faust0z.BookLibraryAPI.service.ExcelService.SheetSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Builds the workbook auditors ask for: the Books, Users and Loans sheets, loans named with their user and book.
+ * Every sheet is read in keyset pages of DTOs, so only one page and the workbook's row window are in memory at a time.
+ */
+@Slf4j
+@Service
+public class AuditExportService {
+
+    static final int PAGE_SIZE = 1000;
+
+    private static final List<SheetColumn<BookDTO>> BOOK_COLUMNS = List.of(
+            new SheetColumn<>("ID", BookDTO::getId),
+            new SheetColumn<>("Title", BookDTO::getName),
+            new SheetColumn<>("Author", BookDTO::getAuthor),
+            new SheetColumn<>("Publication Date", BookDTO::getPublicationDate),
+            new SheetColumn<>("Available Copies", BookDTO::getCopies),
+            new SheetColumn<>("Created At", BookDTO::getCreatedAt),
+            new SheetColumn<>("Last Modified At", BookDTO::getLastModifiedAt)
+    );
+
+    private static final List<SheetColumn<AdminUserDTO>> USER_COLUMNS = List.of(
+            new SheetColumn<>("ID", AdminUserDTO::getId),
+            new SheetColumn<>("Name", AdminUserDTO::getName),
+            new SheetColumn<>("Email", AdminUserDTO::getEmail),
+            new SheetColumn<>("Role", AdminUserDTO::getRole),
+            new SheetColumn<>("Created At", AdminUserDTO::getCreatedAt),
+            new SheetColumn<>("Last Modified At", AdminUserDTO::getLastModifiedAt)
+    );
+
+    private static final List<SheetColumn<AuditLoanDTO>> LOAN_COLUMNS = List.of(
+            new SheetColumn<>("ID", AuditLoanDTO::getId),
+            new SheetColumn<>("User ID", AuditLoanDTO::getUserId),
+            new SheetColumn<>("User", AuditLoanDTO::getUserName),
+            new SheetColumn<>("Email", AuditLoanDTO::getUserEmail),
+            new SheetColumn<>("Book ID", AuditLoanDTO::getBookId),
+            new SheetColumn<>("Title", AuditLoanDTO::getBookName),
+            new SheetColumn<>("Author", AuditLoanDTO::getBookAuthor),
+            new SheetColumn<>("Loan Date", AuditLoanDTO::getLoanDate),
+            new SheetColumn<>("Due Date", AuditLoanDTO::getDueDate),
+            new SheetColumn<>("Return Date", AuditLoanDTO::getReturnDate)
+    );
+
+    private final BookRepository bookRepository;
+    private final UserRepository userRepository;
+    private final LoanRepository loanRepository;
+    private final ExcelService excelService;
+
+    public AuditExportService(BookRepository bookRepository, UserRepository userRepository,
+                              LoanRepository loanRepository, ExcelService excelService) {
+        this.bookRepository = bookRepository;
+        this.userRepository = userRepository;
+        this.loanRepository = loanRepository;
+        this.excelService = excelService;
+    }
+
+    // Repeatable read makes every page see the same snapshot, so the sheets agree with each other
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void exportAuditWorkbook(OutputStream out) {
+        log.info("Initiating audit export");
+        List<SheetSource<?>> sheets = List.of(
+                new SheetSource<>("Books", BOOK_COLUMNS, keysetPages(
+                        (cursor, page) -> bookRepository.findPage(null, null, null, cursor, page), BookDTO::getId)),
+                new SheetSource<>("Users", USER_COLUMNS, keysetPages(userRepository::findAdminDtoPage, AdminUserDTO::getId)),
+                new SheetSource<>("Loans", LOAN_COLUMNS, keysetPages(loanRepository::findAuditPage, AuditLoanDTO::getId))
+        );
+        excelService.exportSheets(sheets, out);
+    }
+
+    /**
+     * Iterates over every row of a keyset paged query, fetching the next page once the current one is consumed.
+     */
+    static <T> Iterator<T> keysetPages(BiFunction<UUID, Pageable, List<T>> query, Function<T, UUID> key) {
+        Pageable pageable = PageRequest.ofSize(PAGE_SIZE);
+        return new Iterator<>() {
+            private List<T> page = List.of();
+            private int index;
+            private UUID cursor;
+            private boolean lastPage;
+
+            @Override
+            public boolean hasNext() {
+                if (index < page.size()) return true;
+                if (lastPage) return false;
+
+                page = query.apply(cursor, pageable);
+                index = 0;
+                // A short page is the last one, saves a query returning nothing
+                lastPage = page.size() < PAGE_SIZE;
+                if (!page.isEmpty()) cursor = key.apply(page.getLast());
+                return !page.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return page.get(index++);
+            }
+        };
+    }
+}
@@ -0,0 +1,192 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.BookAvailabilityDTO;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.event.RemoteBooksChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes the new amount of copies of changed books to every Server-Sent Events subscriber.
+ * Idle subscribers are only an entry in a map: no thread is held per connection. Each change is serialized once on a
+ * single background thread and queued for every subscriber, a virtual thread then writes it to the emitter, so a
+ * slow client never holds up the others.
+ * <p>
+ * Loans handled by other instances arrive through {@link BookChangesRelay}, so a subscriber sees every change
+ * whichever instance it is connected to.
+ */
+@Slf4j
+@Service
+public class BookAvailabilityFeed {
+
+    static final String EVENT_NAME = "availability";
+    // Clients reconnect on their own (EventSource does it automatically), so connections are recycled now and then
+    private static final long SUBSCRIPTION_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(30);
+    // Lets proxies keep the connection open and drops subscribers whose socket is gone
+    private static final long HEARTBEAT_SECONDS = 30;
+    // Messages queued for a subscriber whose earlier sends have not finished, they are shared with every other
+    // subscriber. One this far behind is dropped, its EventSource reconnects and starts over from the current copies
+    static final int MAX_PENDING_MESSAGES = 256;
+
+    private final ObjectMapper objectMapper;
+    // A single thread keeps the events in commit order for every subscriber
+    private final ScheduledExecutorService executor;
+    private final ExecutorService senders;
+    private final Map<SseEmitter, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BookAvailabilityFeed(ObjectMapper objectMapper) {
+        this(objectMapper, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "book-availability-feed");
+            thread.setDaemon(true);
+            return thread;
+        }), Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("book-availability-sender-", 0).factory()));
+    }
+
+    BookAvailabilityFeed(ObjectMapper objectMapper, ScheduledExecutorService executor, ExecutorService senders) {
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.senders = senders;
+        executor.scheduleWithFixedDelay(this::sendHeartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(SUBSCRIPTION_TIMEOUT_MS);
+        register(emitter);
+        return emitter;
+    }
+
+    void register(SseEmitter emitter) {
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        subscribers.put(emitter, new Subscriber(emitter));
+        log.debug("Availability feed subscriber added, {} subscribers", subscribers.size());
+    }
+
+    // Only runs once the transaction commits, so rolled back loans are never announced
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BooksChangedEvent event) {
+        if (subscribers.isEmpty()) return;
+
+        List<BookAvailabilityDTO> changes = new ArrayList<>(event.books().size());
+        event.books().forEach(book -> changes.add(new BookAvailabilityDTO(book.id(), book.copies())));
+        executor.execute(() -> broadcast(changes));
+    }
+
+    @EventListener
+    public void onRemoteBooksChanged(RemoteBooksChangedEvent event) {
+        onBooksChanged(new BooksChangedEvent(event.books()));
+    }
+
+    private void broadcast(List<BookAvailabilityDTO> changes) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(changes);
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialize availability changes. Error: {}", e.getMessage());
+            return;
+        }
+
+        // Built once and reused, building it again per subscriber would append the terminator twice
+        Set<ResponseBodyEmitter.DataWithMediaType> message = SseEmitter.event().name(EVENT_NAME).data(json).build();
+        sendToAll(message);
+        log.debug("Sent availability of {} books to {} subscribers", changes.size(), subscribers.size());
+    }
+
+    private void sendHeartbeat() {
+        if (!subscribers.isEmpty()) {
+            sendToAll(SseEmitter.event().comment("heartbeat").build());
+        }
+    }
+
+    // Only queues the message, a subscriber whose socket is stuck blocks its own sender and nothing else
+    private void sendToAll(Set<ResponseBodyEmitter.DataWithMediaType> message) {
+        subscribers.values().forEach(subscriber -> subscriber.offer(message));
+    }
+
+    // Runs before the graceful shutdown starts, open streams would otherwise hold it until the timeout
+    @EventListener(ContextClosedEvent.class)
+    public void closeSubscriptions() {
+        subscribers.keySet().forEach(SseEmitter::complete);
+        subscribers.clear();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    /**
+     * The messages not yet sent to one emitter. Only one sender drains them at a time, so each subscriber receives
+     * the events in order.
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> pending =
+                new ArrayBlockingQueue<>(MAX_PENDING_MESSAGES);
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> message) {
+            if (!pending.offer(message)) {
+                log.warn("Availability feed subscriber is {} messages behind, dropping it", MAX_PENDING_MESSAGES);
+                subscribers.remove(emitter);
+                pending.clear();
+                // Completing waits for the send in progress, which is what is stuck
+                senders.execute(emitter::complete);
+                return;
+            }
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::sendPending);
+            }
+        }
+
+        // Checks the queue again after releasing the flag, a message offered meanwhile found it still taken
+        private void sendPending() {
+            do {
+                Set<ResponseBodyEmitter.DataWithMediaType> message;
+                while ((message = pending.poll()) != null) {
+                    try {
+                        emitter.send(message);
+                    } catch (IOException | IllegalStateException e) {
+                        // The client went away, completing the emitter releases the async request
+                        subscribers.remove(emitter);
+                        pending.clear();
+                        emitter.completeWithError(e);
+                        return;
+                    }
+                }
+                sending.set(false);
+            } while (!pending.isEmpty() && sending.compareAndSet(false, true));
+        }
+    }
+}
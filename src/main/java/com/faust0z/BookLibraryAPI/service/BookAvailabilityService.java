@@ -0,0 +1,122 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.BookAvailabilityDTO;
+import com.faust0z.BookLibraryAPI.dto.BookDTO;
+import com.faust0z.BookLibraryAPI.dto.BookPageDTO;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Serves the amount of available copies separately from the cached book metadata.
+ * Copies change on every loan and return, so keeping them out of the "books" and "book_pages" caches
+ * means those are only invalidated by real metadata edits. The copies of a whole page are read from Redis with one
+ * MGET and the misses written back in one pipeline, so a page costs two round trips however many books it has.
+ */
+@Slf4j
+@Service
+public class BookAvailabilityService {
+
+    static final String KEY_PREFIX = "book_copies::";
+    // Evicted on every loan and return, the short TTL only bounds staleness from racing reads
+    static final Duration TTL = Duration.ofSeconds(30);
+
+    private final BookRepository bookRepository;
+    private final StringRedisTemplate redisTemplate;
+
+    public BookAvailabilityService(BookRepository bookRepository, StringRedisTemplate redisTemplate) {
+        this.bookRepository = bookRepository;
+        this.redisTemplate = redisTemplate;
+    }
+
+    public BookDTO withAvailability(BookDTO book) {
+        book.setCopies(getCopies(List.of(book.getId())).get(book.getId()));
+        return book;
+    }
+
+    public BookPageDTO withAvailability(BookPageDTO page) {
+        Map<UUID, Integer> copies = getCopies(page.getBooks().stream().map(BookDTO::getId).toList());
+        page.getBooks().forEach(book -> book.setCopies(copies.get(book.getId())));
+        return page;
+    }
+
+    public Map<UUID, Integer> getCopies(Collection<UUID> bookIds) {
+        List<UUID> ids = List.copyOf(bookIds);
+        List<String> cached = getCached(ids);
+        Map<UUID, Integer> copies = new HashMap<>();
+        List<UUID> misses = new ArrayList<>();
+
+        for (int i = 0; i < ids.size(); i++) {
+            String value = cached.get(i);
+            if (value != null) copies.put(ids.get(i), Integer.valueOf(value));
+            else misses.add(ids.get(i));
+        }
+
+        if (!misses.isEmpty()) {
+            log.debug("Fetching available copies of {} books from database", misses.size());
+            Map<UUID, Integer> fresh = new HashMap<>();
+            for (BookAvailabilityDTO availability : bookRepository.findAvailabilityByIdIn(misses)) {
+                if (availability.getCopies() != null) fresh.put(availability.getBookId(), availability.getCopies());
+            }
+            copies.putAll(fresh);
+            putCached(fresh);
+        }
+        return copies;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BooksChangedEvent event) {
+        if (event.books().isEmpty()) return;
+
+        List<String> keys = event.books().stream().map(book -> key(book.id())).toList();
+        try {
+            redisTemplate.delete(keys);
+        } catch (RuntimeException e) {
+            log.error("Redis book copies DEL failed for {} keys. Error: {}", keys.size(), e.getMessage());
+        }
+    }
+
+    private static String key(UUID bookId) {
+        return KEY_PREFIX + bookId;
+    }
+
+    // A Redis outage is handled as a miss of every book
+    private List<String> getCached(List<UUID> bookIds) {
+        try {
+            List<String> keys = bookIds.stream().map(BookAvailabilityService::key).toList();
+            List<String> values = redisTemplate.opsForValue().multiGet(keys);
+            if (values != null) return values;
+        } catch (RuntimeException e) {
+            log.error("Redis book copies MGET failed for {} keys. Error: {}", bookIds.size(), e.getMessage());
+        }
+        return Collections.nCopies(bookIds.size(), null);
+    }
+
+    // MSET cannot set a TTL, so every SET EX is sent in one pipeline instead
+    private void putCached(Map<UUID, Integer> copies) {
+        if (copies.isEmpty()) return;
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                copies.forEach((bookId, amount) -> redis.setEx(key(bookId), TTL.toSeconds(), amount.toString()));
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.error("Redis book copies SET failed for {} keys. Error: {}", copies.size(), e.getMessage());
+        }
+    }
+}
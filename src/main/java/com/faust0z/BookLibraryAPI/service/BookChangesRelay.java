@@ -0,0 +1,130 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.event.RemoteBooksChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relays committed book changes between instances through Redis pub/sub. A {@link BooksChangedEvent} only reaches
+ * the listeners of the instance that committed it, so the in-memory views of the catalog (the availability feed, the
+ * suggestion index and the facets) would never see the changes made through the others. Each event is published on
+ * {@value #CHANNEL}, and the ones published by other instances come back as a {@link RemoteBooksChangedEvent}.
+ * <p>
+ * Pub/sub does not keep messages, an instance that is disconnected from Redis misses the changes made meanwhile. If
+ * Redis is down when the application starts, subscribing is retried every {@link #SUBSCRIBE_RETRY_INTERVAL}, once
+ * subscribed the listener container reconnects on its own.
+ */
+@Slf4j
+@Service
+public class BookChangesRelay implements MessageListener {
+
+    static final String CHANNEL = "books:changed";
+    static final Duration SUBSCRIBE_RETRY_INTERVAL = Duration.ofSeconds(30);
+
+    record RelayedChange(UUID origin, List<BookSnapshot> books) {
+    }
+
+    // Every instance also receives its own messages, they were already applied locally when they were committed
+    private final UUID instanceId = UUID.randomUUID();
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ScheduledExecutorService subscriber;
+
+    @Autowired
+    public BookChangesRelay(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                            ApplicationEventPublisher eventPublisher, RedisMessageListenerContainer listenerContainer) {
+        this(redisTemplate, objectMapper, eventPublisher, listenerContainer,
+                Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "book-changes-subscriber");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    BookChangesRelay(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                     ApplicationEventPublisher eventPublisher, RedisMessageListenerContainer listenerContainer,
+                     ScheduledExecutorService subscriber) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.listenerContainer = listenerContainer;
+        this.subscriber = subscriber;
+    }
+
+    // Subscribing waits for Redis, so it is done in the background instead of holding up the startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void startListening() {
+        subscriber.execute(this::subscribe);
+    }
+
+    private void subscribe() {
+        try {
+            listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+            log.info("Listening for book changes of other instances on {}", CHANNEL);
+        } catch (RuntimeException e) {
+            // Adding the listener again is what retries the subscription
+            listenerContainer.removeMessageListener(this);
+            log.error("Redis SUBSCRIBE to {} failed, retrying in {}. Error: {}",
+                    CHANNEL, SUBSCRIBE_RETRY_INTERVAL, e.getMessage());
+            subscriber.schedule(this::subscribe, SUBSCRIBE_RETRY_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscriber.shutdownNow();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BooksChangedEvent event) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL,
+                    objectMapper.writeValueAsString(new RelayedChange(instanceId, event.books())));
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialize {} changed books. Error: {}", event.books().size(), e.getMessage());
+        } catch (RuntimeException e) {
+            // The other instances miss this change, like any sent while they are disconnected
+            log.error("Redis PUBLISH of {} changed books failed. Error: {}", event.books().size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        RelayedChange change;
+        try {
+            change = objectMapper.readValue(message.getBody(), RelayedChange.class);
+        } catch (IOException e) {
+            log.error("Could not read relayed book changes. Error: {}", e.getMessage());
+            return;
+        }
+        if (instanceId.equals(change.origin())) return;
+
+        log.debug("Received {} books changed by instance {}", change.books().size(), change.origin());
+        eventPublisher.publishEvent(new RemoteBooksChangedEvent(change.books()));
+    }
+}
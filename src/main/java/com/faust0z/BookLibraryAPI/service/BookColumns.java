@@ -0,0 +1,101 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.exception.ExcelProcessingException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The columns of book import and export files, shared by every file format.
+ * Headers name the columns in spreadsheets and CSV files, fields name them in JSON.
+ */
+@Slf4j
+final class BookColumns {
+
+    record Column(
+            String header,
+            String field,
+            Function<BookEntity, Object> extractor,
+            BiConsumer<BookEntity, String> importer
+    ) {
+    }
+
+    static final List<Column> COLUMNS = List.of(
+            new Column("Title", "name", BookEntity::getName, BookEntity::setName),
+            new Column("Author", "author", BookEntity::getAuthor, BookEntity::setAuthor),
+            new Column("Publication Date", "publicationDate", BookEntity::getPublicationDate, (book, value) -> book.setPublicationDate(parseDate(value))),
+            new Column("Available Copies", "copies", BookEntity::getCopies, (book, value) -> book.setCopies((int) parseNumber(value)))
+    );
+
+    private BookColumns() {
+    }
+
+    static Map<String, Integer> mapHeaders(Map<Integer, String> headerRow) {
+        log.debug("Mapping file headers to column indices");
+        Map<String, Integer> headerMap = new HashMap<>();
+        headerRow.forEach((colIdx, val) -> {
+            if (!val.isEmpty()) {
+                headerMap.put(val, colIdx);
+                log.debug("Found header '{}' at index {}", val, colIdx);
+            }
+        });
+        return headerMap;
+    }
+
+    static void validateHeaders(Map<String, Integer> headerMap) {
+        COLUMNS.stream()
+                .map(Column::header)
+                .filter(header -> !headerMap.containsKey(header))
+                .findFirst()
+                .ifPresent(missing -> {
+                    log.error("Missing required header: {}", missing);
+                    throw new ExcelProcessingException("Missing required column: " + missing);
+                });
+    }
+
+    static BookEntity toBook(Map<String, Integer> headerMap, Map<Integer, String> values) {
+        BookEntity book = new BookEntity();
+        for (Column column : COLUMNS) {
+            Integer colIdx = headerMap.get(column.header());
+            if (colIdx != null) {
+                column.importer().accept(book, values.getOrDefault(colIdx, ""));
+            }
+        }
+        return book;
+    }
+
+    static void validateBook(BookEntity book, int rowNum) {
+        if (book.getName() == null || book.getName().isBlank())
+            throw new ExcelProcessingException("Title is required at row " + rowNum);
+        if (book.getAuthor() == null || book.getAuthor().isBlank())
+            throw new ExcelProcessingException("Author is required at row " + rowNum);
+        if (book.getCopies() != null && book.getCopies() < 0)
+            throw new ExcelProcessingException("Copies cannot be negative at row " + rowNum);
+        if (book.getPublicationDate() == null)
+            throw new ExcelProcessingException("Valid Publication Date is required at row " + rowNum);
+    }
+
+    private static double parseNumber(String val) {
+        try {
+            return val.isEmpty() ? 0 : Double.parseDouble(val);
+        } catch (NumberFormatException e) {
+            log.debug("Could not parse numeric value from '{}'", val);
+            return 0;
+        }
+    }
+
+    private static LocalDate parseDate(String dateStr) {
+        try {
+            return dateStr.isEmpty() ? null : LocalDate.parse(dateStr);
+        } catch (Exception e) {
+            log.debug("Failed to parse date from string '{}'", dateStr);
+            return null;
+        }
+    }
+}
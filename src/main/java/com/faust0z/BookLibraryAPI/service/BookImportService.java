@@ -0,0 +1,237 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.BookFileFormat;
+import com.faust0z.BookLibraryAPI.dto.ImportJobDTO;
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.exception.ExcelProcessingException;
+import com.faust0z.BookLibraryAPI.exception.ResourceNotFoundException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs catalog imports (Excel, CSV or NDJSON files) as background jobs. Rows are parsed as they are read and saved in chunks, each one in its own
+ * transaction, so request threads are released right away and a bad row or chunk does not roll back the whole file.
+ */
+@Slf4j
+@Service
+public class BookImportService {
+
+    private static final int MAX_ERRORS = 20;
+    private static final Duration FINISHED_JOB_TTL = Duration.ofHours(1);
+
+    private final ExcelService excelService;
+    private final CsvService csvService;
+    private final NdjsonService ndjsonService;
+    private final BookService bookService;
+    private final ExecutorService executor;
+    private final int chunkSize;
+
+    // Jobs only live in this instance's memory, so their status must be asked to the instance that received the upload
+    private final Map<UUID, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BookImportService(ExcelService excelService, CsvService csvService, NdjsonService ndjsonService,
+                             BookService bookService,
+                             @Value("${app.book-import.chunk-size:500}") int chunkSize,
+                             @Value("${app.book-import.threads:2}") int threads,
+                             @Value("${app.book-import.queue-capacity:10}") int queueCapacity) {
+        this(excelService, csvService, ndjsonService, bookService, chunkSize, newExecutor(threads, queueCapacity));
+    }
+
+    BookImportService(ExcelService excelService, CsvService csvService, NdjsonService ndjsonService,
+                      BookService bookService, int chunkSize, ExecutorService executor) {
+        this.excelService = excelService;
+        this.csvService = csvService;
+        this.ndjsonService = ndjsonService;
+        this.bookService = bookService;
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+    }
+
+    private static ExecutorService newExecutor(int threads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "book-import-" + threadCount.incrementAndGet()));
+    }
+
+    /**
+     * Buffers the upload to a temp file, since the multipart file is deleted when the request ends, and queues the job.
+     *
+     * @throws RejectedExecutionException when too many imports are already waiting
+     */
+    public ImportJobDTO submit(InputStream upload, ImportJobDTO.Mode mode, BookFileFormat format) {
+        purgeFinishedJobs();
+
+        Path file = null;
+        try {
+            file = Files.createTempFile("book-import-", "." + format.getExtension());
+            Files.copy(upload, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteQuietly(file);
+            log.error("Failed to buffer import upload: {}", e.getMessage(), e);
+            throw new ExcelProcessingException("Import failed: " + e.getMessage());
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID(), mode, format);
+        jobs.put(job.id, job);
+        Path uploadedFile = file;
+        try {
+            executor.execute(() -> run(job, uploadedFile));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            deleteQuietly(uploadedFile);
+            log.warn("Import job rejected, too many imports in progress");
+            throw new RejectedExecutionException("Too many imports in progress, try again later");
+        }
+
+        log.info("Import job {} queued for a {} file in {} mode", job.id, format, mode);
+        return job.toDto();
+    }
+
+    public ImportJobDTO getJob(UUID jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) throw new ResourceNotFoundException("Import job not found with id: " + jobId);
+        return job.toDto();
+    }
+
+    private void run(ImportJob job, Path file) {
+        job.startedAt = Instant.now();
+        job.status = ImportJobDTO.Status.RUNNING;
+        log.info("Import job {} started", job.id);
+
+        List<BookEntity> chunk = new ArrayList<>(chunkSize);
+        try {
+            readBooks(job.format, file, book -> {
+                chunk.add(book);
+                if (chunk.size() >= chunkSize) saveChunk(job, chunk);
+            }, invalidRow -> job.fail(1, invalidRow.getMessage()));
+            saveChunk(job, chunk);
+            job.finish(ImportJobDTO.Status.COMPLETED);
+        } catch (RuntimeException e) {
+            // Only errors affecting the whole file (e.g. missing headers) get here, rows saved so far are kept
+            job.addError(e.getMessage());
+            job.finish(ImportJobDTO.Status.FAILED);
+        } finally {
+            deleteQuietly(file);
+        }
+
+        log.info("Import job {} {}: {} books saved ({} changed), {} rows failed", job.id, job.status, job.processed.get(),
+                job.changed.get(), job.failed.get());
+    }
+
+    private void readBooks(BookFileFormat format, Path file, Consumer<BookEntity> consumer,
+                           Consumer<ExcelProcessingException> onInvalidRow) {
+        switch (format) {
+            case XLSX -> excelService.readBooksFromExcel(file, consumer, onInvalidRow);
+            case CSV -> csvService.readBooksFromCsv(file, consumer, onInvalidRow);
+            case NDJSON -> ndjsonService.readBooksFromNdjson(file, consumer, onInvalidRow);
+        }
+    }
+
+    private void saveChunk(ImportJob job, List<BookEntity> chunk) {
+        if (chunk.isEmpty()) return;
+
+        try {
+            int changed;
+            if (job.mode == ImportJobDTO.Mode.UPSERT) {
+                changed = bookService.upsertImportedBooks(chunk);
+            } else {
+                bookService.saveImportedBooks(chunk);
+                changed = chunk.size();
+            }
+            job.processed.addAndGet(chunk.size());
+            job.changed.addAndGet(changed);
+        } catch (RuntimeException e) {
+            log.warn("Import job {} failed to save a chunk of {} books: {}", job.id, chunk.size(), e.getMessage());
+            job.fail(chunk.size(), "Could not save " + chunk.size() + " books: " + e.getMessage());
+        }
+        chunk.clear();
+    }
+
+    private void purgeFinishedJobs() {
+        Instant threshold = Instant.now().minus(FINISHED_JOB_TTL);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(threshold));
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete temporary import file {}: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class ImportJob {
+        private final UUID id;
+        private final ImportJobDTO.Mode mode;
+        private final BookFileFormat format;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong changed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final List<String> errors = new ArrayList<>();
+        private volatile ImportJobDTO.Status status = ImportJobDTO.Status.QUEUED;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+
+        private ImportJob(UUID id, ImportJobDTO.Mode mode, BookFileFormat format) {
+            this.id = id;
+            this.mode = mode;
+            this.format = format;
+        }
+
+        private void fail(int rows, String error) {
+            failed.addAndGet(rows);
+            addError(error);
+        }
+
+        private synchronized void addError(String error) {
+            if (errors.size() < MAX_ERRORS) errors.add(error);
+        }
+
+        private void finish(ImportJobDTO.Status finalStatus) {
+            finishedAt = Instant.now();
+            status = finalStatus;
+        }
+
+        private synchronized ImportJobDTO toDto() {
+            long rows = processed.get() + failed.get();
+            double rowsPerSecond = 0;
+            if (startedAt != null) {
+                long elapsedMs = Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toMillis();
+                rowsPerSecond = elapsedMs > 0 ? rows * 1000.0 / elapsedMs : rows;
+            }
+            return new ImportJobDTO(id, status, mode, format, processed.get(), changed.get(), failed.get(), rowsPerSecond,
+                    startedAt, finishedAt, new ArrayList<>(errors));
+        }
+    }
+}
@@ -1,22 +1,49 @@
 package com.faust0z.BookLibraryAPI.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.faust0z.BookLibraryAPI.dto.AdminBookDTO;
 import com.faust0z.BookLibraryAPI.dto.BookDTO;
+import com.faust0z.BookLibraryAPI.dto.BookFileFormat;
+import com.faust0z.BookLibraryAPI.dto.BookPageDTO;
+import com.faust0z.BookLibraryAPI.dto.BookSuggestionDTO;
+import com.faust0z.BookLibraryAPI.dto.BulkBookRequestDTO;
+import com.faust0z.BookLibraryAPI.dto.BulkBookResultDTO;
 import com.faust0z.BookLibraryAPI.dto.CreateBookDTO;
 import com.faust0z.BookLibraryAPI.dto.UpdateBookDTO;
 import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
 import com.faust0z.BookLibraryAPI.exception.ResourceNotFoundException;
 import com.faust0z.BookLibraryAPI.mapper.BookMapper;
 import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import jakarta.persistence.EntityManager;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -25,17 +52,94 @@ public class BookService {
     private final BookRepository bookRepository;
     private final BookMapper bookMapper;
     private final ExcelService excelService;
+    private final CsvService csvService;
+    private final NdjsonService ndjsonService;
+    private final BookSuggestionIndex bookSuggestionIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final CacheManager cacheManager;
+    private final CatalogVersionService catalogVersionService;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SUGGESTIONS = 20;
+    private static final int BATCH_SIZE = 50; // Same as hibernate.jdbc.batch_size
 
-    public BookService(BookRepository bookRepository, BookMapper bookMapper, ExcelService excelService) {
+    public BookService(BookRepository bookRepository, BookMapper bookMapper, ExcelService excelService,
+                       CsvService csvService, NdjsonService ndjsonService, BookSuggestionIndex bookSuggestionIndex, ApplicationEventPublisher eventPublisher,
+                       EntityManager entityManager, ObjectMapper objectMapper, CacheManager cacheManager,
+                       CatalogVersionService catalogVersionService) {
         this.bookRepository = bookRepository;
         this.bookMapper = bookMapper;
         this.excelService = excelService;
+        this.csvService = csvService;
+        this.ndjsonService = ndjsonService;
+        this.bookSuggestionIndex = bookSuggestionIndex;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.cacheManager = cacheManager;
+        this.catalogVersionService = catalogVersionService;
     }
 
-    @Cacheable(value = "books", key = "'list:all'")
-    public List<BookDTO> getAllBooks() {
-        log.debug("Fetching all books from database");
-        return bookMapper.toDtoList(bookRepository.findAll());
+    // Keyed by the pages version, so a write retires the cached pages by bumping it instead of deleting every page
+    @Cacheable(value = "book_pages", key = "@catalogVersionService.getPagesVersionKey()"
+            + " + ':' + #author + ':' + #year + ':' + #cursor + ':' + #size")
+    public BookPageDTO getBooks(String author, Integer year, UUID cursor, Integer size) {
+        int pageSize = (size == null || size < 1) ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        LocalDate publishedFrom = year != null ? Year.of(year).atDay(1) : null;
+        LocalDate publishedTo = year != null ? Year.of(year).atMonth(12).atEndOfMonth() : null;
+        log.debug("Fetching books page after cursor {} (author: {}, year: {}, size: {})", cursor, author, year, pageSize);
+
+        // Fetch one extra row to know if there is a next page without running a COUNT query
+        List<BookDTO> books = bookRepository.findPage(author, publishedFrom, publishedTo, cursor,
+                PageRequest.of(0, pageSize + 1));
+
+        boolean hasNext = books.size() > pageSize;
+        List<BookDTO> page = hasNext ? new ArrayList<>(books.subList(0, pageSize)) : books;
+        UUID nextCursor = hasNext ? page.getLast().getId() : null;
+
+        return new BookPageDTO(page, nextCursor);
+    }
+
+    /**
+     * Writes the whole catalog as a JSON array one book at a time, so memory use does not grow with the catalog.
+     */
+    @Transactional(readOnly = true)
+    public void writeAllBooksAsJson(OutputStream out) throws IOException {
+        log.debug("Streaming all books from database");
+        ObjectWriter writer = objectMapper.writerFor(BookDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (Stream<BookEntity> books = bookRepository.streamAll();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+
+            Iterator<BookEntity> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                BookEntity book = iterator.next();
+                writer.writeValue(generator, bookMapper.toDto(book));
+                entityManager.detach(book); // Otherwise the persistence context keeps every streamed book
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    public List<BookDTO> searchBooks(String query, Integer page, Integer size) {
+        if (query == null || query.isBlank()) return List.of();
+
+        int pageSize = (size == null || size < 1) ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        int pageNumber = (page == null || page < 0) ? 0 : page;
+        log.debug("Searching books for '{}' (page: {}, size: {})", query, pageNumber, pageSize);
+
+        // An int page times the page size can overflow an int, never a long. A page past the results is just empty
+        long offset = (long) pageNumber * pageSize;
+        return bookMapper.toDtoList(bookRepository.search(query.trim(), pageSize, offset));
+    }
+
+    public List<BookSuggestionDTO> suggestBooks(String query, Integer limit) {
+        int maxSuggestions = (limit == null || limit < 1) ? 10 : Math.min(limit, MAX_SUGGESTIONS);
+        return bookSuggestionIndex.suggest(query, maxSuggestions);
     }
 
     @Cacheable(value = "books", key = "'details:' + #bookId")
@@ -47,20 +151,18 @@ public class BookService {
         return bookMapper.toDto(book);
     }
 
-    @CacheEvict(value = "books", key = "'list:all'")
     @Transactional
     public AdminBookDTO createBook(CreateBookDTO dto) {
         log.debug("Creating new book: {}", dto.getName());
         BookEntity book = bookMapper.toEntity(dto);
 
         BookEntity savedBook = bookRepository.save(book);
+        eventPublisher.publishEvent(BooksChangedEvent.of(savedBook));
+        retireCachedPages();
         return bookMapper.toAdminDto(savedBook);
     }
 
-    @Caching(evict = {
-            @CacheEvict(value = "books", key = "'details:' + #bookId"),
-            @CacheEvict(value = "books", key = "'list:all'")
-    })
+    @CacheEvict(value = "books", key = "'details:' + #bookId")
     @Transactional
     public AdminBookDTO updateBook(UUID bookId, UpdateBookDTO dto) {
         log.debug("Updating book with id: {}", bookId);
@@ -69,22 +171,136 @@ public class BookService {
         bookMapper.updateBookFromDto(dto, existingBook);
 
         BookEntity updatedBook = bookRepository.save(existingBook);
+        eventPublisher.publishEvent(BooksChangedEvent.of(updatedBook));
+        retireCachedPages();
         return bookMapper.toAdminDto(updatedBook);
     }
 
-    public byte[] exportBooksToExcel() {
-        log.debug("Fetching all books for Excel export");
-        List<BookEntity> books = bookRepository.findAll();
-        return excelService.exportBooksToExcel(books);
+    /**
+     * Creates and updates many books in one transaction. Rows are flushed in JDBC batches and the
+     * persistence context is cleared after each one, so no entity outlives its batch. Only a snapshot of
+     * each changed book is kept for the change event, which also evicts their cached details.
+     */
+    @Transactional
+    public BulkBookResultDTO bulkSaveBooks(BulkBookRequestDTO dto) {
+        log.info("Starting bulk save: {} books to create, {} to update", dto.getCreate().size(), dto.getUpdate().size());
+        List<BookSnapshot> changedBooks = new ArrayList<>(dto.getCreate().size() + dto.getUpdate().size());
+
+        List<UUID> ids = new ArrayList<>(dto.getUpdate().keySet());
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<UUID> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            List<BookEntity> books = bookRepository.findAllById(batch);
+            if (books.size() != batch.size()) {
+                Set<UUID> missing = new HashSet<>(batch);
+                books.forEach(book -> missing.remove(book.getId()));
+                throw new ResourceNotFoundException("Books not found with ids: " + missing);
+            }
+
+            books.forEach(book -> bookMapper.updateBookFromDto(dto.getUpdate().get(book.getId()), book));
+            flushAndClear();
+            books.forEach(book -> changedBooks.add(BookSnapshot.from(book)));
+        }
+
+        List<BookEntity> newBooks = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < dto.getCreate().size(); i++) {
+            newBooks.add(bookMapper.toEntity(dto.getCreate().get(i)));
+            if (newBooks.size() == BATCH_SIZE || i == dto.getCreate().size() - 1) {
+                bookRepository.saveAll(newBooks);
+                flushAndClear();
+                newBooks.forEach(book -> changedBooks.add(BookSnapshot.from(book)));
+                newBooks = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+
+        eventPublisher.publishEvent(new BooksChangedEvent(changedBooks));
+        retireCachedPages();
+        log.info("Bulk save completed: {} books created, {} updated", dto.getCreate().size(), ids.size());
+        return new BulkBookResultDTO(dto.getCreate().size(), ids.size());
+    }
+
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Transactional(readOnly = true)
+    public void exportBooks(BookFileFormat format, OutputStream out) {
+        log.debug("Streaming all books for {} export", format);
+        try (Stream<BookEntity> books = bookRepository.streamAll()) {
+            // Each book is detached as soon as it is read, otherwise the persistence context keeps every streamed book
+            Stream<BookEntity> detached = books.peek(entityManager::detach);
+            switch (format) {
+                case XLSX -> excelService.exportBooksToExcel(detached, out);
+                case CSV -> csvService.exportBooksToCsv(detached, out);
+                case NDJSON -> ndjsonService.exportBooksToNdjson(detached, out);
+            }
+        }
     }
 
-    @CacheEvict(value = "books", allEntries = true)
+    /**
+     * Saves one chunk of an import job. Each chunk gets its own transaction, so a failure only rolls back its own rows.
+     * Rows are streamed with COPY, which is far faster than INSERTs for new books.
+     */
     @Transactional
-    public int importBooksFromExcel(java.io.InputStream is) {
-        log.info("Starting bulk book import from Excel");
-        List<BookEntity> books = excelService.importBooksFromExcel(is);
-        bookRepository.saveAll(books);
-        return books.size();
+    public void saveImportedBooks(List<BookEntity> books) {
+        log.debug("Saving chunk of {} imported books", books.size());
+        bookRepository.copyInsert(books);
+        eventPublisher.publishEvent(BooksChangedEvent.of(books));
+        retireCachedPages();
     }
 
-}
\ No newline at end of file
+    /**
+     * Upserts one chunk of an import job on the books' natural key (name, author and publication date), so importing
+     * the same file again does not create duplicates. Only inserted or changed books are announced, which evicts their
+     * cached details, and the cached pages are kept when nothing changed.
+     *
+     * @return the amount of books inserted or updated
+     */
+    @Transactional
+    public int upsertImportedBooks(List<BookEntity> books) {
+        log.debug("Upserting chunk of {} imported books", books.size());
+        List<BookSnapshot> changedBooks = bookRepository.upsertByNaturalKey(books);
+        if (!changedBooks.isEmpty()) {
+            eventPublisher.publishEvent(new BooksChangedEvent(changedBooks));
+            retireCachedPages();
+        }
+        return changedBooks.size();
+    }
+
+    /**
+     * Bumps the pages version once the transaction commits. A page read before the commit is cached under the old
+     * version, which no request asks for anymore, and the old pages expire with their TTL. Loans do not call it, the
+     * pages do not hold the copies.
+     */
+    private void retireCachedPages() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            catalogVersionService.bumpPagesVersion();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                catalogVersionService.bumpPagesVersion();
+            }
+        });
+    }
+
+    /**
+     * Every committed book write changes the book's {@code lastModifiedAt}, including upserted imports and loans, so
+     * the cached details of each changed book are evicted once it commits.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BooksChangedEvent event) {
+        Cache books = cacheManager.getCache("books");
+        if (books == null) return;
+
+        for (BookSnapshot book : event.books()) {
+            try {
+                books.evict("details:" + book.id());
+            } catch (RuntimeException e) {
+                // Direct cache calls skip the CacheErrorHandler, the entry expires with its TTL
+                log.error("Redis Cache EVICT failed for key: details:{}. Error: {}", book.id(), e.getMessage());
+            }
+        }
+    }
+}
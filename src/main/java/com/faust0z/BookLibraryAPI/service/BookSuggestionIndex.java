@@ -0,0 +1,380 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.BookSuggestionDTO;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.event.RemoteBooksChangedEvent;
+import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix index over book titles and authors used for autocomplete, so lookups never reach Redis or the
+ * database. Keys live in a radix trie whose nodes keep the int ids of the suggestions ending there, a lookup walks down
+ * the prefix and collects ids from that subtree in key order until the limit is reached.
+ * <p>
+ * Books changed through other instances are indexed when {@link BookChangesRelay} delivers them. Changes relayed while
+ * this instance was disconnected from Redis are missing until the next restart rebuilds the index.
+ */
+@Slf4j
+@Service
+public class BookSuggestionIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int MIN_WORD_LENGTH = 3;
+
+    private record Suggestion(String text, BookSuggestionDTO.Type type, UUID bookId) {
+    }
+
+    private record IndexedBook(String name, String author, int suggestionId) {
+    }
+
+    private record IndexedAuthor(int suggestionId, int books) {
+    }
+
+    private final BookRepository bookRepository;
+
+    // Lookups only hold the read lock, and writes are rare compared to them
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private TrieNode root = new TrieNode("");
+    // Indexed by suggestion id, ids of removed suggestions are reused
+    private final List<Suggestion> suggestions = new ArrayList<>();
+    private final Deque<Integer> freeIds = new ArrayDeque<>();
+    private final Map<UUID, IndexedBook> indexedBooks = new HashMap<>();
+    private final Map<String, IndexedAuthor> indexedAuthors = new HashMap<>();
+
+    public BookSuggestionIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    // Only the id, name and author are used, the projection skips hydrating entities
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        log.info("Building book suggestion index");
+        List<BookSnapshot> books = bookRepository.findAllSnapshots();
+        lock.writeLock().lock();
+        try {
+            root = new TrieNode("");
+            suggestions.clear();
+            freeIds.clear();
+            indexedBooks.clear();
+            indexedAuthors.clear();
+            books.forEach(book -> index(book.id(), book.name(), book.author()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Book suggestion index built with {} books and {} suggestions", books.size(), suggestions.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BooksChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (BookSnapshot book : event.books()) {
+                IndexedBook indexed = indexedBooks.get(book.id());
+                // Loans only change copies, there is nothing to reindex
+                if (indexed != null && indexed.name().equals(book.name()) && indexed.author().equals(book.author())) {
+                    continue;
+                }
+
+                remove(book.id());
+                index(book.id(), book.name(), book.author());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Book suggestion index updated with {} books", event.books().size());
+    }
+
+    @EventListener
+    public void onRemoteBooksChanged(RemoteBooksChangedEvent event) {
+        onBooksChanged(new BooksChangedEvent(event.books()));
+    }
+
+    public List<BookSuggestionDTO> suggest(String prefix, int limit) {
+        String normalizedPrefix = normalize(prefix);
+        if (normalizedPrefix.isEmpty() || limit < 1) return List.of();
+
+        lock.readLock().lock();
+        try {
+            // A suggestion is reached through each of its keys, the few found so far are scanned to skip repeats
+            int[] found = new int[limit];
+            int count = collect(root.find(normalizedPrefix), found, 0);
+
+            List<BookSuggestionDTO> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Suggestion suggestion = suggestions.get(found[i]);
+                result.add(new BookSuggestionDTO(suggestion.text(), suggestion.type(), suggestion.bookId()));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Depth first, a node's own ids before its children's, so shorter keys come first
+    private int collect(TrieNode node, int[] found, int count) {
+        if (node == null) return count;
+
+        for (int i = 0; i < node.postingCount && count < found.length; i++) {
+            int id = node.postings[i];
+            if (!contains(found, count, id)) found[count++] = id;
+        }
+        for (int i = 0; i < node.childCount && count < found.length; i++) {
+            count = collect(node.children[i], found, count);
+        }
+        return count;
+    }
+
+    private static boolean contains(int[] ids, int count, int id) {
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id) return true;
+        }
+        return false;
+    }
+
+    private void index(UUID bookId, String name, String author) {
+        if (bookId == null || name == null || author == null) return;
+
+        int titleId = addSuggestion(new Suggestion(name, BookSuggestionDTO.Type.TITLE, bookId));
+        keysFor(name).forEach(key -> root.insert(key, titleId));
+
+        // Authors are shared by many books, so they are only indexed once
+        String normalizedAuthor = normalize(author);
+        IndexedAuthor indexedAuthor = indexedAuthors.get(normalizedAuthor);
+        if (indexedAuthor == null) {
+            int authorId = addSuggestion(new Suggestion(author, BookSuggestionDTO.Type.AUTHOR, null));
+            keysFor(author).forEach(key -> root.insert(key, authorId));
+            indexedAuthors.put(normalizedAuthor, new IndexedAuthor(authorId, 1));
+        } else {
+            indexedAuthors.put(normalizedAuthor, new IndexedAuthor(indexedAuthor.suggestionId(), indexedAuthor.books() + 1));
+        }
+
+        indexedBooks.put(bookId, new IndexedBook(name, author, titleId));
+    }
+
+    private void remove(UUID bookId) {
+        IndexedBook previous = indexedBooks.remove(bookId);
+        if (previous == null) return;
+
+        keysFor(previous.name()).forEach(key -> root.remove(key, previous.suggestionId()));
+        removeSuggestion(previous.suggestionId());
+
+        String normalizedAuthor = normalize(previous.author());
+        IndexedAuthor indexedAuthor = indexedAuthors.get(normalizedAuthor);
+        if (indexedAuthor.books() > 1) {
+            indexedAuthors.put(normalizedAuthor, new IndexedAuthor(indexedAuthor.suggestionId(), indexedAuthor.books() - 1));
+        } else {
+            indexedAuthors.remove(normalizedAuthor);
+            keysFor(previous.author()).forEach(key -> root.remove(key, indexedAuthor.suggestionId()));
+            removeSuggestion(indexedAuthor.suggestionId());
+        }
+    }
+
+    private int addSuggestion(Suggestion suggestion) {
+        Integer freeId = freeIds.poll();
+        if (freeId == null) {
+            suggestions.add(suggestion);
+            return suggestions.size() - 1;
+        }
+        suggestions.set(freeId, suggestion);
+        return freeId;
+    }
+
+    private void removeSuggestion(int id) {
+        suggestions.set(id, null);
+        freeIds.push(id);
+    }
+
+    // The full text plus every suffix starting at a word, so "king" finds "Stephen King"
+    private List<String> keysFor(String text) {
+        String normalized = normalize(text);
+        List<String> keys = new ArrayList<>();
+        keys.add(normalized);
+
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            String rest = normalized.substring(i + 1);
+            int wordEnd = rest.indexOf(' ');
+            if ((wordEnd < 0 ? rest.length() : wordEnd) >= MIN_WORD_LENGTH) {
+                keys.add(rest);
+            }
+        }
+        return keys;
+    }
+
+    private String normalize(String text) {
+        if (text == null) return "";
+        String withoutDiacritics = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return WHITESPACE.matcher(withoutDiacritics.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * A radix trie node: the label is the part of the key between its parent and itself, and children are kept sorted
+     * by the first char of their label. Postings are the ids of the suggestions whose key ends at this node.
+     */
+    private static final class TrieNode {
+
+        private static final int[] NO_POSTINGS = new int[0];
+        private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+
+        private String label;
+        private TrieNode[] children = NO_CHILDREN;
+        private int childCount;
+        private int[] postings = NO_POSTINGS;
+        private int postingCount;
+
+        TrieNode(String label) {
+            this.label = label;
+        }
+
+        // The node holding every key that starts with the prefix, or null when there is none
+        TrieNode find(String prefix) {
+            TrieNode node = this;
+            int depth = 0;
+            while (depth < prefix.length()) {
+                int slot = node.slotOf(prefix.charAt(depth));
+                if (slot < 0) return null;
+
+                TrieNode child = node.children[slot];
+                int matched = commonLength(child.label, prefix, depth);
+                // The prefix ends inside the child's label, so its whole subtree matches
+                if (depth + matched == prefix.length()) return child;
+                if (matched < child.label.length()) return null;
+
+                node = child;
+                depth += matched;
+            }
+            return node;
+        }
+
+        void insert(String key, int id) {
+            TrieNode node = this;
+            int depth = 0;
+            while (depth < key.length()) {
+                int slot = node.slotOf(key.charAt(depth));
+                if (slot < 0) {
+                    TrieNode leaf = new TrieNode(key.substring(depth));
+                    leaf.addPosting(id);
+                    node.addChild(-slot - 1, leaf);
+                    return;
+                }
+
+                TrieNode child = node.children[slot];
+                int matched = commonLength(child.label, key, depth);
+                if (matched < child.label.length()) {
+                    child = child.split(matched);
+                    node.children[slot] = child;
+                }
+                node = child;
+                depth += matched;
+            }
+            node.addPosting(id);
+        }
+
+        // Empty nodes are pruned, and a node left with a single child and no postings is merged into it
+        void remove(String key, int id) {
+            remove(key, 0, id);
+        }
+
+        private void remove(String key, int depth, int id) {
+            if (depth == key.length()) {
+                removePosting(id);
+                return;
+            }
+
+            int slot = slotOf(key.charAt(depth));
+            if (slot < 0) return;
+            TrieNode child = children[slot];
+            if (!key.startsWith(child.label, depth)) return;
+
+            child.remove(key, depth + child.label.length(), id);
+            if (child.postingCount == 0 && child.childCount == 0) {
+                removeChild(slot);
+            } else if (child.postingCount == 0 && child.childCount == 1) {
+                TrieNode grandchild = child.children[0];
+                grandchild.label = child.label + grandchild.label;
+                children[slot] = grandchild;
+            }
+        }
+
+        // Keeps the first chars of the label here and moves the rest, with the postings and children, to a new child
+        private TrieNode split(int length) {
+            TrieNode parent = new TrieNode(label.substring(0, length));
+            label = label.substring(length);
+            parent.addChild(0, this);
+            return parent;
+        }
+
+        private int slotOf(char first) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char middleFirst = children[middle].label.charAt(0);
+                if (middleFirst < first) low = middle + 1;
+                else if (middleFirst > first) high = middle - 1;
+                else return middle;
+            }
+            return -(low + 1);
+        }
+
+        private void addChild(int slot, TrieNode child) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(2, childCount * 2));
+            }
+            System.arraycopy(children, slot, children, slot + 1, childCount - slot);
+            children[slot] = child;
+            childCount++;
+        }
+
+        private void removeChild(int slot) {
+            System.arraycopy(children, slot + 1, children, slot, childCount - slot - 1);
+            children[--childCount] = null;
+        }
+
+        private void addPosting(int id) {
+            for (int i = 0; i < postingCount; i++) {
+                if (postings[i] == id) return;
+            }
+            if (postingCount == postings.length) {
+                postings = Arrays.copyOf(postings, Math.max(2, postingCount * 2));
+            }
+            postings[postingCount++] = id;
+        }
+
+        private void removePosting(int id) {
+            for (int i = 0; i < postingCount; i++) {
+                if (postings[i] == id) {
+                    System.arraycopy(postings, i + 1, postings, i, postingCount - i - 1);
+                    postingCount--;
+                    return;
+                }
+            }
+        }
+
+        private static int commonLength(String label, String key, int offset) {
+            int length = Math.min(label.length(), key.length() - offset);
+            int i = 0;
+            while (i < length && label.charAt(i) == key.charAt(offset + i)) i++;
+            return i;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.BookFileFormat;
+import com.faust0z.BookLibraryAPI.exception.ExcelProcessingException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the catalog exports on local disk, named after the catalog version they were generated at. Every committed
+ * book or loan write bumps that version, so until one happens exports are served from the file instead of being
+ * generated again. Concurrent requests for a missing file wait for a single generation.
+ */
+@Slf4j
+@Service
+public class CatalogExportCache {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A generated export. The file may be deleted once a newer version of it is generated, so it should be
+     * sent right away.
+     */
+    public record CachedExport(Path file, long size, String eTag) {
+
+        /**
+         * Sends {@code length} bytes starting at {@code position} with FileChannel.transferTo. Servlet streams do not
+         * expose the socket, so the JDK cannot use sendfile, but it copies through its own pooled direct buffer.
+         */
+        public void transferTo(OutputStream out, long position, long length) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // Not closed, the output stream belongs to the caller
+                WritableByteChannel target = Channels.newChannel(out);
+                long end = position + length;
+                while (position < end) {
+                    long sent = channel.transferTo(position, end - position, target);
+                    if (sent <= 0) break;
+                    position += sent;
+                }
+            }
+        }
+    }
+
+    private final BookService bookService;
+    private final CatalogVersionService catalogVersionService;
+    private final Path directory;
+
+    private final Map<Path, CompletableFuture<CachedExport>> generations = new ConcurrentHashMap<>();
+    // The previous file is kept, a download may have just been handed it when the new one replaces it
+    private final Map<BookFileFormat, Path> currentFiles = new EnumMap<>(BookFileFormat.class);
+    private final Map<BookFileFormat, Path> previousFiles = new EnumMap<>(BookFileFormat.class);
+
+    public CatalogExportCache(BookService bookService, CatalogVersionService catalogVersionService,
+                              @Value("${app.export-cache.directory:${java.io.tmpdir}/book-library-exports}") Path directory)
+            throws IOException {
+        this.bookService = bookService;
+        this.catalogVersionService = catalogVersionService;
+        this.directory = Files.createDirectories(directory);
+    }
+
+    public CachedExport getExport(BookFileFormat format) {
+        // Read before generating, so a write racing with the export can only make the file newer than its name
+        return getExport(format, catalogVersionService.getCatalogVersionKey());
+    }
+
+    public String getETag(BookFileFormat format, String version) {
+        return "\"" + version + "-" + format.getExtension() + "\"";
+    }
+
+    /**
+     * The export of the given catalog version if it was already generated. Lets a caller answer from the file right
+     * away, and only generate a missing export where it can afford to wait for it.
+     */
+    public Optional<CachedExport> findExport(BookFileFormat format, String version) {
+        Path file = fileOf(format, version);
+        return Files.exists(file) ? Optional.of(toExport(file, getETag(format, version))) : Optional.empty();
+    }
+
+    /**
+     * The export of the given catalog version, generated first if it is missing. The version must be read before any
+     * book is, see {@link #getExport(BookFileFormat)}.
+     */
+    public CachedExport getExport(BookFileFormat format, String version) {
+        Path file = fileOf(format, version);
+        String eTag = getETag(format, version);
+        if (Files.exists(file)) {
+            log.debug("Serving cached {} export of catalog version {}", format, version);
+            return toExport(file, eTag);
+        }
+
+        CompletableFuture<CachedExport> generation = new CompletableFuture<>();
+        CompletableFuture<CachedExport> running = generations.putIfAbsent(file, generation);
+        if (running != null) {
+            log.debug("Waiting for the {} export of catalog version {} being generated", format, version);
+            return await(running);
+        }
+
+        try {
+            CachedExport export = Files.exists(file) ? toExport(file, eTag) : generate(format, file, eTag);
+            generation.complete(export);
+            return export;
+        } catch (RuntimeException e) {
+            generation.completeExceptionally(e);
+            throw e;
+        } finally {
+            generations.remove(file);
+        }
+    }
+
+    private Path fileOf(BookFileFormat format, String version) {
+        return directory.resolve("catalog-" + version + "." + format.getExtension());
+    }
+
+    private CachedExport generate(BookFileFormat format, Path file, String eTag) {
+        log.info("Generating {} export into {}", format, file.getFileName());
+        Path partial = null;
+        try {
+            partial = Files.createTempFile(directory, "catalog-", ".part");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial), WRITE_BUFFER_SIZE)) {
+                bookService.exportBooks(format, out);
+            }
+            // Readers never see a half written file
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(partial);
+            log.error("Could not write the {} export to disk: {}", format, e.getMessage(), e);
+            throw new ExcelProcessingException("Failed to generate export file");
+        } catch (RuntimeException e) {
+            deleteQuietly(partial);
+            throw e;
+        }
+
+        retire(format, file);
+        return toExport(file, eTag);
+    }
+
+    private synchronized void retire(BookFileFormat format, Path file) {
+        Path replaced = currentFiles.put(format, file);
+        if (replaced == null || replaced.equals(file)) return;
+        Path older = previousFiles.put(format, replaced);
+        if (older != null) deleteQuietly(older);
+    }
+
+    private CachedExport toExport(Path file, String eTag) {
+        try {
+            return new CachedExport(file, Files.size(file), eTag);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CachedExport await(CompletableFuture<CachedExport> generation) {
+        try {
+            return generation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete export file {}: {}", file, e.getMessage());
+        }
+    }
+
+    // Files are only tracked in memory, so they are removed with the instance rather than left behind untracked
+    @PreDestroy
+    synchronized void clear() {
+        currentFiles.values().forEach(this::deleteQuietly);
+        previousFiles.values().forEach(this::deleteQuietly);
+        currentFiles.clear();
+        previousFiles.clear();
+    }
+}
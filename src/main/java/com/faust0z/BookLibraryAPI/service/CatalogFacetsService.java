@@ -0,0 +1,205 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.CatalogFacetsDTO;
+import com.faust0z.BookLibraryAPI.dto.FacetDTO;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.event.RemoteBooksChangedEvent;
+import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Keeps book and copy counts per author and per publication year up to date from {@link BooksChangedEvent}s,
+ * so the facets are read in O(facets) instead of running a GROUP BY over the whole catalog.
+ * <p>
+ * Changes committed through other instances arrive through {@link BookChangesRelay}. Redis pub/sub drops the ones
+ * relayed while this instance is disconnected, so the counters are also rebuilt from the database every
+ * {@code app.catalog.facets.rebuild-interval}. That bounds how long a missed change stays missing.
+ */
+@Slf4j
+@Service
+public class CatalogFacetsService {
+
+    private static final int DEFAULT_AUTHOR_LIMIT = 50;
+
+    private record IndexedBook(String author, Integer year, int copies) {
+    }
+
+    private static final class Counter {
+        private long books;
+        private long copies;
+    }
+
+    private final BookRepository bookRepository;
+    private final Duration rebuildInterval;
+    private final ScheduledExecutorService rebuilder;
+
+    // Guarded by this object
+    private final Map<UUID, IndexedBook> indexedBooks = new HashMap<>();
+    private final Map<String, Counter> authors = new HashMap<>();
+    private final TreeMap<Integer, Counter> years = new TreeMap<>();
+    private long totalCopies;
+    // Events applied while a rebuild reads the catalog, null when no rebuild is running
+    private List<BooksChangedEvent> appliedDuringRebuild;
+
+    @Autowired
+    public CatalogFacetsService(BookRepository bookRepository,
+                                @Value("${app.catalog.facets.rebuild-interval:10m}") Duration rebuildInterval) {
+        this(bookRepository, rebuildInterval,
+                Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "catalog-facets-rebuild")));
+    }
+
+    CatalogFacetsService(BookRepository bookRepository, Duration rebuildInterval, ScheduledExecutorService rebuilder) {
+        this.bookRepository = bookRepository;
+        this.rebuildInterval = rebuildInterval;
+        this.rebuilder = rebuilder;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void startRebuilding() {
+        rebuild();
+        rebuilder.scheduleWithFixedDelay(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                // The counters keep being updated from events until the next rebuild
+                log.warn("Could not rebuild catalog facets: {}", e.getMessage(), e);
+            }
+        }, rebuildInterval.toMillis(), rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Recounts the whole catalog. Events applied while the catalog is read may not be in what was read, so they are
+     * applied again on top of it. Each carries the whole state of its books, applying one twice changes nothing.
+     */
+    public void rebuild() {
+        log.info("Building catalog facets");
+        synchronized (this) {
+            appliedDuringRebuild = new ArrayList<>();
+        }
+        List<BookSnapshot> books;
+        try {
+            books = bookRepository.findAllSnapshots();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                appliedDuringRebuild = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            indexedBooks.clear();
+            authors.clear();
+            years.clear();
+            totalCopies = 0;
+            books.forEach(this::add);
+            appliedDuringRebuild.forEach(this::apply);
+            log.info("Catalog facets built for {} books, {} events replayed", books.size(), appliedDuringRebuild.size());
+            appliedDuringRebuild = null;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onBooksChanged(BooksChangedEvent event) {
+        apply(event);
+        if (appliedDuringRebuild != null) appliedDuringRebuild.add(event);
+    }
+
+    @EventListener
+    public void onRemoteBooksChanged(RemoteBooksChangedEvent event) {
+        onBooksChanged(new BooksChangedEvent(event.books()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    public synchronized CatalogFacetsDTO getFacets(Integer authorLimit) {
+        int limit = (authorLimit == null || authorLimit < 1) ? DEFAULT_AUTHOR_LIMIT : authorLimit;
+
+        List<FacetDTO> authorFacets = authors.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Counter> e) -> e.getValue().books).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .limit(limit)
+                .map(e -> toFacet(e.getKey(), e.getValue()))
+                .toList();
+
+        TreeMap<Integer, Counter> decades = new TreeMap<>();
+        years.forEach((year, counter) -> {
+            Counter decade = decades.computeIfAbsent(Math.floorDiv(year, 10) * 10, d -> new Counter());
+            decade.books += counter.books;
+            decade.copies += counter.copies;
+        });
+
+        return new CatalogFacetsDTO(indexedBooks.size(), totalCopies, authorFacets,
+                toFacets(decades, decade -> decade + "s"), toFacets(years, String::valueOf));
+    }
+
+    private void apply(BooksChangedEvent event) {
+        for (BookSnapshot book : event.books()) {
+            remove(book.id());
+            add(book);
+        }
+    }
+
+    private void add(BookSnapshot book) {
+        if (book.id() == null) return;
+
+        Integer year = book.publicationDate() != null ? book.publicationDate().getYear() : null;
+        int copies = book.copies() != null ? book.copies() : 0;
+        IndexedBook indexed = new IndexedBook(book.author(), year, copies);
+
+        if (indexed.author() != null) count(authors.computeIfAbsent(indexed.author(), a -> new Counter()), 1, copies);
+        if (indexed.year() != null) count(years.computeIfAbsent(indexed.year(), y -> new Counter()), 1, copies);
+        totalCopies += copies;
+        indexedBooks.put(book.id(), indexed);
+    }
+
+    private void remove(UUID bookId) {
+        IndexedBook previous = indexedBooks.remove(bookId);
+        if (previous == null) return;
+
+        if (previous.author() != null && count(authors.get(previous.author()), -1, -previous.copies()))
+            authors.remove(previous.author());
+        if (previous.year() != null && count(years.get(previous.year()), -1, -previous.copies()))
+            years.remove(previous.year());
+        totalCopies -= previous.copies();
+    }
+
+    // Returns true when the counter is left without books and can be dropped
+    private boolean count(Counter counter, long books, long copies) {
+        counter.books += books;
+        counter.copies += copies;
+        return counter.books <= 0;
+    }
+
+    private <K> List<FacetDTO> toFacets(Map<K, Counter> counters, Function<K, String> label) {
+        List<FacetDTO> facets = new ArrayList<>(counters.size());
+        counters.forEach((key, counter) -> facets.add(toFacet(label.apply(key), counter)));
+        return facets;
+    }
+
+    private FacetDTO toFacet(String value, Counter counter) {
+        return new FacetDTO(value, counter.books, counter.copies);
+    }
+}
@@ -0,0 +1,121 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Versions the catalog for strong ETags and the export cache. The catalog version is kept in Redis, so every instance
+ * sees the writes committed through the others, and is bumped after every committed book write. A book's ETag is
+ * derived from its {@code lastModifiedAt}, which every write to the book updates.
+ * <p>
+ * The cached catalog pages have a version of their own, which loans do not bump: the pages do not hold the copies.
+ */
+@Slf4j
+@Service
+public class CatalogVersionService {
+
+    // One hash, so an evicted or flushed version loses its epoch too and never names an older catalog again
+    static final String VERSION_KEY = "catalog:version";
+    static final String EPOCH_FIELD = "epoch";
+    static final String COUNTER_FIELD = "counter";
+    static final String PAGES_FIELD = "pages";
+
+    private final StringRedisTemplate redisTemplate;
+    private final BookRepository bookRepository;
+
+    public CatalogVersionService(StringRedisTemplate redisTemplate, BookRepository bookRepository) {
+        this.redisTemplate = redisTemplate;
+        this.bookRepository = bookRepository;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BooksChangedEvent event) {
+        try {
+            Long version = redisTemplate.opsForHash().increment(VERSION_KEY, COUNTER_FIELD, 1);
+            log.debug("Catalog version bumped to {}", version);
+        } catch (RuntimeException e) {
+            // The other instances keep answering with the previous version until the next write
+            log.error("Redis catalog version INCR failed for {} books. Error: {}", event.books().size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Bumps the version of the cached catalog pages, which retires every cached page at once. Called once a write to
+     * the books' name, author or publication date commits.
+     */
+    public void bumpPagesVersion() {
+        try {
+            Long version = redisTemplate.opsForHash().increment(VERSION_KEY, PAGES_FIELD, 1);
+            log.debug("Catalog pages version bumped to {}", version);
+        } catch (RuntimeException e) {
+            // Pages cached before the write are served until their TTL expires
+            log.error("Redis catalog pages version INCR failed. Error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The catalog version, read from Redis in one round trip. While Redis is unavailable every call returns a new
+     * value, so no ETag or cached export is ever matched against a catalog that may have changed.
+     */
+    public String getCatalogVersionKey() {
+        return getVersionKey(COUNTER_FIELD);
+    }
+
+    /**
+     * The version the cached catalog pages are keyed by. Like the catalog version, a new value on every call while
+     * Redis is unavailable.
+     */
+    public String getPagesVersionKey() {
+        return getVersionKey(PAGES_FIELD);
+    }
+
+    private String getVersionKey(String counterField) {
+        try {
+            HashOperations<String, String, String> hash = redisTemplate.opsForHash();
+            List<String> version = hash.multiGet(VERSION_KEY, List.of(EPOCH_FIELD, counterField));
+            String epoch = version.get(0);
+            if (epoch == null) {
+                // First read, or the version was lost: a new epoch starts a new series of versions
+                hash.putIfAbsent(VERSION_KEY, EPOCH_FIELD, UUID.randomUUID().toString().substring(0, 8));
+                version = hash.multiGet(VERSION_KEY, List.of(EPOCH_FIELD, counterField));
+                epoch = version.get(0);
+            }
+            return epoch + "-" + (version.get(1) != null ? version.get(1) : "0");
+        } catch (RuntimeException e) {
+            log.error("Redis catalog version GET failed. Error: {}", e.getMessage());
+            return "unversioned-" + UUID.randomUUID();
+        }
+    }
+
+    public String getCatalogETag() {
+        return "\"" + getCatalogVersionKey() + "\"";
+    }
+
+    /**
+     * The book's {@code lastModifiedAt}, with one primary key lookup. Empty when the book does not exist. Both the
+     * ETag and the Last-Modified of a book are derived from it, the cached book may be older.
+     */
+    public Optional<LocalDateTime> getBookLastModifiedAt(UUID bookId) {
+        return bookRepository.findLastModifiedAt(bookId);
+    }
+
+    public String getBookETag(UUID bookId, LocalDateTime lastModifiedAt) {
+        return "\"" + bookId + "-" + toMicros(lastModifiedAt) + "\"";
+    }
+
+    // PostgreSQL timestamps have microsecond precision
+    private long toMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1_000;
+    }
+}
@@ -0,0 +1,160 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * UTF-8 text I/O over NIO channels for the CSV and NDJSON formats. Never more than one buffer of a file is held,
+ * and the direct byte buffers are pooled, since they are costly to allocate for every import and export.
+ */
+final class ChannelText {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 16;
+    private static final Queue<ByteBuffer> BUFFER_POOL = new ConcurrentLinkedQueue<>();
+
+    private ChannelText() {
+    }
+
+    private static ByteBuffer acquire() {
+        ByteBuffer buffer = BUFFER_POOL.poll();
+        return buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private static void release(ByteBuffer buffer) {
+        if (BUFFER_POOL.size() < MAX_POOLED_BUFFERS) BUFFER_POOL.offer(buffer);
+    }
+
+    /**
+     * Decodes the file chunk by chunk. The handler must consume each chunk before returning, the buffer is reused.
+     * A leading byte order mark is skipped.
+     */
+    static void readChars(Path file, Consumer<CharBuffer> handler) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        // UTF-8 never decodes to more chars than bytes, so the decoded chunk always fits
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer bytes = acquire();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean firstChunk = true;
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = channel.read(bytes) < 0;
+                bytes.flip();
+                CoderResult result = decoder.decode(bytes, chars, endOfInput);
+                if (result.isError()) result.throwException();
+                if (endOfInput) decoder.flush(chars);
+                bytes.compact();
+
+                chars.flip();
+                if (firstChunk && chars.hasRemaining() && chars.get(chars.position()) == '\uFEFF') chars.get();
+                firstChunk = false;
+                handler.accept(chars);
+                chars.clear();
+            }
+        } finally {
+            release(bytes);
+        }
+    }
+
+    /**
+     * Encodes text into a pooled buffer and writes it to the channel whenever the buffer fills up.
+     * Closing it writes what is left, but does not close the channel.
+     */
+    static final class ChannelWriter extends Writer {
+
+        private final WritableByteChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE / 4);
+        private final ByteBuffer bytes = acquire();
+        private boolean closed;
+
+        ChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, chars.remaining());
+                chars.put(cbuf, off, n);
+                off += n;
+                len -= n;
+                if (!chars.hasRemaining()) encode(false);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, chars.remaining());
+                chars.put(str, off, off + n);
+                off += n;
+                len -= n;
+                if (!chars.hasRemaining()) encode(false);
+            }
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            chars.put((char) c);
+            if (!chars.hasRemaining()) encode(false);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            encode(false);
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                encode(true);
+                while (encoder.flush(bytes).isOverflow()) drain();
+                drain();
+            } finally {
+                release(bytes);
+            }
+        }
+
+        // A high surrogate at the end of the chars is kept by compact() until its pair arrives
+        private void encode(boolean endOfInput) throws IOException {
+            chars.flip();
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, endOfInput);
+                if (result.isOverflow()) {
+                    drain();
+                } else {
+                    if (result.isError()) result.throwException();
+                    break;
+                }
+            }
+            chars.compact();
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) channel.write(bytes);
+            bytes.clear();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.exception.ExcelProcessingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes the catalog as RFC 4180 CSV, with the same columns as the Excel files.
+ * Both directions stream through NIO channels, so memory use does not grow with the size of the file.
+ */
+@Slf4j
+@Service
+public class CsvService {
+
+    private static final List<BookColumns.Column> COLUMNS = BookColumns.COLUMNS;
+    private static final String RECORD_SEPARATOR = "\r\n";
+
+    public void exportBooksToCsv(Stream<BookEntity> books, OutputStream out) {
+        log.info("Initiating streaming CSV export");
+        // The channel is not closed, the output stream belongs to the caller
+        try (Writer writer = new ChannelText.ChannelWriter(Channels.newChannel(out))) {
+            for (int colIdx = 0; colIdx < COLUMNS.size(); colIdx++) {
+                if (colIdx > 0) writer.write(',');
+                writeField(writer, COLUMNS.get(colIdx).header());
+            }
+            writer.write(RECORD_SEPARATOR);
+
+            int count = 0;
+            Iterator<BookEntity> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                BookEntity book = iterator.next();
+                for (int colIdx = 0; colIdx < COLUMNS.size(); colIdx++) {
+                    if (colIdx > 0) writer.write(',');
+                    Object value = COLUMNS.get(colIdx).extractor().apply(book);
+                    if (value != null) writeField(writer, value.toString());
+                }
+                writer.write(RECORD_SEPARATOR);
+                count++;
+            }
+            log.info("CSV export completed successfully with {} books", count);
+
+        } catch (IOException e) {
+            log.error("Critical error during CSV export: {}", e.getMessage(), e);
+            throw new ExcelProcessingException("Failed to generate CSV file");
+        }
+    }
+
+    // Only fields holding a separator, a quote or a line break are quoted
+    private void writeField(Writer writer, String value) throws IOException {
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Reads the file and hands each validated book to the consumer, in file order. The first record holds the headers,
+     * so columns may come in any order, and blank records are skipped. Row numbers in errors count the header as row 1.
+     * Rows failing validation are passed to {@code onInvalidRow}, which may throw to abort the import.
+     */
+    public void readBooksFromCsv(Path file, Consumer<BookEntity> consumer, Consumer<ExcelProcessingException> onInvalidRow) {
+        log.info("Starting CSV import process");
+        RecordHandler handler = new RecordHandler(consumer, onInvalidRow);
+        CsvParser parser = new CsvParser(handler);
+        try {
+            ChannelText.readChars(file, parser::parse);
+            parser.finish();
+            if (handler.headerMap == null) {
+                log.warn("Import attempted on an empty CSV file");
+                throw new ExcelProcessingException("The CSV file is empty!");
+            }
+            log.info("Successfully imported {} books from CSV", handler.count);
+
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to parse CSV file: {}", e.getMessage(), e);
+            throw new ExcelProcessingException("Import failed: " + e.getMessage());
+        }
+    }
+
+    private static final class RecordHandler {
+        private final Consumer<BookEntity> consumer;
+        private final Consumer<ExcelProcessingException> onInvalidRow;
+        private Map<String, Integer> headerMap;
+        private int count;
+
+        private RecordHandler(Consumer<BookEntity> consumer, Consumer<ExcelProcessingException> onInvalidRow) {
+            this.consumer = consumer;
+            this.onInvalidRow = onInvalidRow;
+        }
+
+        private void record(int rowNum, Map<Integer, String> values) {
+            if (headerMap == null) {
+                headerMap = BookColumns.mapHeaders(values);
+                BookColumns.validateHeaders(headerMap);
+                return;
+            }
+            if (values.values().stream().allMatch(String::isEmpty)) return;
+
+            BookEntity book = BookColumns.toBook(headerMap, values);
+            try {
+                BookColumns.validateBook(book, rowNum);
+            } catch (ExcelProcessingException e) {
+                onInvalidRow.accept(e);
+                return;
+            }
+            consumer.accept(book);
+            count++;
+        }
+    }
+
+    /**
+     * An RFC 4180 state machine fed chunk by chunk, so a record may span any number of chunks.
+     * Records end with CRLF or a bare LF, and unquoted values are trimmed like Excel cells are.
+     */
+    private static final class CsvParser {
+        private enum State { FIELD_START, UNQUOTED, QUOTED, QUOTE_IN_QUOTED }
+
+        private final RecordHandler handler;
+        private final StringBuilder field = new StringBuilder();
+        private final Map<Integer, String> values = new HashMap<>();
+        private State state = State.FIELD_START;
+        private int rowNum = 1;
+
+        private CsvParser(RecordHandler handler) {
+            this.handler = handler;
+        }
+
+        private void parse(CharBuffer chars) {
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                switch (state) {
+                    case FIELD_START -> {
+                        if (c == '"') state = State.QUOTED;
+                        else unquoted(c);
+                    }
+                    case UNQUOTED -> unquoted(c);
+                    case QUOTED -> {
+                        if (c == '"') state = State.QUOTE_IN_QUOTED;
+                        else field.append(c);
+                    }
+                    case QUOTE_IN_QUOTED -> {
+                        if (c == '"') {
+                            field.append('"');
+                            state = State.QUOTED;
+                        } else {
+                            // Anything after the closing quote is kept as is, like most spreadsheets do
+                            unquoted(c);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void unquoted(char c) {
+            switch (c) {
+                case ',' -> endField();
+                case '\n' -> endRecord();
+                case '\r' -> {
+                    // Dropped, the LF that follows ends the record
+                }
+                default -> {
+                    field.append(c);
+                    state = State.UNQUOTED;
+                }
+            }
+        }
+
+        private void finish() {
+            if (state == State.QUOTED) {
+                throw new ExcelProcessingException("Unterminated quoted value at row " + rowNum);
+            }
+            // The last record may not end with a line break
+            if (state != State.FIELD_START || !values.isEmpty()) endRecord();
+        }
+
+        private void endField() {
+            values.put(values.size(), field.toString().trim());
+            field.setLength(0);
+            state = State.FIELD_START;
+        }
+
+        private void endRecord() {
+            endField();
+            handler.record(rowNum++, values);
+            values.clear();
+        }
+    }
+}
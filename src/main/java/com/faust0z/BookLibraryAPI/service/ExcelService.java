@@ -2,11 +2,13 @@ package com.faust0z.BookLibraryAPI.service;
 
 import com.faust0z.BookLibraryAPI.entity.BookEntity;
 import com.faust0z.BookLibraryAPI.exception.ExcelProcessingException;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.FillPatternType;
@@ -15,131 +17,401 @@ import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.springframework.stereotype.Service;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.function.BiConsumer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 public class ExcelService {
 
     private static final String SHEET_NAME = "Library Inventory";
-    private final DataFormatter dataFormatter = new DataFormatter();
+    private static final int ROW_WINDOW = 100;
+    private static final int WIDTH_SAMPLE_ROWS = 100;
+    private static final int MAX_COLUMN_WIDTH = 60;
+    private static final int ROW_BATCH_SIZE = 500;
+    private static final int ROW_WORKERS = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_PENDING_BATCHES = ROW_WORKERS * 2;
+    private static final CompletableFuture<List<ParsedRow>> END_OF_ROWS = CompletableFuture.completedFuture(List.of());
+
+    // A cell value is either its text or, for numeric and date cells, a NumericCell still to be formatted
+    private record RawRow(int rowNum, Map<Integer, Object> values) {
+    }
 
-    private record ExcelColumn(
-            String header,
-            Function<BookEntity, Object> extractor,
-            BiConsumer<BookEntity, Cell> importer
-    ) {
+    private record NumericCell(double value, int formatIndex, String formatString) {
     }
 
-    private final List<ExcelColumn> COLUMNS = List.of(
-            new ExcelColumn("Title", BookEntity::getName, (book, cell) -> book.setName(getCellValueAsString(cell))),
-            new ExcelColumn("Author", BookEntity::getAuthor, (book, cell) -> book.setAuthor(getCellValueAsString(cell))),
-            new ExcelColumn("Publication Date", BookEntity::getPublicationDate, (book, cell) -> book.setPublicationDate(getCellValueAsDate(cell))),
-            new ExcelColumn("Available Copies", BookEntity::getCopies, (book, cell) -> book.setCopies((int) getCellValueAsNumber(cell)))
-    );
+    private record ParsedRow(BookEntity book, ExcelProcessingException error) {
+    }
 
-    public byte[] exportBooksToExcel(List<BookEntity> books) {
-        log.info("Initiating Excel export for {} books", books.size());
+    private static final List<BookColumns.Column> COLUMNS = BookColumns.COLUMNS;
 
-        try (Workbook workbook = new XSSFWorkbook();
-             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+    public record SheetColumn<T>(String header, Function<T, Object> extractor) {
+    }
 
-            Sheet sheet = workbook.createSheet(SHEET_NAME);
-            createHeaderRow(workbook, sheet);
+    /**
+     * A sheet of a multi-sheet export. The rows are only pulled while the sheet is written.
+     */
+    public record SheetSource<T>(String name, List<SheetColumn<T>> columns, Iterator<T> rows) {
+    }
 
-            log.debug("Populating Excel rows...");
-            IntStream.range(0, books.size()).forEach(i -> {
-                Row row = sheet.createRow(i + 1);
-                BookEntity book = books.get(i);
+    // Shared by every import. Formatting cells and building and validating books is CPU bound, so there is one
+    // worker per core
+    private final ExecutorService rowWorkers = Executors.newFixedThreadPool(ROW_WORKERS,
+            Thread.ofPlatform().name("excel-row-worker-", 1).daemon().factory());
 
-                for (int colIdx = 0; colIdx < COLUMNS.size(); colIdx++) {
-                    Cell cell = row.createCell(colIdx);
-                    Object value = COLUMNS.get(colIdx).extractor().apply(book);
-                    setCellValue(cell, value);
-                }
-                if (i % 100 == 0 && i > 0) log.debug("Processed {}/{} rows", i, books.size());
-            });
+    // DataFormatter is not thread-safe. The workers are a fixed pool, so this is one formatter per worker
+    private static final ThreadLocal<DataFormatter> WORKER_FORMATTER =
+            ThreadLocal.withInitial(ImportDataFormatter::new);
 
-            log.debug("Auto-sizing columns for better readability");
-            IntStream.range(0, COLUMNS.size()).forEach(sheet::autoSizeColumn);
+    @PreDestroy
+    void shutdown() {
+        rowWorkers.shutdownNow();
+    }
 
+    /**
+     * Writes the books to the output stream as they are consumed. Only a window of {@value #ROW_WINDOW} rows is kept
+     * in memory, older rows are flushed to a compressed temp file, so memory use does not grow with the catalog.
+     */
+    public void exportBooksToExcel(Stream<BookEntity> books, OutputStream out) {
+        log.info("Initiating streaming Excel export");
+        List<SheetColumn<BookEntity>> columns = COLUMNS.stream()
+                .map(column -> new SheetColumn<>(column.header(), column.extractor()))
+                .toList();
+        exportSheets(List.of(new SheetSource<>(SHEET_NAME, columns, books.iterator())), out);
+    }
+
+    /**
+     * Writes one sheet per source, in order, pulling the rows of each one as it is written.
+     * Like the books export, only a window of {@value #ROW_WINDOW} rows per sheet is kept in memory.
+     */
+    public void exportSheets(List<SheetSource<?>> sheets, OutputStream out) {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+
+        try {
+            CellStyle headerStyle = createHeaderStyle(workbook);
+            for (SheetSource<?> source : sheets) {
+                writeSheet(workbook, headerStyle, source);
+            }
             workbook.write(out);
-            log.info("Excel export completed successfully");
-            return out.toByteArray();
+            log.info("Excel export completed successfully with {} sheets", sheets.size());
 
         } catch (IOException e) {
             log.error("Critical error during Excel export: {}", e.getMessage(), e);
             throw new ExcelProcessingException("Failed to generate Excel file");
+        } finally {
+            // Deletes the temp files holding the flushed rows
+            workbook.dispose();
         }
     }
 
+    private <T> void writeSheet(SXSSFWorkbook workbook, CellStyle headerStyle, SheetSource<T> source) throws IOException {
+        SXSSFSheet sheet = workbook.createSheet(source.name());
+        List<SheetColumn<T>> columns = source.columns();
+        createHeaderRow(sheet, headerStyle, columns);
+
+        // autoSizeColumn would have to measure every cell, so widths are estimated from the first rows instead
+        int[] widths = columns.stream().mapToInt(column -> column.header().length()).toArray();
+
+        log.debug("Populating rows of the '{}' sheet...", source.name());
+        int rowIdx = 0;
+        Iterator<T> rows = source.rows();
+        while (rows.hasNext()) {
+            T item = rows.next();
+            Row row = sheet.createRow(++rowIdx);
+
+            for (int colIdx = 0; colIdx < columns.size(); colIdx++) {
+                Cell cell = row.createCell(colIdx);
+                Object value = columns.get(colIdx).extractor().apply(item);
+                setCellValue(cell, value);
+                if (rowIdx <= WIDTH_SAMPLE_ROWS && value != null) {
+                    widths[colIdx] = Math.max(widths[colIdx], value.toString().length());
+                }
+            }
+            if (rowIdx % 10_000 == 0) log.debug("Processed {} rows", rowIdx);
+        }
+
+        for (int colIdx = 0; colIdx < widths.length; colIdx++) {
+            // Column widths are measured in 1/256th of a character
+            sheet.setColumnWidth(colIdx, Math.min(widths[colIdx] + 2, MAX_COLUMN_WIDTH) * 256);
+        }
+        // The sheet is complete, its last window of rows does not need to stay in memory while the next ones are written
+        sheet.flushRows();
+        log.info("Wrote {} rows to the '{}' sheet", rowIdx, source.name());
+    }
+
     public List<BookEntity> importBooksFromExcel(InputStream is) {
-        log.info("Starting Excel import process");
         List<BookEntity> books = new ArrayList<>();
+        readBooksFromExcel(is, books::add);
+        return books;
+    }
+
+    /**
+     * Reads the first sheet, failing on the first invalid row. See {@link #readBooksFromExcel(Path, Consumer, Consumer)}.
+     */
+    public void readBooksFromExcel(InputStream is, Consumer<BookEntity> consumer) {
+        Path file = null;
+        try {
+            // Opening the package from a file reads entries on demand instead of buffering the whole upload
+            file = Files.createTempFile("book-import-", ".xlsx");
+            Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+            readBooksFromExcel(file, consumer, invalidRow -> {
+                throw invalidRow;
+            });
+        } catch (IOException e) {
+            log.error("Failed to buffer Excel upload: {}", e.getMessage(), e);
+            throw new ExcelProcessingException("Import failed: " + e.getMessage());
+        } finally {
+            deleteQuietly(file);
+        }
+    }
 
-        try (Workbook workbook = new XSSFWorkbook(is)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            Iterator<Row> rows = sheet.iterator();
+    /**
+     * Reads the first sheet with POI's event (SAX) model and hands each validated book to the consumer, in file order.
+     * Rows are never kept as a DOM, so memory use does not grow with the size of the file.
+     * Rows failing validation are passed to {@code onInvalidRow}, which may throw to abort the import.
+     * <p>
+     * Parsing is pipelined: a reader thread runs the SAX parser and cuts the raw rows into batches, the row workers
+     * format the numeric and date cells and build and validate the books of each batch in parallel, and the calling
+     * thread consumes the batches in order.
+     * At most {@link #MAX_PENDING_BATCHES} batches are read ahead, so a slow consumer also slows the reader down.
+     */
+    public void readBooksFromExcel(Path file, Consumer<BookEntity> consumer, Consumer<ExcelProcessingException> onInvalidRow) {
+        log.info("Starting Excel import process");
+        BlockingQueue<CompletableFuture<List<ParsedRow>>> pending = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+        Thread reader = Thread.ofVirtual().name("excel-reader").start(() -> readRows(file, pending));
+
+        int count = 0;
+        try {
+            for (CompletableFuture<List<ParsedRow>> batch = pending.take(); batch != END_OF_ROWS; batch = pending.take()) {
+                for (ParsedRow row : batch.join()) {
+                    if (row.error() != null) {
+                        onInvalidRow.accept(row.error());
+                    } else {
+                        consumer.accept(row.book());
+                        count++;
+                    }
+                }
+            }
+            log.info("Successfully imported {} books from Excel", count);
+
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.error("Failed to parse Excel file: {}", cause.getMessage(), cause);
+            throw new ExcelProcessingException("Import failed: " + cause.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExcelProcessingException("Import interrupted");
+        } finally {
+            // Stops the reader if the consumer gave up early, it may be waiting for room in the queue
+            reader.interrupt();
+        }
+    }
+
+    private void readRows(Path file, BlockingQueue<CompletableFuture<List<ParsedRow>>> pending) {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg, false);
+            DeferredDataFormatter formatter = new DeferredDataFormatter();
+            RawRowHandler rowHandler = new RawRowHandler(pending, formatter);
+
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), sharedStrings, rowHandler,
+                    formatter, false));
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) throw new ExcelProcessingException("The Excel file is empty!");
+            try (InputStream sheet = sheets.next()) {
+                log.debug("Iterating through data rows...");
+                parser.parse(new InputSource(sheet));
+            }
 
-            if (!rows.hasNext()) {
+            if (!rowHandler.hasHeader()) {
                 log.warn("Import attempted on an empty Excel file");
                 throw new ExcelProcessingException("The Excel file is empty!");
             }
+            rowHandler.submitBatch();
+            pending.put(END_OF_ROWS);
 
-            Row headerRow = rows.next();
-            Map<String, Integer> headerMap = mapHeaders(headerRow);
-            validateHeaders(headerMap);
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted() || e instanceof InterruptedException) {
+                log.debug("Excel reader stopped, the import was abandoned");
+                return;
+            }
+            try {
+                pending.put(CompletableFuture.failedFuture(e));
+            } catch (InterruptedException interrupted) {
+                log.debug("Excel reader stopped, the import was abandoned");
+            }
+        }
+    }
 
-            log.debug("Iterating through data rows...");
-            while (rows.hasNext()) {
-                Row currentRow = rows.next();
-                if (isRowEmpty(currentRow)) {
-                    log.debug("Skipping empty row at index {}", currentRow.getRowNum());
-                    continue;
-                }
+    private List<ParsedRow> parseRows(List<RawRow> rows, Map<String, Integer> headerMap) {
+        List<ParsedRow> parsed = new ArrayList<>(rows.size());
+        DataFormatter formatter = WORKER_FORMATTER.get();
+        for (RawRow row : rows) {
+            BookEntity book = BookColumns.toBook(headerMap, format(row.values(), formatter));
+            try {
+                BookColumns.validateBook(book, row.rowNum() + 1);
+                parsed.add(new ParsedRow(book, null));
+            } catch (ExcelProcessingException e) {
+                parsed.add(new ParsedRow(null, e));
+            }
+        }
+        return parsed;
+    }
 
-                int rowNum = currentRow.getRowNum() + 1;
-                BookEntity book = new BookEntity();
-                for (ExcelColumn column : COLUMNS) {
-                    Integer colIdx = headerMap.get(column.header());
-                    if (colIdx != null) {
-                        column.importer().accept(book, currentRow.getCell(colIdx));
-                    }
-                }
+    private static Map<Integer, String> format(Map<Integer, Object> values, DataFormatter formatter) {
+        Map<Integer, String> formatted = HashMap.newHashMap(values.size());
+        values.forEach((column, value) -> formatted.put(column, switch (value) {
+            case NumericCell cell ->
+                    formatter.formatRawCellContents(cell.value(), cell.formatIndex(), cell.formatString());
+            default -> (String) value;
+        }));
+        return formatted;
+    }
 
-                validateBook(book, rowNum);
-                books.add(book);
-                log.debug("Successfully parsed row {}: {}", rowNum, book.getName());
+    /**
+     * Receives the cells of one row at a time from the SAX parser. The first row is taken as the header, the following
+     * ones are collected in batches and handed to the row workers. Numeric and date cells are kept unformatted, the
+     * workers format them.
+     */
+    private final class RawRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final BlockingQueue<CompletableFuture<List<ParsedRow>>> pending;
+        private final DeferredDataFormatter formatter;
+        private Map<Integer, Object> rowValues = new HashMap<>();
+        private List<RawRow> batch = new ArrayList<>(ROW_BATCH_SIZE);
+        private Map<String, Integer> headerMap;
+        private int lastColumn;
+
+        private RawRowHandler(BlockingQueue<CompletableFuture<List<ParsedRow>>> pending,
+                              DeferredDataFormatter formatter) {
+            this.pending = pending;
+            this.formatter = formatter;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            rowValues = new HashMap<>();
+            lastColumn = -1;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            // The reference is optional in the file format, cells without one follow the previous cell
+            lastColumn = cellReference != null ? new CellReference(cellReference).getCol() : lastColumn + 1;
+            NumericCell numeric = formatter.takeNumericCell();
+            if (numeric != null) {
+                rowValues.put(lastColumn, numeric);
+            } else if (formattedValue != null) {
+                rowValues.put(lastColumn, formattedValue.trim());
             }
+        }
 
-            log.info("Successfully imported {} books from Excel", books.size());
-            return books;
+        @Override
+        public void endRow(int rowNum) {
+            if (headerMap == null) {
+                // A single row, so it is formatted here rather than on a worker
+                headerMap = BookColumns.mapHeaders(format(rowValues, new ImportDataFormatter()));
+                BookColumns.validateHeaders(headerMap);
+                return;
+            }
+            if (rowValues.values().stream().allMatch(""::equals)) {
+                log.debug("Skipping empty row at index {}", rowNum);
+                return;
+            }
 
-        } catch (Exception e) {
-            log.error("Failed to parse Excel file: {}", e.getMessage(), e);
-            throw new ExcelProcessingException("Import failed: " + e.getMessage());
+            batch.add(new RawRow(rowNum, rowValues));
+            if (batch.size() >= ROW_BATCH_SIZE) submitBatch();
+        }
+
+        private void submitBatch() {
+            if (batch.isEmpty()) return;
+
+            List<RawRow> rows = batch;
+            Map<String, Integer> headers = headerMap;
+            batch = new ArrayList<>(ROW_BATCH_SIZE);
+            try {
+                pending.put(CompletableFuture.supplyAsync(() -> parseRows(rows, headers), rowWorkers));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Excel import abandoned", e);
+            }
+        }
+
+        private boolean hasHeader() {
+            return headerMap != null;
         }
     }
 
-    private void createHeaderRow(Workbook workbook, Sheet sheet) {
-        log.debug("Creating header row with style");
-        Row headerRow = sheet.createRow(0);
+    /**
+     * Handed to the SAX parser in place of a real formatter: it only records the numeric value and display format of
+     * each number or date cell, which the parser passes on to {@link RawRowHandler#cell} right after.
+     */
+    private static final class DeferredDataFormatter extends DataFormatter {
+        private NumericCell numericCell;
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            numericCell = new NumericCell(value, formatIndex, formatString);
+            return "";
+        }
+
+        private NumericCell takeNumericCell() {
+            NumericCell cell = numericCell;
+            numericCell = null;
+            return cell;
+        }
+    }
+
+    /**
+     * Formats dates as ISO (yyyy-MM-dd) and numbers without their display format, so cells typed as dates or numbers
+     * parse the same way as the text cells written by the export.
+     */
+    private static final class ImportDataFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getLocalDateTime(value, use1904Windowing).toLocalDate().toString();
+            }
+            return NumberToTextConverter.toText(value);
+        }
+    }
 
+    private CellStyle createHeaderStyle(Workbook workbook) {
         CellStyle headerStyle = workbook.createCellStyle();
         headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
         headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
@@ -148,10 +420,16 @@ public class ExcelService {
         Font font = workbook.createFont();
         font.setBold(true);
         headerStyle.setFont(font);
+        return headerStyle;
+    }
 
-        for (int i = 0; i < COLUMNS.size(); i++) {
+    private void createHeaderRow(Sheet sheet, CellStyle headerStyle, List<? extends SheetColumn<?>> columns) {
+        log.debug("Creating header row with style");
+        Row headerRow = sheet.createRow(0);
+
+        for (int i = 0; i < columns.size(); i++) {
             Cell cell = headerRow.createCell(i);
-            cell.setCellValue(COLUMNS.get(i).header());
+            cell.setCellValue(columns.get(i).header());
             cell.setCellStyle(headerStyle);
         }
     }
@@ -167,78 +445,12 @@ public class ExcelService {
         }
     }
 
-    private Map<String, Integer> mapHeaders(Row headerRow) {
-        log.debug("Mapping Excel headers to column indices");
-        Map<String, Integer> headerMap = new HashMap<>();
-        for (Cell cell : headerRow) {
-            String val = dataFormatter.formatCellValue(cell).trim();
-            if (!val.isEmpty()) {
-                headerMap.put(val, cell.getColumnIndex());
-                log.debug("Found header '{}' at index {}", val, cell.getColumnIndex());
-            }
-        }
-        return headerMap;
-    }
-
-    private void validateHeaders(Map<String, Integer> headerMap) {
-        COLUMNS.stream()
-                .map(ExcelColumn::header)
-                .filter(header -> !headerMap.containsKey(header))
-                .findFirst()
-                .ifPresent(missing -> {
-                    log.error("Missing required header: {}", missing);
-                    throw new ExcelProcessingException("Missing required column: " + missing);
-                });
-    }
-
-    private void validateBook(BookEntity book, int rowNum) {
-        if (book.getName() == null || book.getName().isBlank())
-            throw new ExcelProcessingException("Title is required at row " + rowNum);
-        if (book.getAuthor() == null || book.getAuthor().isBlank())
-            throw new ExcelProcessingException("Author is required at row " + rowNum);
-        if (book.getCopies() != null && book.getCopies() < 0)
-            throw new ExcelProcessingException("Copies cannot be negative at row " + rowNum);
-        if (book.getPublicationDate() == null)
-            throw new ExcelProcessingException("Valid Publication Date is required at row " + rowNum);
-    }
-
-    private boolean isRowEmpty(Row row) {
-        if (row == null) return true;
-        return IntStream.range(row.getFirstCellNum(), row.getLastCellNum())
-                .mapToObj(row::getCell)
-                .allMatch(cell -> cell == null || cell.getCellType() == CellType.BLANK);
-    }
-
-    private String getCellValueAsString(Cell cell) {
-        return dataFormatter.formatCellValue(cell).trim();
-    }
-
-    private double getCellValueAsNumber(Cell cell) {
-        if (cell == null || cell.getCellType() == CellType.BLANK) return 0;
-        if (cell.getCellType() == CellType.NUMERIC) return cell.getNumericCellValue();
-
-        String val = getCellValueAsString(cell);
-        try {
-            return val.isEmpty() ? 0 : Double.parseDouble(val);
-        } catch (NumberFormatException e) {
-            log.debug("Could not parse numeric value from '{}' at {}", val, cell.getAddress());
-            return 0;
-        }
-    }
-
-    private LocalDate getCellValueAsDate(Cell cell) {
-        if (cell == null || cell.getCellType() == CellType.BLANK) return null;
-
-        if (cell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell)) {
-            return cell.getDateCellValue().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-        }
-
-        String dateStr = getCellValueAsString(cell);
+    private void deleteQuietly(Path file) {
+        if (file == null) return;
         try {
-            return dateStr.isEmpty() ? null : LocalDate.parse(dateStr);
-        } catch (Exception e) {
-            log.debug("Failed to parse date from string '{}' at {}", dateStr, cell.getAddress());
-            return null;
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete temporary import file {}: {}", file, e.getMessage());
         }
     }
 }
@@ -0,0 +1,282 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.exception.ResourceNotFoundException;
+import com.faust0z.BookLibraryAPI.exception.ResourceUnavailableException;
+import com.faust0z.BookLibraryAPI.repository.LoanRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hot-item mode for loans: the available copies of each requested book are kept in memory, in striped counters, so
+ * checkouts of a sold out book are rejected without a database round trip and the others do not wait on the book's
+ * row. Loans are inserted with their copy pending, and a background flush takes the pending copies from
+ * {@code books.copies} in batches. The pending flag is stored on the loan, so copies reserved before a restart are
+ * still taken after it.
+ * <p>
+ * The counters only live in this instance's memory, so hot-item mode requires every loan to be created by the same
+ * instance. Until the next flush, {@code books.copies} (and what is read from it) still counts the pending copies.
+ */
+@Slf4j
+@Service
+public class HotBookLedger {
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(5);
+
+    private final LoanRepository loanRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService flusher;
+    private final boolean enabled;
+    private final int stripes;
+    private final int flushBatchSize;
+    private final Duration flushInterval;
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    // Published by the flush, which changes books.copies without changing how many copies are available
+    private volatile BooksChangedEvent flushEvent;
+
+    @Autowired
+    public HotBookLedger(LoanRepository loanRepository, ApplicationEventPublisher eventPublisher,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${app.loans.hot-items.enabled:false}") boolean enabled,
+                         @Value("${app.loans.hot-items.stripes:0}") int stripes,
+                         @Value("${app.loans.hot-items.flush-batch-size:1000}") int flushBatchSize,
+                         @Value("${app.loans.hot-items.flush-interval:200ms}") Duration flushInterval) {
+        this(loanRepository, eventPublisher, transactionTemplate, enabled,
+                stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors(), flushBatchSize, flushInterval,
+                Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "hot-book-flush")));
+    }
+
+    HotBookLedger(LoanRepository loanRepository, ApplicationEventPublisher eventPublisher,
+                  TransactionTemplate transactionTemplate, boolean enabled, int stripes, int flushBatchSize,
+                  Duration flushInterval, ScheduledExecutorService flusher) {
+        this.loanRepository = loanRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.stripes = stripes;
+        this.flushBatchSize = flushBatchSize;
+        this.flushInterval = flushInterval;
+        this.flusher = flusher;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Copies left pending by a previous run are taken even when hot-item mode has since been disabled
+    @EventListener(ApplicationReadyEvent.class)
+    void startFlushing() {
+        if (enabled) {
+            log.info("Hot-item mode enabled with {} stripes per book, flushing every {}", stripes, flushInterval);
+            flusher.scheduleWithFixedDelay(this::flush, 0, flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            flusher.execute(this::flush);
+        }
+    }
+
+    /**
+     * Takes a copy of the book for the current transaction. It is given back if the transaction rolls back.
+     *
+     * @throws ResourceUnavailableException when no copies are left, without querying the database
+     * @throws ResourceNotFoundException    when the book does not exist
+     */
+    public void reserve(UUID bookId) {
+        reserveInTransaction(bookId);
+    }
+
+    /**
+     * Like {@link #reserve}, for checkouts that may still be rejected: the copy can be given back with
+     * {@link Reservation#cancel()} before the transaction ends.
+     */
+    Reservation reserveInTransaction(UUID bookId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Copies can only be reserved inside a transaction");
+        }
+        Reservation reservation = tryReserve(bookId, heldByTransaction());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                reservation.complete(status == STATUS_COMMITTED);
+            }
+        });
+        return reservation;
+    }
+
+    // The copies reserved by the current transaction for each book, its checkouts are still to be inserted
+    @SuppressWarnings("unchecked")
+    private Map<Entry, Integer> heldByTransaction() {
+        Map<Entry, Integer> held = (Map<Entry, Integer>) TransactionSynchronizationManager.getResource(this);
+        if (held == null) {
+            held = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, held);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(HotBookLedger.this);
+                }
+            });
+        }
+        return held;
+    }
+
+    Reservation tryReserve(UUID bookId) {
+        return tryReserve(bookId, new HashMap<>());
+    }
+
+    private Reservation tryReserve(UUID bookId, Map<Entry, Integer> held) {
+        Entry entry = entries.computeIfAbsent(bookId, id -> new Entry(stripes));
+        while (true) {
+            // Counted before checking the entry, so a reload either waits for this reservation or is seen by it
+            entry.inFlight.incrementAndGet();
+            if (entry.isStale()) {
+                entry.inFlight.decrementAndGet();
+                reload(bookId, entry, held.getOrDefault(entry, 0));
+                continue;
+            }
+            if (entry.copies.tryTake()) {
+                held.merge(entry, 1, Integer::sum);
+                return new Reservation(entry, held);
+            }
+
+            entry.inFlight.decrementAndGet();
+            throw new ResourceUnavailableException("Book is unavailable: " + entry.bookName);
+        }
+    }
+
+    // Only one thread reloads a book, its other checkouts wait on the entry until the counters are set again. The
+    // copies the caller's transaction already holds are not in the database yet, so they are left out of the counters
+    private void reload(UUID bookId, Entry entry, int held) {
+        synchronized (entry) {
+            int invalidations = entry.invalidations.get();
+            if (entry.loadedAt == invalidations) return;
+
+            // Reservations still in flight may commit after the query, their loans would not be counted. The
+            // caller's own can only complete after this reload, so they are not waited for
+            awaitDrained(bookId, entry, held);
+            BookSnapshot book = loanRepository.findAvailableCopies(bookId).orElse(null);
+            if (book == null) {
+                entries.remove(bookId, entry);
+                throw new ResourceNotFoundException("Book not found with id: " + bookId);
+            }
+            entry.bookName = book.name();
+            entry.copies.set(Math.max(book.copies() - held, 0));
+            entry.loadedAt = invalidations;
+            log.debug("Loaded {} available copies of book {}", book.copies(), bookId);
+        }
+    }
+
+    private void awaitDrained(UUID bookId, Entry entry, int held) {
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (entry.inFlight.get() > held) {
+            if (System.nanoTime() > deadline) {
+                log.warn("Book {} still has {} checkouts in flight, its copies could not be reloaded", bookId,
+                        entry.inFlight.get() - held);
+                throw new ResourceUnavailableException("Book is busy, try again later");
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * Books changed outside the ledger (returns, edits, imports) are reloaded on their next checkout.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BooksChangedEvent event) {
+        if (event == flushEvent) return;
+        for (BookSnapshot book : event.books()) {
+            Entry entry = entries.get(book.id());
+            if (entry != null) entry.invalidations.incrementAndGet();
+        }
+    }
+
+    void flush() {
+        try {
+            List<BookSnapshot> books;
+            do {
+                books = transactionTemplate.execute(status -> {
+                    List<BookSnapshot> changed = loanRepository.applyPendingCopies(flushBatchSize);
+                    if (!changed.isEmpty()) {
+                        BooksChangedEvent event = new BooksChangedEvent(changed);
+                        flushEvent = event;
+                        eventPublisher.publishEvent(event);
+                    }
+                    return changed;
+                });
+            } while (books != null && !books.isEmpty());
+        } catch (RuntimeException e) {
+            // The copies are still pending, the next flush takes them
+            log.warn("Could not apply pending copies: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    static final class Reservation {
+        private final Entry entry;
+        // Only used by the thread running the checkout, like the held copies of its transaction
+        private final Map<Entry, Integer> held;
+        private boolean completed;
+
+        private Reservation(Entry entry, Map<Entry, Integer> held) {
+            this.entry = entry;
+            this.held = held;
+        }
+
+        void cancel() {
+            complete(false);
+        }
+
+        void complete(boolean committed) {
+            if (completed) return;
+            completed = true;
+            if (!committed) entry.copies.give();
+            held.computeIfPresent(entry, (key, copies) -> copies > 1 ? copies - 1 : null);
+            entry.inFlight.decrementAndGet();
+        }
+    }
+
+    private static final class Entry {
+        private final StripedCounter copies;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // Bumped on every change made outside the ledger, the counters are reloaded when it differs from loadedAt
+        private final AtomicInteger invalidations = new AtomicInteger();
+        private volatile int loadedAt = -1;
+        private volatile String bookName;
+
+        private Entry(int stripes) {
+            this.copies = new StripedCounter(stripes);
+        }
+
+        private boolean isStale() {
+            return loadedAt != invalidations.get();
+        }
+    }
+}
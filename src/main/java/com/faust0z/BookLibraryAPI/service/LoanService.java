@@ -1,28 +1,41 @@
 package com.faust0z.BookLibraryAPI.service;
 
 import com.faust0z.BookLibraryAPI.dto.AdminLoanDTO;
+import com.faust0z.BookLibraryAPI.dto.BatchLoanResultDTO;
 import com.faust0z.BookLibraryAPI.dto.CreateLoanDTO;
 import com.faust0z.BookLibraryAPI.dto.LoanDTO;
-import com.faust0z.BookLibraryAPI.entity.BookEntity;
 import com.faust0z.BookLibraryAPI.entity.LoanEntity;
-import com.faust0z.BookLibraryAPI.entity.UserEntity;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.event.LoansChangedEvent;
 import com.faust0z.BookLibraryAPI.exception.AlreadyLoanedBookException;
 import com.faust0z.BookLibraryAPI.exception.LoanLimitExceededException;
 import com.faust0z.BookLibraryAPI.exception.ResourceNotFoundException;
 import com.faust0z.BookLibraryAPI.exception.ResourceUnavailableException;
 import com.faust0z.BookLibraryAPI.mapper.LoanMapper;
 import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import com.faust0z.BookLibraryAPI.repository.LoanCheckout;
 import com.faust0z.BookLibraryAPI.repository.LoanRepository;
-import com.faust0z.BookLibraryAPI.repository.UserRepository;
+import com.faust0z.BookLibraryAPI.repository.LoanRepositoryCustom.CheckoutItem;
+import com.faust0z.BookLibraryAPI.repository.LoanReturn;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Slf4j
@@ -31,23 +44,29 @@ public class LoanService {
 
     private final LoanRepository loanRepository;
     private final BookRepository bookRepository;
-    private final UserRepository userRepository;
     private final LoanMapper loanMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final HotBookLedger hotBookLedger;
+    private final CacheManager cacheManager;
     private static final int MAX_ACTIVE_LOANS = 3;
     private static final int LOAN_LIMIT_WEEKS = 2;
 
-    public LoanService(LoanRepository loanRepository, BookRepository bookRepository, UserRepository userRepository, LoanMapper loanMapper) {
+    public LoanService(LoanRepository loanRepository, BookRepository bookRepository, LoanMapper loanMapper,
+                       ApplicationEventPublisher eventPublisher, HotBookLedger hotBookLedger,
+                       CacheManager cacheManager) {
         this.loanRepository = loanRepository;
         this.bookRepository = bookRepository;
-        this.userRepository = userRepository;
         this.loanMapper = loanMapper;
+        this.eventPublisher = eventPublisher;
+        this.hotBookLedger = hotBookLedger;
+        this.cacheManager = cacheManager;
     }
 
     @Cacheable(value = "loans", key = "'list:all'")
-    @Transactional
+    @Transactional(readOnly = true)
     public List<AdminLoanDTO> getAllLoans() {
         log.debug("Fetching all loans from database");
-        return loanMapper.toAdminDtoList(loanRepository.findAllWithUserAndBook());
+        return loanRepository.findAllAdminDtos();
     }
 
     @Cacheable(value = "loans", key = "'details:' + #loanId")
@@ -74,63 +93,144 @@ public class LoanService {
 
     @Caching(evict = {
             @CacheEvict(value = "loans", key = "'list:all'"),
-            @CacheEvict(value = "loans", key = "'details:' + #dto.userId"),
-            @CacheEvict(value = "books", key = "'list:all'"),
-            @CacheEvict(value = "books", key = "'details:' + #result.bookId")
+            @CacheEvict(value = "loans", key = "'details:' + #dto.userId")
     })
     @Transactional
     public LoanDTO createLoan(CreateLoanDTO dto) {
-        log.debug("Attempting to create loan for userId: {} and bookId: {}", dto.getUserId(), dto.getBookId());
+        UUID userId = dto.getUserId();
+        UUID bookId = dto.getBookId();
+        log.debug("Attempting to create loan for userId: {} and bookId: {}", userId, bookId);
 
-        UserEntity user = userRepository.findById(dto.getUserId())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + dto.getUserId()));
+        // The three business rules are checked by the same statement that takes the copy and inserts the loan
+        UUID loanId = UUID.randomUUID();
+        LocalDate loanDate = LocalDate.now();
+        LocalDate dueDate = loanDate.plusWeeks(LOAN_LIMIT_WEEKS);
+        LoanCheckout checkout;
+        if (hotBookLedger.isEnabled()) {
+            // Sold out books are rejected from memory, before any statement is sent. The copy stays pending on the
+            // loan, and the rollback of a rejected checkout gives it back to the ledger
+            hotBookLedger.reserve(bookId);
+            checkout = loanRepository.checkoutReserved(loanId, userId, bookId, loanDate, dueDate, MAX_ACTIVE_LOANS);
+        } else {
+            checkout = loanRepository.checkout(loanId, userId, bookId, loanDate, dueDate, MAX_ACTIVE_LOANS);
+        }
 
-        BookEntity book = bookRepository.findById(dto.getBookId())
-                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id: " + dto.getBookId()));
+        if (!checkout.created()) {
+            throw rejectionOf(checkout, userId, bookId);
+        }
 
-        // --- Business Rule #1 ---
-        log.debug("Checking book availability. Current copies: {}", book.getCopies());
-        if (book.getCopies() <= 0) {
-            throw new ResourceUnavailableException("Book is unavailable: " + book.getName());
+        // Pending copies are published by the ledger's flush, once they are taken from the book
+        if (!hotBookLedger.isEnabled()) {
+            eventPublisher.publishEvent(new BooksChangedEvent(List.of(checkout.loanedBook())));
         }
+        log.info("Loan created successfully: loanId={} for bookId={}", loanId, bookId);
 
-        // --- Business Rule #2 ---
-        log.debug("Checking if user {} already has an active loan for book {}", user.getId(), book.getId());
-        if (loanRepository.existsByUserIdAndBookIdAndReturnDateIsNull(user.getId(), book.getId())) {
-            throw new AlreadyLoanedBookException("User " + user.getId() + " is already loaning book " + book.getId());
+        return toDto(userId, checkout.loanedBook(), loanDate, dueDate, null);
+    }
+
+    /**
+     * Creates many loans in one transaction, with one statement for all of them. Each loan is checked as
+     * {@link #createLoan} would, in the order given, but a rejected loan does not stop the others.
+     */
+    @Transactional
+    public List<BatchLoanResultDTO> createLoans(List<CreateLoanDTO> dtos) {
+        log.info("Starting batch checkout of {} loans", dtos.size());
+        LocalDate loanDate = LocalDate.now();
+        LocalDate dueDate = loanDate.plusWeeks(LOAN_LIMIT_WEEKS);
+        List<CheckoutItem> items = dtos.stream()
+                .map(dto -> new CheckoutItem(UUID.randomUUID(), dto.getUserId(), dto.getBookId()))
+                .toList();
+        BatchLoanResultDTO[] results = new BatchLoanResultDTO[items.size()];
+
+        // Position in the request of each item sent to the database
+        List<Integer> positions = new ArrayList<>(items.size());
+        List<LoanCheckout> checkouts;
+        if (hotBookLedger.isEnabled()) {
+            List<HotBookLedger.Reservation> reservations = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                try {
+                    reservations.add(hotBookLedger.reserveInTransaction(items.get(i).bookId()));
+                    positions.add(i);
+                } catch (ResourceUnavailableException | ResourceNotFoundException e) {
+                    results[i] = failed(i, null, e);
+                }
+            }
+            checkouts = loanRepository.checkoutAllReserved(positions.stream().map(items::get).toList(), loanDate,
+                    dueDate, MAX_ACTIVE_LOANS);
+            for (int j = 0; j < checkouts.size(); j++) {
+                if (!checkouts.get(j).created()) reservations.get(j).cancel();
+            }
+        } else {
+            for (int i = 0; i < items.size(); i++) positions.add(i);
+            checkouts = loanRepository.checkoutAll(items, loanDate, dueDate, MAX_ACTIVE_LOANS);
         }
 
-        // --- Business Rule #3 ---
-        int activeLoans = loanRepository.countByUserIdAndReturnDateIsNull(user.getId());
-        log.debug("User currently has {} active loans", activeLoans);
+        Map<UUID, BookSnapshot> changedBooks = new LinkedHashMap<>();
+        Set<UUID> userIds = new HashSet<>();
+        int created = 0;
+        for (int j = 0; j < checkouts.size(); j++) {
+            int i = positions.get(j);
+            CheckoutItem item = items.get(i);
+            LoanCheckout checkout = checkouts.get(j);
+            if (checkout.created()) {
+                results[i] = new BatchLoanResultDTO(i, true, item.loanId(),
+                        toDto(item.userId(), checkout.loanedBook(), loanDate, dueDate, null), null, null);
+                // Every loan of a book carries the same row, updated once for the whole batch
+                changedBooks.put(checkout.loanedBook().id(), checkout.loanedBook());
+                userIds.add(item.userId());
+                created++;
+            } else {
+                results[i] = failed(i, null, rejectionOf(checkout, item.userId(), item.bookId()));
+            }
+        }
 
-        if (activeLoans >= MAX_ACTIVE_LOANS) {
-            throw new LoanLimitExceededException("User has reached the maximum loan limit of " + MAX_ACTIVE_LOANS);
+        // Pending copies are published by the ledger's flush, once they are taken from the book
+        if (!hotBookLedger.isEnabled() && !changedBooks.isEmpty()) {
+            eventPublisher.publishEvent(new BooksChangedEvent(new ArrayList<>(changedBooks.values())));
+        }
+        if (!userIds.isEmpty()) {
+            eventPublisher.publishEvent(new LoansChangedEvent(userIds, Set.of()));
         }
 
-        book.setCopies(book.getCopies() - 1);
-        bookRepository.save(book);
+        log.info("Batch checkout completed: {} of {} loans created", created, items.size());
+        return List.of(results);
+    }
 
-        LoanEntity loan = new LoanEntity();
-        loan.setUser(user);
-        loan.setBook(book);
-        loan.setLoanDate(LocalDate.now());
-        loan.setDueDate(LocalDate.now().plusWeeks(LOAN_LIMIT_WEEKS));
-        loan.setReturnDate(null);
+    // Reports the first rule the loan broke, in the order they have always been checked
+    private RuntimeException rejectionOf(LoanCheckout checkout, UUID userId, UUID bookId) {
+        if (!checkout.userFound()) {
+            return new ResourceNotFoundException("User not found with id: " + userId);
+        }
+        if (!checkout.bookFound()) {
+            return new ResourceNotFoundException("Book not found with id: " + bookId);
+        }
 
-        LoanEntity savedLoan = loanRepository.save(loan);
+        // --- Business Rule #1 ---
+        log.debug("Checking book availability. Current copies: {}", checkout.copies());
+        if (checkout.copies() <= 0) {
+            return new ResourceUnavailableException("Book is unavailable: " + checkout.bookName());
+        }
 
-        log.info("Loan created successfully: loanId={} for bookId={}", savedLoan.getId(), book.getId());
+        // --- Business Rule #2 ---
+        if (checkout.alreadyLoaned()) {
+            return new AlreadyLoanedBookException("User " + userId + " is already loaning book " + bookId);
+        }
 
-        return loanMapper.toDto(savedLoan);
+        // --- Business Rule #3 ---
+        log.debug("User currently has {} active loans", checkout.activeLoans());
+        if (checkout.activeLoans() >= MAX_ACTIVE_LOANS) {
+            return new LoanLimitExceededException("User has reached the maximum loan limit of " + MAX_ACTIVE_LOANS);
+        }
+
+        // Every rule held when the statement started, so a concurrent loan took the last copy before the update
+        log.debug("Book {} ran out of copies while the loan was being checked", bookId);
+        return new ResourceUnavailableException("Book is unavailable: " + checkout.bookName());
     }
 
     @Caching(evict = {
             @CacheEvict(value = "loans", key = "'details:' + #loanId"),
             @CacheEvict(value = "loans", key = "'list:all'"),
-            @CacheEvict(value = "loans", key = "'details:' + #result.userId"),
-            @CacheEvict(value = "books", key = "'list:all'"),
-            @CacheEvict(value = "books", key = "'details:' + #result.bookId")
+            @CacheEvict(value = "loans", key = "'details:' + #result.userId")
     })
     @Transactional
     public LoanDTO returnLoan(UUID loanId) {
@@ -146,9 +246,99 @@ public class LoanService {
         LoanEntity savedLoan = loanRepository.save(loan);
 
         bookRepository.incrementCopies(savedLoan.getBook().getId());
+        // The book proxy is first initialized here, after the increment, so it reads the new amount of copies
+        eventPublisher.publishEvent(BooksChangedEvent.of(savedLoan.getBook()));
 
         log.info("Loan returned successfully: loanId={} for bookId={}", savedLoan.getId(), savedLoan.getBook().getId());
 
         return loanMapper.toDto(savedLoan);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns many loans in one transaction, with one statement for all of them. A loan that is not found or was
+     * already returned does not stop the others.
+     */
+    @Transactional
+    public List<BatchLoanResultDTO> returnLoans(List<UUID> loanIds) {
+        log.info("Starting batch return of {} loans", loanIds.size());
+        LocalDate returnDate = LocalDate.now();
+        List<LoanReturn> returns = loanRepository.returnAll(loanIds, returnDate);
+
+        List<BatchLoanResultDTO> results = new ArrayList<>(returns.size());
+        Map<UUID, BookSnapshot> changedBooks = new LinkedHashMap<>();
+        Set<UUID> userIds = new HashSet<>();
+        Set<UUID> returnedIds = new HashSet<>();
+        for (int i = 0; i < returns.size(); i++) {
+            LoanReturn loanReturn = returns.get(i);
+            if (loanReturn.returned()) {
+                LoanDTO loan = toDto(loanReturn.userId(), loanReturn.returnedBook(), loanReturn.loanDate(),
+                        loanReturn.dueDate(), returnDate);
+                results.add(new BatchLoanResultDTO(i, true, loanReturn.loanId(), loan, null, null));
+                changedBooks.put(loanReturn.returnedBook().id(), loanReturn.returnedBook());
+                userIds.add(loanReturn.userId());
+                returnedIds.add(loanReturn.loanId());
+            } else if (!loanReturn.found()) {
+                results.add(failed(i, loanReturn.loanId(),
+                        new ResourceNotFoundException("Loan not found with id: " + loanReturn.loanId())));
+            } else {
+                // Also a loan repeated in the batch, or returned by a concurrent request
+                String message = loanReturn.previousReturnDate() != null
+                        ? "This loan has already been returned on " + loanReturn.previousReturnDate()
+                        : "This loan has already been returned";
+                results.add(failed(i, loanReturn.loanId(), new ResourceUnavailableException(message)));
+            }
+        }
+
+        if (!changedBooks.isEmpty()) {
+            eventPublisher.publishEvent(new BooksChangedEvent(new ArrayList<>(changedBooks.values())));
+            eventPublisher.publishEvent(new LoansChangedEvent(userIds, returnedIds));
+        }
+
+        log.info("Batch return completed: {} of {} loans returned", returnedIds.size(), loanIds.size());
+        return results;
+    }
+
+    /**
+     * Evicts the cached loans of a batch once it is committed, each key only once however many of its loans changed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLoansChanged(LoansChangedEvent event) {
+        Cache loans = cacheManager.getCache("loans");
+        Cache userLoans = cacheManager.getCache("user_loans");
+
+        evict(loans, "list:all");
+        for (UUID userId : event.userIds()) {
+            evict(loans, "details:" + userId);
+            evict(userLoans, userId);
+        }
+        for (UUID loanId : event.loanIds()) {
+            evict(loans, "details:" + loanId);
+        }
+    }
+
+    // Direct cache calls skip the CacheErrorHandler, so a Redis outage is only logged here
+    private void evict(Cache cache, Object key) {
+        if (cache == null) return;
+        try {
+            cache.evict(key);
+        } catch (RuntimeException e) {
+            log.error("Redis Cache EVICT failed for key: {} in cache: {}. Error: {}", key, cache.getName(), e.getMessage());
+        }
+    }
+
+    // No entity was loaded, so the DTO is filled from the statement's result
+    private LoanDTO toDto(UUID userId, BookSnapshot book, LocalDate loanDate, LocalDate dueDate, LocalDate returnDate) {
+        LoanDTO loan = new LoanDTO();
+        loan.setLoanDate(loanDate);
+        loan.setDueDate(dueDate);
+        loan.setReturnDate(returnDate);
+        loan.setUserId(userId);
+        loan.setBookId(book.id());
+        loan.setBookName(book.name());
+        return loan;
+    }
+
+    private BatchLoanResultDTO failed(int index, UUID loanId, RuntimeException error) {
+        return new BatchLoanResultDTO(index, false, loanId, null, error.getClass().getSimpleName(), error.getMessage());
+    }
+}
@@ -0,0 +1,143 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.exception.ExcelProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes the catalog as newline delimited JSON: one object per line, keyed by the column fields.
+ * Both directions stream through NIO channels, so memory use does not grow with the size of the file.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NdjsonService {
+
+    private static final List<BookColumns.Column> COLUMNS = BookColumns.COLUMNS;
+
+    private final ObjectMapper objectMapper;
+
+    public void exportBooksToNdjson(Stream<BookEntity> books, OutputStream out) {
+        log.info("Initiating streaming NDJSON export");
+        // The channel is not closed, the output stream belongs to the caller
+        try (Writer writer = new ChannelText.ChannelWriter(Channels.newChannel(out));
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+            // Objects are separated by the line breaks written below instead of the default space
+            generator.setRootValueSeparator(null);
+            int count = 0;
+            Iterator<BookEntity> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                BookEntity book = iterator.next();
+                generator.writeStartObject();
+                for (BookColumns.Column column : COLUMNS) {
+                    Object value = column.extractor().apply(book);
+                    generator.writeFieldName(column.field());
+                    if (value == null) generator.writeNull();
+                    else if (value instanceof Number number) generator.writeNumber(number.intValue());
+                    else generator.writeString(value.toString());
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                count++;
+            }
+            log.info("NDJSON export completed successfully with {} books", count);
+
+        } catch (IOException e) {
+            log.error("Critical error during NDJSON export: {}", e.getMessage(), e);
+            throw new ExcelProcessingException("Failed to generate NDJSON file");
+        }
+    }
+
+    /**
+     * Reads the file and hands each validated book to the consumer, in file order. Blank lines are skipped.
+     * Lines that are not a JSON object or fail validation are passed to {@code onInvalidRow}, which may throw
+     * to abort the import.
+     */
+    public void readBooksFromNdjson(Path file, Consumer<BookEntity> consumer, Consumer<ExcelProcessingException> onInvalidRow) {
+        log.info("Starting NDJSON import process");
+        LineHandler handler = new LineHandler(consumer, onInvalidRow);
+        try {
+            ChannelText.readChars(file, handler::parse);
+            handler.endLine();
+            log.info("Successfully imported {} books from NDJSON", handler.count);
+
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to parse NDJSON file: {}", e.getMessage(), e);
+            throw new ExcelProcessingException("Import failed: " + e.getMessage());
+        }
+    }
+
+    private final class LineHandler {
+        private final Consumer<BookEntity> consumer;
+        private final Consumer<ExcelProcessingException> onInvalidRow;
+        private final StringBuilder line = new StringBuilder();
+        private int lineNum;
+        private int count;
+
+        private LineHandler(Consumer<BookEntity> consumer, Consumer<ExcelProcessingException> onInvalidRow) {
+            this.consumer = consumer;
+            this.onInvalidRow = onInvalidRow;
+        }
+
+        // A line may span any number of chunks
+        private void parse(CharBuffer chars) {
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                if (c == '\n') endLine();
+                else line.append(c);
+            }
+        }
+
+        private void endLine() {
+            lineNum++;
+            String json = line.toString().trim();
+            line.setLength(0);
+            if (json.isEmpty()) return;
+
+            BookEntity book;
+            try {
+                book = toBook(json);
+                BookColumns.validateBook(book, lineNum);
+            } catch (ExcelProcessingException e) {
+                onInvalidRow.accept(e);
+                return;
+            }
+            consumer.accept(book);
+            count++;
+        }
+
+        private BookEntity toBook(String json) {
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(json);
+            } catch (JsonProcessingException e) {
+                throw new ExcelProcessingException("Invalid JSON at row " + lineNum);
+            }
+            if (!node.isObject()) throw new ExcelProcessingException("Expected a JSON object at row " + lineNum);
+
+            BookEntity book = new BookEntity();
+            for (BookColumns.Column column : COLUMNS) {
+                JsonNode value = node.get(column.field());
+                column.importer().accept(book, value == null || value.isNull() ? "" : value.asText().trim());
+            }
+            return book;
+        }
+    }
+}
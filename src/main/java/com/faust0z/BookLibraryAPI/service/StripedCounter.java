@@ -0,0 +1,57 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A counter that never goes below zero, split into stripes so threads taking from it mostly update different cache
+ * lines. Each thread starts at its own stripe and only moves to the others once it is empty, so taking fails only
+ * when every stripe is.
+ */
+final class StripedCounter {
+
+    // Ints between two stripes, keeps each one on its own 64 byte cache line
+    private static final int PADDING = 16;
+
+    private final int stripes;
+    private final AtomicIntegerArray cells;
+
+    StripedCounter(int stripes) {
+        this.stripes = stripes;
+        this.cells = new AtomicIntegerArray(stripes * PADDING);
+    }
+
+    /**
+     * Spreads the value evenly over the stripes. Not atomic, no thread may take or give meanwhile.
+     */
+    void set(int value) {
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * PADDING, value / stripes + (i < value % stripes ? 1 : 0));
+        }
+    }
+
+    boolean tryTake() {
+        int home = home();
+        for (int i = 0; i < stripes; i++) {
+            int index = (home + i) % stripes * PADDING;
+            int value;
+            while ((value = cells.get(index)) > 0) {
+                if (cells.compareAndSet(index, value, value - 1)) return true;
+            }
+        }
+        return false;
+    }
+
+    void give() {
+        cells.incrementAndGet(home() * PADDING);
+    }
+
+    int sum() {
+        int sum = 0;
+        for (int i = 0; i < stripes; i++) sum += cells.get(i * PADDING);
+        return sum;
+    }
+
+    private int home() {
+        return (int) (Thread.currentThread().threadId() % stripes);
+    }
+}
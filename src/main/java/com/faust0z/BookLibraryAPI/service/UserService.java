@@ -39,7 +39,7 @@ public class UserService {
 
     @Cacheable(value = "users", key = "'list:all'")
     public List<AdminUserDTO> getAllUsers() {
-        return userMapper.toAdminDtoList(userRepository.findAll());
+        return userRepository.findAllAdminDtos();
     }
 
     @Cacheable(value = "users", key = "'detail:' + #userId")
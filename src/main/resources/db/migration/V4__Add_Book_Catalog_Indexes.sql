@@ -0,0 +1,3 @@
+CREATE INDEX idx_books_author_id ON books (author, id);
+
+CREATE INDEX idx_books_publication_date_id ON books (publication_date, id);
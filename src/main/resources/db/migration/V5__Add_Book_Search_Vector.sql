@@ -0,0 +1,4 @@
+ALTER TABLE books
+ADD COLUMN search_vector TSVECTOR GENERATED ALWAYS AS (to_tsvector('simple', name || ' ' || author)) STORED;
+
+CREATE INDEX idx_books_search_vector ON books USING GIN (search_vector);
@@ -0,0 +1,33 @@
+-- Re-imports used to create duplicate books. Loans of each duplicate are moved to the oldest row before removing it
+CREATE TEMPORARY TABLE duplicate_books AS
+SELECT id, keeper_id
+FROM (SELECT id,
+             first_value(id) OVER (PARTITION BY name, author, publication_date ORDER BY created_at NULLS LAST, id) AS keeper_id
+      FROM books) ranked
+WHERE id <> keeper_id;
+
+-- The copies still on the duplicates' shelves become the keeper's, so returning a moved loan gives back a copy that
+-- the keeper really lent
+UPDATE books k
+SET copies = k.copies + d.copies
+FROM (SELECT dup.keeper_id, sum(b.copies) AS copies
+      FROM duplicate_books dup
+      JOIN books b ON b.id = dup.id
+      GROUP BY dup.keeper_id) d
+WHERE k.id = d.keeper_id;
+
+-- A user who borrowed two of the duplicates now has two active loans of the keeper. Both are kept: the user does hold
+-- two copies, and closing one would lose its copy from books.copies. New loans of the book are still refused while
+-- either is active, and each return gives back its own copy
+UPDATE loans l
+SET book_id = d.keeper_id
+FROM duplicate_books d
+WHERE l.book_id = d.id;
+
+DELETE FROM books b
+USING duplicate_books d
+WHERE b.id = d.id;
+
+DROP TABLE duplicate_books;
+
+CREATE UNIQUE INDEX uk_books_natural_key ON books (name, author, publication_date);
@@ -0,0 +1,5 @@
+-- Loans created in hot-item mode whose copy is not yet taken from books.copies. Kept on the loan, so copies
+-- reserved before a restart are still applied after it
+ALTER TABLE loans ADD COLUMN copy_pending BOOLEAN NOT NULL DEFAULT false;
+
+CREATE INDEX idx_loans_copy_pending ON loans (book_id) WHERE copy_pending;
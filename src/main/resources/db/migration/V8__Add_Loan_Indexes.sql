@@ -0,0 +1,8 @@
+-- Loan rules only look at a user's active loans. Returned loans are kept forever, so indexing only the active ones keeps
+-- the index small. Covers the active loans count (on user_id alone) and the already loaned check
+CREATE INDEX idx_loans_user_id_book_id_active ON loans (user_id, book_id) WHERE return_date IS NULL;
+
+-- Foreign keys, for a user's loan history and for the loans checked when a user or a book is deleted
+CREATE INDEX idx_loans_user_id ON loans (user_id);
+
+CREATE INDEX idx_loans_book_id ON loans (book_id);
@@ -1,11 +1,21 @@
 package com.faust0z.BookLibraryAPI;
 
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.entity.UserEntity;
+import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import com.faust0z.BookLibraryAPI.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
 @SpringBootTest
 @Testcontainers
 public abstract class BaseIntegrationTest {
@@ -16,4 +26,29 @@ public abstract class BaseIntegrationTest {
             "postgres:17-alpine"
     );
 
-}
\ No newline at end of file
+    @Autowired
+    protected BookRepository bookRepository;
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    // Names and emails are unique, the tests share the database
+    protected BookEntity saveBook(int copies) {
+        BookEntity book = new BookEntity();
+        book.setName("Popular Book " + UUID.randomUUID());
+        book.setAuthor("Popular Author");
+        book.setPublicationDate(LocalDate.of(2026, 1, 1));
+        book.setCopies(copies);
+        return bookRepository.save(book);
+    }
+
+    protected List<UserEntity> saveUsers(int amount) {
+        return userRepository.saveAll(IntStream.range(0, amount).mapToObj(i -> {
+            UserEntity user = new UserEntity();
+            user.setName("Borrower " + i);
+            user.setEmail(UUID.randomUUID() + "@example.com");
+            user.setPassword("not-a-real-hash");
+            return user;
+        }).toList());
+    }
+}
@@ -0,0 +1,42 @@
+package com.faust0z.BookLibraryAPI.dto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookFileFormatTest {
+
+    @Test
+    void fromAcceptHeader_ShouldPickTheHighestQualityWhateverTheOrder() {
+        assertThat(BookFileFormat.fromAcceptHeader("text/csv;q=0.1, application/x-ndjson"))
+                .isEqualTo(BookFileFormat.NDJSON);
+        assertThat(BookFileFormat.fromAcceptHeader("application/x-ndjson;q=0.5, text/csv;q=0.9"))
+                .isEqualTo(BookFileFormat.CSV);
+    }
+
+    @Test
+    void fromAcceptHeader_WithEqualQuality_ShouldKeepTheWrittenOrder() {
+        assertThat(BookFileFormat.fromAcceptHeader("text/csv, application/x-ndjson")).isEqualTo(BookFileFormat.CSV);
+    }
+
+    @Test
+    void fromAcceptHeader_ShouldPreferANamedFormatOverAWildcard() {
+        assertThat(BookFileFormat.fromAcceptHeader("*/*, text/csv")).isEqualTo(BookFileFormat.CSV);
+        assertThat(BookFileFormat.fromAcceptHeader("text/*")).isEqualTo(BookFileFormat.CSV);
+    }
+
+    @Test
+    void fromAcceptHeader_ShouldSkipRefusedFormats() {
+        assertThat(BookFileFormat.fromAcceptHeader(
+                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet;q=0, */*;q=0.5"))
+                .isEqualTo(BookFileFormat.CSV);
+    }
+
+    @Test
+    void fromAcceptHeader_WithoutAKnownFormat_ShouldDefaultToXlsx() {
+        assertThat(BookFileFormat.fromAcceptHeader(null)).isEqualTo(BookFileFormat.XLSX);
+        assertThat(BookFileFormat.fromAcceptHeader("text/html,application/xhtml+xml,*/*;q=0.8"))
+                .isEqualTo(BookFileFormat.XLSX);
+        assertThat(BookFileFormat.fromAcceptHeader("not a media type")).isEqualTo(BookFileFormat.XLSX);
+    }
+}
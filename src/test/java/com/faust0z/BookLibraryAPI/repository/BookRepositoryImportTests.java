@@ -0,0 +1,172 @@
+package com.faust0z.BookLibraryAPI.repository;
+
+import com.faust0z.BookLibraryAPI.BaseIntegrationTest;
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * The two import paths of BookRepositoryCustomImpl against a real database: COPY in CSV format for new books, and
+ * the upsert on the books' natural key, which binds each column as an array.
+ */
+@TestPropertySource(properties = "spring.flyway.enabled=true")
+class BookRepositoryImportTests extends BaseIntegrationTest {
+
+    // Every character the CSV rows have to escape, plus non-ASCII text
+    private static final String TRICKY_NAME = "\"Quoted\", with commas,\nnew lines\r\nand ñandú \\N";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private BookEntity book(String name, String author, LocalDate publicationDate, Integer copies) {
+        BookEntity book = new BookEntity();
+        book.setName(name);
+        book.setAuthor(author);
+        book.setPublicationDate(publicationDate);
+        book.setCopies(copies);
+        return book;
+    }
+
+    private String uniqueAuthor() {
+        return "Author " + UUID.randomUUID();
+    }
+
+    private List<BookSnapshot> booksBy(String author) {
+        return jdbcTemplate.query(
+                "SELECT id, name, author, publication_date, copies FROM books WHERE author = ? ORDER BY name",
+                (rs, rowNum) -> new BookSnapshot(rs.getObject("id", UUID.class), rs.getString("name"),
+                        rs.getString("author"), rs.getObject("publication_date", LocalDate.class), rs.getInt("copies")),
+                author);
+    }
+
+    private LocalDateTime lastModifiedAt(UUID bookId) {
+        return bookRepository.findLastModifiedAt(bookId).orElseThrow();
+    }
+
+    @Test
+    void copyInsert_ShouldKeepQuotesCommasAndNewLinesInText() {
+        String author = uniqueAuthor() + ", Jr.";
+        List<BookEntity> books = List.of(
+                book(TRICKY_NAME, author, LocalDate.of(1999, 12, 31), 3),
+                book("", author, LocalDate.of(2000, 1, 1), 0));
+
+        transactionTemplate.executeWithoutResult(status -> bookRepository.copyInsert(books));
+
+        assertThat(booksBy(author)).extracting(BookSnapshot::name, BookSnapshot::publicationDate, BookSnapshot::copies)
+                .containsExactlyInAnyOrder(
+                        tuple(TRICKY_NAME, LocalDate.of(1999, 12, 31), 3),
+                        tuple("", LocalDate.of(2000, 1, 1), 0));
+        // The ids and timestamps set on the entities are the ones stored
+        BookEntity copied = books.getFirst();
+        assertThat(bookRepository.findById(copied.getId())).isPresent();
+        assertThat(lastModifiedAt(copied.getId())).isEqualTo(copied.getLastModifiedAt());
+    }
+
+    @Test
+    void copyInsert_WhenAValueIsNull_ShouldSendNullAndRollBackTheChunk() {
+        String author = uniqueAuthor();
+        List<BookEntity> books = List.of(
+                book("Complete", author, LocalDate.of(2001, 1, 1), 1),
+                book("No copies", author, LocalDate.of(2001, 1, 1), null));
+
+        // A null is not copied as an empty value, so the NOT NULL constraint rejects it
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> bookRepository.copyInsert(books)))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(booksBy(author)).isEmpty();
+    }
+
+    @Test
+    void upsertByNaturalKey_ShouldInsertNewBooksWithTheirText() {
+        String author = uniqueAuthor() + ", Jr.";
+
+        List<BookSnapshot> changed = transactionTemplate.execute(status -> bookRepository.upsertByNaturalKey(List.of(
+                book(TRICKY_NAME, author, LocalDate.of(1999, 12, 31), 3))));
+
+        assertThat(changed).singleElement().satisfies(book -> {
+            assertThat(book.name()).isEqualTo(TRICKY_NAME);
+            assertThat(book.author()).isEqualTo(author);
+            assertThat(book.publicationDate()).isEqualTo(LocalDate.of(1999, 12, 31));
+            assertThat(book.copies()).isEqualTo(3);
+        });
+        assertThat(booksBy(author)).containsExactlyElementsOf(changed);
+    }
+
+    @Test
+    void upsertByNaturalKey_WhenReimportedUnchanged_ShouldReturnNothingAndKeepTheRows() {
+        String author = uniqueAuthor();
+        List<BookEntity> books = List.of(
+                book("First", author, LocalDate.of(2010, 5, 1), 2),
+                book("Second", author, LocalDate.of(2011, 5, 1), 4));
+        List<BookSnapshot> inserted = transactionTemplate.execute(status -> bookRepository.upsertByNaturalKey(books));
+        LocalDateTime modifiedAt = lastModifiedAt(inserted.getFirst().id());
+
+        List<BookSnapshot> reimported = transactionTemplate.execute(status -> bookRepository.upsertByNaturalKey(List.of(
+                book("First", author, LocalDate.of(2010, 5, 1), 2),
+                book("Second", author, LocalDate.of(2011, 5, 1), 4))));
+
+        assertThat(reimported).isEmpty();
+        assertThat(booksBy(author)).containsExactlyInAnyOrderElementsOf(inserted);
+        assertThat(lastModifiedAt(inserted.getFirst().id())).isEqualTo(modifiedAt);
+    }
+
+    @Test
+    void upsertByNaturalKey_WhenCopiesChanged_ShouldUpdateTheExistingRow() {
+        String author = uniqueAuthor();
+        BookSnapshot inserted = transactionTemplate.execute(status -> bookRepository.upsertByNaturalKey(List.of(
+                book("Changing", author, LocalDate.of(2012, 1, 1), 2)))).getFirst();
+
+        List<BookSnapshot> updated = transactionTemplate.execute(status -> bookRepository.upsertByNaturalKey(List.of(
+                book("Changing", author, LocalDate.of(2012, 1, 1), 7),
+                book("Unchanged neighbour", author, LocalDate.of(2012, 1, 1), 1))));
+
+        assertThat(updated).extracting(BookSnapshot::name, BookSnapshot::copies).containsExactlyInAnyOrder(
+                tuple("Changing", 7),
+                tuple("Unchanged neighbour", 1));
+        assertThat(updated).filteredOn(book -> book.name().equals("Changing")).singleElement()
+                .extracting(BookSnapshot::id).isEqualTo(inserted.id());
+        assertThat(booksBy(author)).hasSize(2);
+    }
+
+    @Test
+    void upsertByNaturalKey_WithADuplicateKeyInOneChunk_ShouldKeepTheLastRow() {
+        String author = uniqueAuthor();
+
+        List<BookSnapshot> changed = transactionTemplate.execute(status -> bookRepository.upsertByNaturalKey(List.of(
+                book("Twice", author, LocalDate.of(2013, 1, 1), 1),
+                book("Other", author, LocalDate.of(2013, 1, 1), 5),
+                book("Twice", author, LocalDate.of(2013, 1, 1), 3))));
+
+        assertThat(changed).extracting(BookSnapshot::name, BookSnapshot::copies).containsExactly(
+                tuple("Twice", 3),
+                tuple("Other", 5));
+        assertThat(booksBy(author)).extracting(BookSnapshot::name).containsExactly("Other", "Twice");
+    }
+
+    @Test
+    void upsertByNaturalKey_WhenAValueIsNull_ShouldBindNullAndRejectTheChunk() {
+        String author = uniqueAuthor();
+
+        assertThatThrownBy(() -> transactionTemplate.execute(status -> bookRepository.upsertByNaturalKey(List.of(
+                book("Complete", author, LocalDate.of(2014, 1, 1), 1),
+                book("No date", author, null, 1)))))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(booksBy(author)).isEmpty();
+    }
+}
@@ -0,0 +1,227 @@
+package com.faust0z.BookLibraryAPI.repository;
+
+import com.faust0z.BookLibraryAPI.BaseIntegrationTest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the hot loan queries are served by the indexes from V7__Add_Loan_Copy_Pending.sql and
+ * V8__Add_Loan_Indexes.sql. The checkout statements are explained as LoanRepositoryCustomImpl runs them, the SQL
+ * Hibernate generates for a repository method is captured first. Both are explained with their arguments, against a
+ * loan history large enough for the planner to prefer an index over a sequential scan.
+ */
+@TestPropertySource(properties = "spring.flyway.enabled=true")
+class LoanRepositoryQueryPlanTests extends BaseIntegrationTest {
+
+    private static final int USERS = 2_000;
+    private static final int BOOKS = 500;
+    // One loan in ten is still active, one in a thousand is waiting for its copy
+    private static final int LOANS = 50_000;
+    private static final int MAX_ACTIVE_LOANS = 3;
+
+    @TestConfiguration
+    static class SqlCaptureConfig {
+
+        @Bean
+        CapturedSql capturedSql() {
+            return new CapturedSql();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer statementInspectorCustomizer(CapturedSql capturedSql) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, capturedSql);
+        }
+    }
+
+    static class CapturedSql implements StatementInspector {
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+
+        // The only statement run by the action, which must query the loans table
+        String of(Runnable action) {
+            statements.clear();
+            action.run();
+            assertThat(statements).hasSize(1);
+            assertThat(statements.getFirst()).containsIgnoringCase("loans");
+            return statements.getFirst();
+        }
+    }
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CapturedSql capturedSql;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private UUID userId;
+    private UUID bookId;
+
+    @BeforeEach
+    void givenLoanHistory() {
+        Integer loans = jdbcTemplate.queryForObject("SELECT count(*) FROM loans", Integer.class);
+        if (loans == null || loans < LOANS) {
+            String run = UUID.randomUUID().toString();
+            jdbcTemplate.update("""
+                    INSERT INTO users (id, email, name, password)
+                    SELECT gen_random_uuid(), 'reader-' || i || '-' || ? || '@example.com', 'Reader ' || i, 'not-a-real-hash'
+                    FROM generate_series(1, ?) i
+                    """, run, USERS);
+            jdbcTemplate.update("""
+                    INSERT INTO books (id, name, author, publication_date, copies)
+                    SELECT gen_random_uuid(), 'Book ' || i || ' ' || ?, 'Author ' || i % 50, DATE '2000-01-01' + i, 5
+                    FROM generate_series(1, ?) i
+                    """, run, BOOKS);
+            jdbcTemplate.update("""
+                    WITH u AS (SELECT array_agg(id ORDER BY id) AS ids FROM users),
+                         b AS (SELECT array_agg(id ORDER BY id) AS ids FROM books)
+                    INSERT INTO loans (id, loan_date, due_date, return_date, user_id, book_id, copy_pending)
+                    SELECT gen_random_uuid(), DATE '2020-01-01' + i % 2000, DATE '2020-01-15' + i % 2000,
+                           CASE WHEN i % 10 = 0 THEN NULL ELSE DATE '2020-01-08' + i % 2000 END,
+                           u.ids[1 + i % array_length(u.ids, 1)], b.ids[1 + (i * 7) % array_length(b.ids, 1)],
+                           i % 1000 = 0
+                    FROM generate_series(1, ?) i, u, b
+                    """, LOANS);
+            jdbcTemplate.execute("ANALYZE users, books, loans");
+        }
+
+        Map<String, Object> activeLoan = jdbcTemplate.queryForMap(
+                "SELECT user_id, book_id FROM loans WHERE return_date IS NULL ORDER BY id LIMIT 1");
+        userId = (UUID) activeLoan.get("user_id");
+        bookId = (UUID) activeLoan.get("book_id");
+    }
+
+    // UUID[] arguments are bound as uuid arrays, like the batch checkouts bind them
+    private List<JsonNode> planNodes(String sql, Object... args) throws Exception {
+        return parsePlan(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + sql);
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i] instanceof UUID[] ids ? connection.createArrayOf("uuid", ids) : args[i]);
+            }
+            return statement;
+        }, (ResultSetExtractor<String>) rs -> rs.next() ? rs.getString(1) : null));
+    }
+
+    private List<JsonNode> planNodes(String sql, MapSqlParameterSource params) throws Exception {
+        return parsePlan(new NamedParameterJdbcTemplate(jdbcTemplate)
+                .queryForObject("EXPLAIN (FORMAT JSON) " + sql, params, String.class));
+    }
+
+    private List<JsonNode> parsePlan(String plan) throws Exception {
+        List<JsonNode> nodes = new ArrayList<>();
+        collect(objectMapper.readTree(plan).get(0).get("Plan"), nodes);
+        return nodes;
+    }
+
+    private void collect(JsonNode node, List<JsonNode> nodes) {
+        nodes.add(node);
+        if (node.has("Plans")) node.get("Plans").forEach(child -> collect(child, nodes));
+    }
+
+    private void assertUsesIndex(List<JsonNode> nodes, String indexName) {
+        assertThat(nodes)
+                .as("loans must not be scanned sequentially")
+                .noneMatch(node -> node.path("Node Type").asText().equals("Seq Scan")
+                        && node.path("Relation Name").asText().equals("loans"));
+        assertThat(nodes).extracting(node -> node.path("Index Name").asText()).contains(indexName);
+    }
+
+    private MapSqlParameterSource checkoutParams() {
+        return new MapSqlParameterSource()
+                .addValue("loanId", UUID.randomUUID())
+                .addValue("userId", userId)
+                .addValue("bookId", bookId)
+                .addValue("loanDate", LocalDate.now())
+                .addValue("dueDate", LocalDate.now().plusWeeks(2))
+                .addValue("maxActiveLoans", MAX_ACTIVE_LOANS)
+                .addValue("now", LocalDateTime.now());
+    }
+
+    // Arguments in the order LoanRepositoryCustomImpl binds them, a cart of three items of the same user
+    private Object[] batchArgs() {
+        UUID[] loanIds = {UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()};
+        UUID[] userIds = {userId, userId, userId};
+        UUID[] bookIds = {bookId, UUID.randomUUID(), bookId};
+        return new Object[]{LocalDate.now(), LocalDate.now().plusWeeks(2), MAX_ACTIVE_LOANS, LocalDateTime.now(),
+                loanIds, userIds, bookIds};
+    }
+
+    @Test
+    void checkout_ShouldUseActiveLoansIndex() throws Exception {
+        assertUsesIndex(planNodes(LoanRepositoryCustomImpl.CHECKOUT_SQL, checkoutParams()),
+                "idx_loans_user_id_book_id_active");
+    }
+
+    @Test
+    void checkoutReserved_ShouldUseActiveLoansIndex() throws Exception {
+        assertUsesIndex(planNodes(LoanRepositoryCustomImpl.CHECKOUT_RESERVED_SQL, checkoutParams()),
+                "idx_loans_user_id_book_id_active");
+    }
+
+    @Test
+    void checkoutAll_ShouldUseActiveLoansIndex() throws Exception {
+        assertUsesIndex(planNodes(LoanRepositoryCustomImpl.CHECKOUT_ALL_SQL, batchArgs()),
+                "idx_loans_user_id_book_id_active");
+    }
+
+    @Test
+    void checkoutAllReserved_ShouldUseActiveLoansIndex() throws Exception {
+        assertUsesIndex(planNodes(LoanRepositoryCustomImpl.CHECKOUT_ALL_RESERVED_SQL, batchArgs()),
+                "idx_loans_user_id_book_id_active");
+    }
+
+    @Test
+    void findAvailableCopies_ShouldUseCopyPendingIndex() throws Exception {
+        assertUsesIndex(planNodes(LoanRepositoryCustomImpl.AVAILABLE_COPIES_SQL,
+                new MapSqlParameterSource("bookId", bookId)), "idx_loans_copy_pending");
+    }
+
+    @Test
+    void applyPendingCopies_ShouldUseCopyPendingIndex() throws Exception {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("maxLoans", 500)
+                .addValue("now", LocalDateTime.now());
+
+        assertUsesIndex(planNodes(LoanRepositoryCustomImpl.APPLY_PENDING_COPIES_SQL, params), "idx_loans_copy_pending");
+    }
+
+    @Test
+    void findByUserIdWithUserAndBook_ShouldUseUserIdIndex() throws Exception {
+        String sql = capturedSql.of(() -> loanRepository.findByUserIdWithUserAndBook(userId));
+
+        assertUsesIndex(planNodes(sql, userId), "idx_loans_user_id");
+    }
+}
@@ -0,0 +1,116 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.AdminUserDTO;
+import com.faust0z.BookLibraryAPI.dto.AuditLoanDTO;
+import com.faust0z.BookLibraryAPI.dto.BookDTO;
+import com.faust0z.BookLibraryAPI.entity.Role;
+import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import com.faust0z.BookLibraryAPI.repository.LoanRepository;
+import com.faust0z.BookLibraryAPI.repository.UserRepository;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AuditExportServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    private AuditExportService auditExportService;
+
+    @BeforeEach
+    void setUp() {
+        auditExportService = new AuditExportService(bookRepository, userRepository, loanRepository, new ExcelService());
+    }
+
+    // Answers keyset queries the way the database would: rows after the cursor, in id order, one page at a time
+    private <T> List<T> page(List<T> rows, Function<T, UUID> key, UUID cursor, Pageable pageable) {
+        return rows.stream()
+                .filter(row -> cursor == null || key.apply(row).compareTo(cursor) > 0)
+                .sorted(Comparator.comparing(key))
+                .limit(pageable.getPageSize())
+                .toList();
+    }
+
+    @Test
+    void keysetPages_ShouldWalkEveryPageOnce() {
+        List<UUID> ids = IntStream.range(0, AuditExportService.PAGE_SIZE * 2 + 1).mapToObj(i -> UUID.randomUUID()).toList();
+        List<UUID> cursors = new ArrayList<>();
+
+        Iterator<UUID> rows = AuditExportService.keysetPages((cursor, pageable) -> {
+            cursors.add(cursor);
+            return page(ids, id -> id, cursor, pageable);
+        }, id -> id);
+        List<UUID> read = new ArrayList<>();
+        rows.forEachRemaining(read::add);
+
+        assertThat(read).containsExactlyElementsOf(ids.stream().sorted().toList());
+        assertThat(cursors).hasSize(3).first().isNull();
+    }
+
+    @Test
+    void exportAuditWorkbook_ShouldWriteBooksUsersAndLoansSheets() throws IOException {
+        UUID userId = UUID.randomUUID();
+        UUID bookId = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        when(bookRepository.findPage(isNull(), isNull(), isNull(), any(), any())).thenReturn(
+                List.of(new BookDTO(bookId, "Dune", "Frank Herbert", LocalDate.of(1965, 8, 1), 2, now, now)));
+        when(userRepository.findAdminDtoPage(any(), any())).thenReturn(
+                List.of(new AdminUserDTO(userId, "Ada", "ada@example.com", now, now, Role.USER)));
+
+        List<AuditLoanDTO> loans = IntStream.range(0, 1_500).mapToObj(i -> new AuditLoanDTO(UUID.randomUUID(),
+                LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 15), i % 2 == 0 ? LocalDate.of(2026, 1, 10) : null,
+                userId, "Ada", "ada@example.com", bookId, "Dune", "Frank Herbert")).toList();
+        when(loanRepository.findAuditPage(any(), any())).thenAnswer(invocation ->
+                page(loans, AuditLoanDTO::getId, invocation.getArgument(0), invocation.getArgument(1)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        auditExportService.exportAuditWorkbook(out);
+
+        try (Workbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertThat(workbook.getNumberOfSheets()).isEqualTo(3);
+            assertThat(workbook.getSheet("Books").getLastRowNum()).isEqualTo(1);
+            assertThat(workbook.getSheet("Users").getRow(1).getCell(2).getStringCellValue()).isEqualTo("ada@example.com");
+
+            Sheet loanSheet = workbook.getSheet("Loans");
+            assertThat(loanSheet.getLastRowNum()).isEqualTo(loans.size());
+            Row header = loanSheet.getRow(0);
+            assertThat(header.getCell(2).getStringCellValue()).isEqualTo("User");
+            Row first = loanSheet.getRow(1);
+            assertThat(first.getCell(2).getStringCellValue()).isEqualTo("Ada");
+            assertThat(first.getCell(5).getStringCellValue()).isEqualTo("Dune");
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.event.RemoteBooksChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BookAvailabilityFeedTest {
+
+    @Mock
+    private ScheduledExecutorService executor;
+    @Mock
+    private ExecutorService senders;
+
+    private BookAvailabilityFeed bookAvailabilityFeed;
+
+    @BeforeEach
+    void setUp() {
+        bookAvailabilityFeed = new BookAvailabilityFeed(new ObjectMapper(), executor, senders);
+    }
+
+    private BooksChangedEvent changedEvent(UUID bookId, int copies) {
+        return new BooksChangedEvent(List.of(new BookSnapshot(bookId, "IT", "Stephen King", null, copies)));
+    }
+
+    private void runQueuedBroadcast() {
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(task.capture());
+        task.getValue().run();
+    }
+
+    private void runQueuedSends() {
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(senders, atLeastOnce()).execute(task.capture());
+        task.getAllValues().forEach(Runnable::run);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onBooksChanged_ShouldSendTheNewCopiesToEverySubscriber() throws IOException {
+        UUID bookId = UUID.randomUUID();
+        SseEmitter first = mock(SseEmitter.class);
+        SseEmitter second = mock(SseEmitter.class);
+        bookAvailabilityFeed.register(first);
+        bookAvailabilityFeed.register(second);
+
+        bookAvailabilityFeed.onBooksChanged(changedEvent(bookId, 3));
+        runQueuedBroadcast();
+        runQueuedSends();
+
+        ArgumentCaptor<Set<ResponseBodyEmitter.DataWithMediaType>> message = ArgumentCaptor.forClass(Set.class);
+        verify(first).send(message.capture());
+        verify(second).send(message.getValue());
+        assertThat(message.getValue()).extracting(data -> data.getData().toString())
+                .anyMatch(data -> data.contains("event:" + BookAvailabilityFeed.EVENT_NAME))
+                .anyMatch(data -> data.contains("{\"bookId\":\"" + bookId + "\",\"copies\":3}"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onRemoteBooksChanged_ShouldSendTheNewCopiesLikeLocalChanges() throws IOException {
+        UUID bookId = UUID.randomUUID();
+        SseEmitter subscriber = mock(SseEmitter.class);
+        bookAvailabilityFeed.register(subscriber);
+
+        bookAvailabilityFeed.onRemoteBooksChanged(new RemoteBooksChangedEvent(changedEvent(bookId, 5).books()));
+        runQueuedBroadcast();
+        runQueuedSends();
+
+        ArgumentCaptor<Set<ResponseBodyEmitter.DataWithMediaType>> message = ArgumentCaptor.forClass(Set.class);
+        verify(subscriber).send(message.capture());
+        assertThat(message.getValue()).extracting(data -> data.getData().toString())
+                .anyMatch(data -> data.contains("{\"bookId\":\"" + bookId + "\",\"copies\":5}"));
+    }
+
+    @Test
+    void onBooksChanged_WithoutSubscribers_ShouldNotQueueAnything() {
+        bookAvailabilityFeed.onBooksChanged(changedEvent(UUID.randomUUID(), 1));
+
+        verify(executor, never()).execute(any());
+    }
+
+    @Test
+    void onBooksChanged_WhenSubscriberIsGone_ShouldDropIt() throws IOException {
+        SseEmitter gone = mock(SseEmitter.class);
+        doThrow(new IOException("Broken pipe")).when(gone).send(anySet());
+        bookAvailabilityFeed.register(gone);
+
+        bookAvailabilityFeed.onBooksChanged(changedEvent(UUID.randomUUID(), 1));
+        runQueuedBroadcast();
+        runQueuedSends();
+        bookAvailabilityFeed.onBooksChanged(changedEvent(UUID.randomUUID(), 2));
+
+        verify(gone).completeWithError(any(IOException.class));
+        verify(executor, times(1)).execute(any());
+    }
+
+    @Test
+    void onBooksChanged_WhenSubscriberIsStuck_ShouldKeepSendingToTheOthersAndDropIt() throws Exception {
+        ExecutorService virtualSenders = Executors.newVirtualThreadPerTaskExecutor();
+        bookAvailabilityFeed = new BookAvailabilityFeed(new ObjectMapper(), executor, virtualSenders);
+        StuckEmitter stuck = new StuckEmitter();
+        RecordingEmitter healthy = new RecordingEmitter();
+        bookAvailabilityFeed.register(stuck);
+        bookAvailabilityFeed.register(healthy);
+
+        // One message is being sent, a full queue waits behind it and the next one finds no room
+        int messages = BookAvailabilityFeed.MAX_PENDING_MESSAGES + 2;
+        ArgumentCaptor<Runnable> broadcasts = ArgumentCaptor.forClass(Runnable.class);
+        for (int i = 0; i < messages; i++) {
+            bookAvailabilityFeed.onBooksChanged(changedEvent(UUID.randomUUID(), i));
+        }
+        verify(executor, times(messages)).execute(broadcasts.capture());
+
+        try {
+            // The healthy client keeps up, each message is sent before the next one is broadcast
+            for (Runnable broadcast : broadcasts.getAllValues()) {
+                broadcast.run();
+                assertThat(healthy.sent.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+            }
+            assertThat(stuck.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            stuck.socket.countDown();
+            virtualSenders.shutdownNow();
+        }
+    }
+
+    // Neither is a mock, Mockito answers run while holding a monitor, which would pin the virtual thread to its carrier
+    private static class RecordingEmitter extends SseEmitter {
+        private final Semaphore sent = new Semaphore(0);
+
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            sent.release();
+        }
+    }
+
+    private static class StuckEmitter extends SseEmitter {
+        private final CountDownLatch socket = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(Set<DataWithMediaType> items) throws IOException {
+            try {
+                socket.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.BookAvailabilityDTO;
+import com.faust0z.BookLibraryAPI.dto.BookDTO;
+import com.faust0z.BookLibraryAPI.dto.BookPageDTO;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static com.faust0z.BookLibraryAPI.service.BookAvailabilityService.KEY_PREFIX;
+import static com.faust0z.BookLibraryAPI.service.BookAvailabilityService.TTL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookAvailabilityServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @InjectMocks
+    private BookAvailabilityService bookAvailabilityService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    private BookDTO book(UUID bookId) {
+        BookDTO book = new BookDTO();
+        book.setId(bookId);
+        book.setCopies(99);
+        return book;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void withAvailability_ShouldReadThePageWithOneMultiGetAndWriteMissesInOnePipeline() {
+        UUID cachedId = UUID.randomUUID();
+        UUID missingId = UUID.randomUUID();
+        when(valueOperations.multiGet(List.of(KEY_PREFIX + cachedId, KEY_PREFIX + missingId)))
+                .thenReturn(Arrays.asList("2", null));
+        when(bookRepository.findAvailabilityByIdIn(List.of(missingId))).thenReturn(List.of(new BookAvailabilityDTO(missingId, 5)));
+
+        BookPageDTO page = bookAvailabilityService.withAvailability(
+                new BookPageDTO(List.of(book(cachedId), book(missingId)), null));
+
+        assertThat(page.getBooks()).extracting(BookDTO::getCopies).containsExactly(2, 5);
+        ArgumentCaptor<RedisCallback<Object>> pipeline = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplate).executePipelined(pipeline.capture());
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        pipeline.getValue().doInRedis(connection);
+        verify(connection).setEx(KEY_PREFIX + missingId, TTL.toSeconds(), "5");
+        verifyNoMoreInteractions(connection);
+    }
+
+    @Test
+    void withAvailability_WhenEveryBookIsCached_ShouldNotTouchTheDatabase() {
+        UUID bookId = UUID.randomUUID();
+        when(valueOperations.multiGet(List.of(KEY_PREFIX + bookId))).thenReturn(List.of("3"));
+
+        assertThat(bookAvailabilityService.withAvailability(book(bookId)).getCopies()).isEqualTo(3);
+        verifyNoMoreInteractions(bookRepository);
+    }
+
+    @Test
+    void withAvailability_WhenRedisFails_ShouldFallBackToDatabase() {
+        UUID bookId = UUID.randomUUID();
+        when(valueOperations.multiGet(anyList())).thenThrow(new RedisConnectionFailureException("Redis is down"));
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("Redis is down"));
+        when(bookRepository.findAvailabilityByIdIn(List.of(bookId))).thenReturn(List.of(new BookAvailabilityDTO(bookId, 1)));
+
+        assertThat(bookAvailabilityService.withAvailability(book(bookId)).getCopies()).isEqualTo(1);
+    }
+
+    @Test
+    void onBooksChanged_ShouldEvictChangedBooksWithOneDelete() {
+        UUID bookId = UUID.randomUUID();
+        UUID otherId = UUID.randomUUID();
+
+        bookAvailabilityService.onBooksChanged(new BooksChangedEvent(List.of(
+                new BookSnapshot(bookId, "IT", "Stephen King", null, 2),
+                new BookSnapshot(otherId, "Carrie", "Stephen King", null, 1))));
+
+        verify(redisTemplate).delete(List.of(KEY_PREFIX + bookId, KEY_PREFIX + otherId));
+    }
+}
@@ -0,0 +1,145 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.event.RemoteBooksChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.adapter.RedisListenerExecutionFailedException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookChangesRelayTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Mock
+    private ScheduledExecutorService subscriber;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private BookChangesRelay relay;
+
+    private final BookSnapshot book =
+            new BookSnapshot(UUID.randomUUID(), "Dune", "Frank Herbert", LocalDate.of(1965, 8, 1), 3);
+
+    @BeforeEach
+    void setUp() {
+        relay = new BookChangesRelay(redisTemplate, objectMapper, eventPublisher, listenerContainer, subscriber);
+    }
+
+    private DefaultMessage message(String json) {
+        return new DefaultMessage(BookChangesRelay.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String published() {
+        ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(BookChangesRelay.CHANNEL), json.capture());
+        return json.getValue();
+    }
+
+    private Runnable queuedSubscription() {
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(subscriber).execute(task.capture());
+        return task.getValue();
+    }
+
+    @Test
+    void startListening_ShouldSubscribeInTheBackground() {
+        relay.startListening();
+        queuedSubscription().run();
+
+        verify(listenerContainer).addMessageListener(relay, new ChannelTopic(BookChangesRelay.CHANNEL));
+    }
+
+    @Test
+    void startListening_WhenRedisIsDown_ShouldRetryLater() {
+        doThrow(new RedisListenerExecutionFailedException("down", new RedisConnectionFailureException("down")))
+                .when(listenerContainer).addMessageListener(eq(relay), any(ChannelTopic.class));
+
+        relay.startListening();
+        queuedSubscription().run();
+
+        verify(listenerContainer).removeMessageListener(relay);
+        verify(subscriber).schedule(any(Runnable.class),
+                eq(BookChangesRelay.SUBSCRIBE_RETRY_INTERVAL.toMillis()), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void onBooksChanged_ShouldPublishTheSnapshots() throws Exception {
+        relay.onBooksChanged(new BooksChangedEvent(List.of(book)));
+
+        BookChangesRelay.RelayedChange change = objectMapper.readValue(published(), BookChangesRelay.RelayedChange.class);
+        assertThat(change.books()).containsExactly(book);
+    }
+
+    @Test
+    void onBooksChanged_WhenRedisIsDown_ShouldNotFail() {
+        when(redisTemplate.convertAndSend(eq(BookChangesRelay.CHANNEL), anyString()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertThatCode(() -> relay.onBooksChanged(new BooksChangedEvent(List.of(book)))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void onMessage_FromAnotherInstance_ShouldPublishTheChangesLocally() throws Exception {
+        String json = objectMapper.writeValueAsString(
+                new BookChangesRelay.RelayedChange(UUID.randomUUID(), List.of(book)));
+
+        relay.onMessage(message(json), null);
+
+        verify(eventPublisher).publishEvent(new RemoteBooksChangedEvent(List.of(book)));
+    }
+
+    @Test
+    void onMessage_FromThisInstance_ShouldBeIgnored() {
+        relay.onBooksChanged(new BooksChangedEvent(List.of(book)));
+
+        relay.onMessage(message(published()), null);
+
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void onMessage_WhenUnreadable_ShouldBeIgnored() {
+        relay.onMessage(message("not json"), null);
+
+        verifyNoInteractions(eventPublisher);
+    }
+}
@@ -0,0 +1,177 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.BookFileFormat;
+import com.faust0z.BookLibraryAPI.dto.ImportJobDTO;
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.exception.ExcelProcessingException;
+import com.faust0z.BookLibraryAPI.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookImportServiceTest {
+
+    private static final int CHUNK_SIZE = 2;
+
+    @Mock
+    private ExcelService excelService;
+
+    @Mock
+    private CsvService csvService;
+
+    @Mock
+    private NdjsonService ndjsonService;
+
+    @Mock
+    private BookService bookService;
+
+    @Mock
+    private ExecutorService executor;
+
+    private BookImportService bookImportService;
+
+    @BeforeEach
+    void setUp() {
+        bookImportService = new BookImportService(excelService, csvService, ndjsonService, bookService, CHUNK_SIZE, executor);
+    }
+
+    private void runJobsInline() {
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(any());
+    }
+
+    private void givenExcelRows(int validRows, String... invalidRows) {
+        doAnswer(invocation -> {
+            Consumer<BookEntity> consumer = invocation.getArgument(1);
+            Consumer<ExcelProcessingException> onInvalidRow = invocation.getArgument(2);
+            for (int i = 0; i < validRows; i++) consumer.accept(new BookEntity());
+            for (String error : invalidRows) onInvalidRow.accept(new ExcelProcessingException(error));
+            return null;
+        }).when(excelService).readBooksFromExcel(any(Path.class), any(), any());
+    }
+
+    private ImportJobDTO submit() {
+        return submit(ImportJobDTO.Mode.INSERT);
+    }
+
+    private ImportJobDTO submit(ImportJobDTO.Mode mode) {
+        return bookImportService.submit(new ByteArrayInputStream(new byte[]{1, 2, 3}), mode, BookFileFormat.XLSX);
+    }
+
+    @Test
+    void submit_ShouldSaveRowsInChunksAndReportInvalidOnes() {
+        runJobsInline();
+        givenExcelRows(5, "Title is required at row 7");
+        List<Integer> chunkSizes = new ArrayList<>();
+        doAnswer(invocation -> chunkSizes.add(invocation.<List<BookEntity>>getArgument(0).size()))
+                .when(bookService).saveImportedBooks(anyList());
+
+        ImportJobDTO job = bookImportService.getJob(submit().getJobId());
+
+        assertThat(chunkSizes).containsExactly(2, 2, 1);
+        assertThat(job.getStatus()).isEqualTo(ImportJobDTO.Status.COMPLETED);
+        assertThat(job.getRowsProcessed()).isEqualTo(5);
+        assertThat(job.getRowsChanged()).isEqualTo(5);
+        assertThat(job.getRowsFailed()).isEqualTo(1);
+        assertThat(job.getErrors()).containsExactly("Title is required at row 7");
+        assertThat(job.getFinishedAt()).isNotNull();
+    }
+
+    @Test
+    void submit_InUpsertMode_ShouldCountOnlyChangedRows() {
+        runJobsInline();
+        givenExcelRows(3);
+        when(bookService.upsertImportedBooks(anyList())).thenReturn(0, 1);
+
+        ImportJobDTO job = bookImportService.getJob(submit(ImportJobDTO.Mode.UPSERT).getJobId());
+
+        assertThat(job.getMode()).isEqualTo(ImportJobDTO.Mode.UPSERT);
+        assertThat(job.getRowsProcessed()).isEqualTo(3);
+        assertThat(job.getRowsChanged()).isEqualTo(1);
+        verify(bookService, never()).saveImportedBooks(anyList());
+    }
+
+    @Test
+    void submit_WhenChunkFails_ShouldCountItsRowsAsFailedAndContinue() {
+        runJobsInline();
+        givenExcelRows(3);
+        doThrow(new IllegalStateException("Connection reset"))
+                .doNothing()
+                .when(bookService).saveImportedBooks(anyList());
+
+        ImportJobDTO job = bookImportService.getJob(submit().getJobId());
+
+        assertThat(job.getStatus()).isEqualTo(ImportJobDTO.Status.COMPLETED);
+        assertThat(job.getRowsProcessed()).isEqualTo(1);
+        assertThat(job.getRowsFailed()).isEqualTo(2);
+        assertThat(job.getErrors()).singleElement().asString().contains("Connection reset");
+    }
+
+    @Test
+    void submit_WhenFileIsInvalid_ShouldFailJob() {
+        runJobsInline();
+        doThrow(new ExcelProcessingException("Import failed: Missing required column: Title"))
+                .when(excelService).readBooksFromExcel(any(Path.class), any(), any());
+
+        ImportJobDTO job = bookImportService.getJob(submit().getJobId());
+
+        assertThat(job.getStatus()).isEqualTo(ImportJobDTO.Status.FAILED);
+        assertThat(job.getErrors()).containsExactly("Import failed: Missing required column: Title");
+    }
+
+    @Test
+    void submit_WithCsvFile_ShouldReadItWithCsvService() {
+        runJobsInline();
+        doAnswer(invocation -> {
+            invocation.<Consumer<BookEntity>>getArgument(1).accept(new BookEntity());
+            return null;
+        }).when(csvService).readBooksFromCsv(any(Path.class), any(), any());
+
+        ImportJobDTO job = bookImportService.submit(new ByteArrayInputStream(new byte[]{1}), ImportJobDTO.Mode.INSERT,
+                BookFileFormat.CSV);
+
+        assertThat(bookImportService.getJob(job.getJobId()).getRowsProcessed()).isEqualTo(1);
+        assertThat(job.getFormat()).isEqualTo(BookFileFormat.CSV);
+        verify(excelService, never()).readBooksFromExcel(any(Path.class), any(), any());
+    }
+
+    @Test
+    void submit_WhenQueueIsFull_ShouldRejectUpload() {
+        doThrow(new RejectedExecutionException()).when(executor).execute(any());
+
+        assertThatThrownBy(this::submit).isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void getJob_WhenJobDoesNotExist_ShouldThrowException() {
+        UUID jobId = UUID.randomUUID();
+
+        assertThatThrownBy(() -> bookImportService.getJob(jobId))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining(jobId.toString());
+    }
+}
@@ -1,27 +1,53 @@
 package com.faust0z.BookLibraryAPI.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.faust0z.BookLibraryAPI.dto.AdminBookDTO;
 import com.faust0z.BookLibraryAPI.dto.BookDTO;
+import com.faust0z.BookLibraryAPI.dto.BookFileFormat;
+import com.faust0z.BookLibraryAPI.dto.BookPageDTO;
+import com.faust0z.BookLibraryAPI.dto.BulkBookRequestDTO;
+import com.faust0z.BookLibraryAPI.dto.BulkBookResultDTO;
 import com.faust0z.BookLibraryAPI.dto.CreateBookDTO;
 import com.faust0z.BookLibraryAPI.dto.UpdateBookDTO;
 import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
 import com.faust0z.BookLibraryAPI.exception.ResourceNotFoundException;
 import com.faust0z.BookLibraryAPI.mapper.BookMapper;
 import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,56 +62,228 @@ class BookServiceTest {
     @Mock
     private ExcelService excelService;
 
+    @Mock
+    private CsvService csvService;
+
+    @Mock
+    private NdjsonService ndjsonService;
+
+    @Mock
+    private BookSuggestionIndex bookSuggestionIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache cache;
+
+    @Mock
+    private CatalogVersionService catalogVersionService;
+
     @InjectMocks
     private BookService bookService;
 
     @Test
-    void getAllBooks_ShouldReturnListOfDtos() {
+    void getBooks_WhenMoreBooksThanPageSize_ShouldReturnNextCursor() {
+        BookDTO dto1 = new BookDTO();
+        dto1.setId(UUID.randomUUID());
+        BookDTO dto2 = new BookDTO();
+        dto2.setId(UUID.randomUUID());
+        BookDTO dto3 = new BookDTO();
+        dto3.setId(UUID.randomUUID());
+
+        when(bookRepository.findPage(eq("Stephen King"), eq(LocalDate.of(1986, 1, 1)), eq(LocalDate.of(1986, 12, 31)),
+                isNull(), any(Pageable.class))).thenReturn(List.of(dto1, dto2, dto3));
+
+        BookPageDTO result = bookService.getBooks("Stephen King", 1986, null, 2);
+
+        assertThat(result.getBooks()).containsExactly(dto1, dto2);
+        assertThat(result.getNextCursor()).isEqualTo(dto2.getId());
+    }
+
+    @Test
+    void getBooks_WhenLastPage_ShouldReturnNullCursor() {
+        UUID cursor = UUID.randomUUID();
+        BookDTO dto = new BookDTO();
+
+        when(bookRepository.findPage(isNull(), isNull(), isNull(), eq(cursor), any(Pageable.class))).thenReturn(List.of(dto));
+
+        BookPageDTO result = bookService.getBooks(null, null, cursor, null);
+
+        assertThat(result.getBooks()).containsExactly(dto);
+        assertThat(result.getNextCursor()).isNull();
+    }
+
+    @Test
+    void writeAllBooksAsJson_ShouldWriteJsonArrayAndDetachEachBook() throws Exception {
         BookEntity entity1 = new BookEntity();
         BookEntity entity2 = new BookEntity();
-        List<BookEntity> entityList = List.of(entity1, entity2);
 
         BookDTO dto1 = new BookDTO();
+        dto1.setName("IT");
         BookDTO dto2 = new BookDTO();
-        List<BookDTO> dtoList = List.of(dto1, dto2);
+        dto2.setName("Carrie");
+
+        when(bookRepository.streamAll()).thenReturn(Stream.of(entity1, entity2));
+        when(bookMapper.toDto(entity1)).thenReturn(dto1);
+        when(bookMapper.toDto(entity2)).thenReturn(dto2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bookService.writeAllBooksAsJson(out);
+
+        JsonNode json = new ObjectMapper().readTree(out.toByteArray());
+        assertThat(json.isArray()).isTrue();
+        assertThat(json).extracting(node -> node.get("name").asText()).containsExactly("IT", "Carrie");
+        verify(entityManager).detach(entity1);
+        verify(entityManager).detach(entity2);
+    }
+
+    @Test
+    void searchBooks_ShouldTranslatePageToOffset() {
+        BookEntity entity = new BookEntity();
+        BookDTO dto = new BookDTO();
+
+        when(bookRepository.search("stephen king", 10, 20L)).thenReturn(List.of(entity));
+        when(bookMapper.toDtoList(List.of(entity))).thenReturn(List.of(dto));
+
+        List<BookDTO> result = bookService.searchBooks(" stephen king ", 2, 10);
+
+        assertThat(result).containsExactly(dto);
+    }
+
+    @Test
+    void searchBooks_WhenPageIsHuge_ShouldNotOverflowTheOffset() {
+        when(bookRepository.search("king", 100, Integer.MAX_VALUE * 100L)).thenReturn(List.of());
+
+        assertThat(bookService.searchBooks("king", Integer.MAX_VALUE, 100)).isEmpty();
+    }
+
+    @Test
+    void searchBooks_WhenQueryIsBlank_ShouldNotQueryDatabase() {
+        List<BookDTO> result = bookService.searchBooks("  ", null, null);
+
+        assertThat(result).isEmpty();
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void bulkSaveBooks_ShouldUpdateExistingAndCreateNewBooks() {
+        UUID bookId = UUID.randomUUID();
+        BookEntity existing = new BookEntity();
+        existing.setId(bookId);
+        UpdateBookDTO updateDto = new UpdateBookDTO();
+        updateDto.setCopies(7);
+
+        // CreateBookDTO has value equality, so each DTO needs its own fields for the mapper stubs to differ
+        CreateBookDTO createDto1 = new CreateBookDTO();
+        createDto1.setName("New Book 1");
+        CreateBookDTO createDto2 = new CreateBookDTO();
+        createDto2.setName("New Book 2");
+        BookEntity newEntity1 = new BookEntity();
+        BookEntity newEntity2 = new BookEntity();
+
+        BulkBookRequestDTO request = new BulkBookRequestDTO();
+        request.setCreate(List.of(createDto1, createDto2));
+        request.setUpdate(Map.of(bookId, updateDto));
+
+        when(bookRepository.findAllById(List.of(bookId))).thenReturn(List.of(existing));
+        when(bookMapper.toEntity(createDto1)).thenReturn(newEntity1);
+        when(bookMapper.toEntity(createDto2)).thenReturn(newEntity2);
+
+        BulkBookResultDTO result = bookService.bulkSaveBooks(request);
+
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        verify(bookMapper).updateBookFromDto(updateDto, existing);
+        verify(bookRepository).saveAll(List.of(newEntity1, newEntity2));
+        verify(entityManager, times(2)).flush();
+        verify(eventPublisher).publishEvent(any(BooksChangedEvent.class));
+    }
+
+    @Test
+    void bulkSaveBooks_WhenBookToUpdateDoesNotExist_ShouldThrowException() {
+        UUID missingId = UUID.randomUUID();
+        BulkBookRequestDTO request = new BulkBookRequestDTO();
+        request.setUpdate(Map.of(missingId, new UpdateBookDTO()));
+
+        when(bookRepository.findAllById(List.of(missingId))).thenReturn(List.of());
+
+        assertThatThrownBy(() -> bookService.bulkSaveBooks(request))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining(missingId.toString());
+        verify(bookRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void exportBooks_ShouldStreamBooksAndDetachEachOne() {
+        BookEntity entity1 = new BookEntity();
+        BookEntity entity2 = new BookEntity();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
 
-        when(bookRepository.findAll()).thenReturn(entityList);
-        when(bookMapper.toDtoList(entityList)).thenReturn(dtoList);
+        when(bookRepository.streamAll()).thenReturn(Stream.of(entity1, entity2));
+        doAnswer(invocation -> {
+            Stream<BookEntity> books = invocation.getArgument(0);
+            assertThat(books).containsExactly(entity1, entity2);
+            return null;
+        }).when(excelService).exportBooksToExcel(any(), eq(out));
 
-        List<BookDTO> result = bookService.getAllBooks();
+        bookService.exportBooks(BookFileFormat.XLSX, out);
 
-        assertThat(result)
-                .isNotNull()
-                .hasSize(2)
-                .containsExactly(dto1, dto2);
+        verify(entityManager).detach(entity1);
+        verify(entityManager).detach(entity2);
     }
 
     @Test
-    void exportBooksToExcel_ShouldReturnByteArray() {
-        List<BookEntity> entities = List.of(new BookEntity());
-        byte[] expectedContent = "excel data".getBytes();
+    void exportBooks_AsCsv_ShouldUseCsvService() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        when(bookRepository.streamAll()).thenReturn(Stream.of(new BookEntity()));
 
-        when(bookRepository.findAll()).thenReturn(entities);
-        when(excelService.exportBooksToExcel(entities)).thenReturn(expectedContent);
+        bookService.exportBooks(BookFileFormat.CSV, out);
 
-        byte[] result = bookService.exportBooksToExcel();
+        verify(csvService).exportBooksToCsv(any(), eq(out));
+        verify(excelService, never()).exportBooksToExcel(any(), any());
+    }
+
+    @Test
+    void saveImportedBooks_ShouldCopyChunkAndPublishEvent() {
+        List<BookEntity> books = List.of(new BookEntity(), new BookEntity());
+
+        bookService.saveImportedBooks(books);
 
-        assertThat(result).isEqualTo(expectedContent);
-        verify(bookRepository).findAll();
-        verify(excelService).exportBooksToExcel(entities);
+        verify(bookRepository).copyInsert(books);
+        verify(eventPublisher).publishEvent(any(BooksChangedEvent.class));
+        verify(catalogVersionService).bumpPagesVersion();
     }
 
     @Test
-    void importBooksFromExcel_ShouldSaveBooksAndReturnCount() throws Exception {
-        java.io.InputStream is = new java.io.ByteArrayInputStream(new byte[0]);
+    void upsertImportedBooks_ShouldOnlyAnnounceChangedBooks() {
         List<BookEntity> books = List.of(new BookEntity(), new BookEntity());
+        BookSnapshot changed = new BookSnapshot(UUID.randomUUID(), "IT", "Stephen King", LocalDate.of(1986, 9, 15), 3);
+        when(bookRepository.upsertByNaturalKey(books)).thenReturn(List.of(changed));
 
-        when(excelService.importBooksFromExcel(is)).thenReturn(books);
+        int result = bookService.upsertImportedBooks(books);
 
-        int count = bookService.importBooksFromExcel(is);
+        assertThat(result).isEqualTo(1);
+        verify(eventPublisher).publishEvent(new BooksChangedEvent(List.of(changed)));
+    }
 
-        assertThat(count).isEqualTo(2);
-        verify(bookRepository).saveAll(books);
+    @Test
+    void upsertImportedBooks_WhenNothingChanged_ShouldNotPublishEvent() {
+        List<BookEntity> books = List.of(new BookEntity());
+        when(bookRepository.upsertByNaturalKey(books)).thenReturn(List.of());
+
+        assertThat(bookService.upsertImportedBooks(books)).isZero();
+        verifyNoInteractions(eventPublisher);
+        verifyNoInteractions(catalogVersionService);
     }
 
     @Test
@@ -142,6 +340,27 @@ class BookServiceTest {
         assertThat(result.getName()).isEqualTo("Clean Code");
 
         verify(bookRepository).save(entity);
+        verify(eventPublisher).publishEvent(any(BooksChangedEvent.class));
+        verify(catalogVersionService).bumpPagesVersion();
+    }
+
+    @Test
+    void createBook_InsideATransaction_ShouldOnlyRetireCachedPagesOnceItCommits() {
+        CreateBookDTO createDto = new CreateBookDTO();
+        BookEntity entity = new BookEntity();
+        when(bookMapper.toEntity(createDto)).thenReturn(entity);
+        when(bookRepository.save(entity)).thenReturn(entity);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            bookService.createBook(createDto);
+            verifyNoInteractions(catalogVersionService);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(catalogVersionService).bumpPagesVersion();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
     }
 
     @Test
@@ -179,4 +398,18 @@ class BookServiceTest {
         assertThatThrownBy(() -> bookService.updateBook(UUID.randomUUID(), new UpdateBookDTO()))
                 .isInstanceOf(ResourceNotFoundException.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    void onBooksChanged_ShouldEvictTheCachedDetailsOfEachChangedBook() {
+        UUID itId = UUID.randomUUID();
+        UUID miseryId = UUID.randomUUID();
+        when(cacheManager.getCache("books")).thenReturn(cache);
+
+        bookService.onBooksChanged(new BooksChangedEvent(List.of(
+                new BookSnapshot(itId, "IT", "Stephen King", LocalDate.of(1986, 9, 15), 4),
+                new BookSnapshot(miseryId, "Misery", "Stephen King", LocalDate.of(1987, 6, 8), 2))));
+
+        verify(cache).evict("details:" + itId);
+        verify(cache).evict("details:" + miseryId);
+    }
+}
@@ -0,0 +1,101 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.BookSuggestionDTO;
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookSuggestionIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @InjectMocks
+    private BookSuggestionIndex bookSuggestionIndex;
+
+    private BookEntity shining;
+    private BookEntity it;
+
+    @BeforeEach
+    void setUp() {
+        shining = book("The Shining", "Stephen King");
+        it = book("IT", "Stephen King");
+        when(bookRepository.findAllSnapshots()).thenReturn(List.of(BookSnapshot.from(shining), BookSnapshot.from(it)));
+        bookSuggestionIndex.rebuild();
+    }
+
+    @Test
+    void suggest_ShouldMatchTitlePrefixIgnoringCaseAndAccents() {
+        List<BookSuggestionDTO> result = bookSuggestionIndex.suggest("thé SHI", 10);
+
+        assertThat(result).extracting(BookSuggestionDTO::getText).containsExactly("The Shining");
+        assertThat(result.getFirst().getBookId()).isEqualTo(shining.getId());
+    }
+
+    @Test
+    void suggest_ShouldMatchWordsInsideTitlesAndAuthors() {
+        List<BookSuggestionDTO> result = bookSuggestionIndex.suggest("shin", 10);
+        assertThat(result).extracting(BookSuggestionDTO::getText).containsExactly("The Shining");
+
+        List<BookSuggestionDTO> authors = bookSuggestionIndex.suggest("king", 10);
+        assertThat(authors).singleElement().satisfies(suggestion -> {
+            assertThat(suggestion.getText()).isEqualTo("Stephen King");
+            assertThat(suggestion.getType()).isEqualTo(BookSuggestionDTO.Type.AUTHOR);
+        });
+    }
+
+    @Test
+    void onBooksChanged_ShouldReplaceOldKeysOfUpdatedBook() {
+        it.setName("It: A Novel");
+        it.setAuthor("Richard Bachman");
+        bookSuggestionIndex.onBooksChanged(BooksChangedEvent.of(it));
+
+        assertThat(bookSuggestionIndex.suggest("it", 10)).extracting(BookSuggestionDTO::getText).containsExactly("It: A Novel");
+        assertThat(bookSuggestionIndex.suggest("bach", 10)).extracting(BookSuggestionDTO::getText).containsExactly("Richard Bachman");
+        // Still written by another indexed book
+        assertThat(bookSuggestionIndex.suggest("stephen", 10)).extracting(BookSuggestionDTO::getText).containsExactly("Stephen King");
+    }
+
+    @Test
+    void onBooksChanged_ShouldKeepKeysSharingAPrefixWithRemovedOnes() {
+        BookEntity stand = book("The Stand", "Stephen King");
+        bookSuggestionIndex.onBooksChanged(BooksChangedEvent.of(stand));
+        assertThat(bookSuggestionIndex.suggest("the s", 10)).extracting(BookSuggestionDTO::getText)
+                .containsExactly("The Shining", "The Stand");
+
+        shining.setName("Shining");
+        bookSuggestionIndex.onBooksChanged(BooksChangedEvent.of(shining));
+
+        assertThat(bookSuggestionIndex.suggest("the s", 10)).extracting(BookSuggestionDTO::getText).containsExactly("The Stand");
+        assertThat(bookSuggestionIndex.suggest("s", 10)).extracting(BookSuggestionDTO::getText)
+                .containsExactly("Shining", "The Stand", "Stephen King");
+        assertThat(bookSuggestionIndex.suggest("s", 2)).hasSize(2);
+    }
+
+    @Test
+    void suggest_WhenPrefixIsBlank_ShouldReturnEmptyList() {
+        assertThat(bookSuggestionIndex.suggest("   ", 10)).isEmpty();
+    }
+
+    private BookEntity book(String name, String author) {
+        BookEntity book = new BookEntity();
+        book.setId(UUID.randomUUID());
+        book.setName(name);
+        book.setAuthor(author);
+        return book;
+    }
+}
@@ -0,0 +1,124 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.BookFileFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogExportCacheTest {
+
+    @TempDir
+    private Path directory;
+
+    @Mock
+    private BookService bookService;
+
+    @Mock
+    private CatalogVersionService catalogVersionService;
+
+    private CatalogExportCache catalogExportCache;
+
+    private final AtomicInteger generations = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        catalogExportCache = new CatalogExportCache(bookService, catalogVersionService, directory);
+    }
+
+    private void givenExportWritesGenerationNumber() {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write(("export #" + generations.incrementAndGet()).getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(bookService).exportBooks(any(), any());
+    }
+
+    private String content(CatalogExportCache.CachedExport export, long position, long length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        export.transferTo(out, position, length);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void getExport_WhenCatalogDidNotChange_ShouldReuseTheFile() throws IOException {
+        givenExportWritesGenerationNumber();
+        when(catalogVersionService.getCatalogVersionKey()).thenReturn("epoch-1");
+
+        CatalogExportCache.CachedExport first = catalogExportCache.getExport(BookFileFormat.CSV);
+        CatalogExportCache.CachedExport second = catalogExportCache.getExport(BookFileFormat.CSV);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(first.eTag()).isEqualTo("\"epoch-1-csv\"");
+        assertThat(content(second, 0, second.size())).isEqualTo("export #1");
+        verify(bookService, times(1)).exportBooks(eq(BookFileFormat.CSV), any());
+    }
+
+    @Test
+    void getExport_WhenCatalogChanged_ShouldRegenerateAndKeepOnlyThePreviousFile() throws IOException {
+        givenExportWritesGenerationNumber();
+        when(catalogVersionService.getCatalogVersionKey()).thenReturn("epoch-1", "epoch-2", "epoch-3");
+
+        CatalogExportCache.CachedExport oldest = catalogExportCache.getExport(BookFileFormat.XLSX);
+        CatalogExportCache.CachedExport previous = catalogExportCache.getExport(BookFileFormat.XLSX);
+        CatalogExportCache.CachedExport current = catalogExportCache.getExport(BookFileFormat.XLSX);
+
+        assertThat(content(current, 0, current.size())).isEqualTo("export #3");
+        assertThat(oldest.file()).doesNotExist();
+        assertThat(previous.file()).exists();
+        assertThat(directory.toFile().list()).hasSize(2);
+    }
+
+    @Test
+    void findExport_ShouldOnlyReturnExportsAlreadyGenerated() {
+        givenExportWritesGenerationNumber();
+
+        assertThat(catalogExportCache.findExport(BookFileFormat.CSV, "epoch-1")).isEmpty();
+        CatalogExportCache.CachedExport generated = catalogExportCache.getExport(BookFileFormat.CSV, "epoch-1");
+
+        assertThat(catalogExportCache.findExport(BookFileFormat.CSV, "epoch-1")).contains(generated);
+        assertThat(catalogExportCache.findExport(BookFileFormat.XLSX, "epoch-1")).isEmpty();
+        assertThat(generated.eTag()).isEqualTo(catalogExportCache.getETag(BookFileFormat.CSV, "epoch-1"));
+        verify(bookService, times(1)).exportBooks(any(), any());
+    }
+
+    @Test
+    void transferTo_ShouldSendOnlyTheRequestedRange() throws IOException {
+        givenExportWritesGenerationNumber();
+        when(catalogVersionService.getCatalogVersionKey()).thenReturn("epoch-1");
+
+        CatalogExportCache.CachedExport export = catalogExportCache.getExport(BookFileFormat.NDJSON);
+
+        assertThat(content(export, 7, 2)).isEqualTo("#1");
+    }
+
+    @Test
+    void getExport_WhenGenerationFails_ShouldNotLeavePartialFiles() {
+        when(catalogVersionService.getCatalogVersionKey()).thenReturn("epoch-1");
+        doThrow(new IllegalStateException("Connection reset")).when(bookService).exportBooks(any(), any());
+
+        assertThatThrownBy(() -> catalogExportCache.getExport(BookFileFormat.CSV))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(directory).isEmptyDirectory();
+    }
+}
@@ -0,0 +1,106 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.dto.CatalogFacetsDTO;
+import com.faust0z.BookLibraryAPI.dto.FacetDTO;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogFacetsServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private ScheduledExecutorService rebuilder;
+
+    private CatalogFacetsService catalogFacetsService;
+
+    private final BookSnapshot it = new BookSnapshot(UUID.randomUUID(), "IT", "Stephen King", LocalDate.of(1986, 9, 15), 4);
+    private final BookSnapshot misery = new BookSnapshot(UUID.randomUUID(), "Misery", "Stephen King", LocalDate.of(1987, 6, 8), 2);
+    private final BookSnapshot dune = new BookSnapshot(UUID.randomUUID(), "Dune", "Frank Herbert", LocalDate.of(1965, 8, 1), 1);
+
+    @BeforeEach
+    void setUp() {
+        catalogFacetsService = new CatalogFacetsService(bookRepository, Duration.ofMinutes(10), rebuilder);
+        when(bookRepository.findAllSnapshots()).thenReturn(List.of(it, misery, dune));
+        catalogFacetsService.rebuild();
+    }
+
+    @Test
+    void getFacets_ShouldCountBooksAndCopiesPerAuthorDecadeAndYear() {
+        CatalogFacetsDTO facets = catalogFacetsService.getFacets(null);
+
+        assertThat(facets.getTotalBooks()).isEqualTo(3);
+        assertThat(facets.getTotalCopies()).isEqualTo(7);
+        assertThat(facets.getAuthors()).extracting(FacetDTO::getValue, FacetDTO::getBooks, FacetDTO::getCopies)
+                .containsExactly(tuple("Stephen King", 2L, 6L), tuple("Frank Herbert", 1L, 1L));
+        assertThat(facets.getDecades()).extracting(FacetDTO::getValue, FacetDTO::getBooks)
+                .containsExactly(tuple("1960s", 1L), tuple("1980s", 2L));
+        assertThat(facets.getYears()).extracting(FacetDTO::getValue).containsExactly("1965", "1986", "1987");
+    }
+
+    @Test
+    void onBooksChanged_ShouldMoveBookBetweenFacetsAndTrackCopies() {
+        BookSnapshot loanedIt = new BookSnapshot(it.id(), it.name(), it.author(), it.publicationDate(), 3);
+        BookSnapshot movedDune = new BookSnapshot(dune.id(), dune.name(), "F. Herbert", LocalDate.of(1966, 1, 1), 1);
+
+        catalogFacetsService.onBooksChanged(new BooksChangedEvent(List.of(loanedIt, movedDune)));
+        CatalogFacetsDTO facets = catalogFacetsService.getFacets(null);
+
+        assertThat(facets.getTotalBooks()).isEqualTo(3);
+        assertThat(facets.getTotalCopies()).isEqualTo(6);
+        assertThat(facets.getAuthors()).extracting(FacetDTO::getValue, FacetDTO::getCopies)
+                .containsExactly(tuple("Stephen King", 5L), tuple("F. Herbert", 1L));
+        assertThat(facets.getYears()).extracting(FacetDTO::getValue).containsExactly("1966", "1986", "1987");
+    }
+
+    @Test
+    void rebuild_WhenABookChangesWhileTheCatalogIsRead_ShouldKeepTheChange() {
+        BookSnapshot loanedIt = new BookSnapshot(it.id(), it.name(), it.author(), it.publicationDate(), 3);
+        // The change is committed after the catalog was read, but its event arrives before the rebuild applies it
+        when(bookRepository.findAllSnapshots()).thenAnswer(invocation -> {
+            catalogFacetsService.onBooksChanged(new BooksChangedEvent(List.of(loanedIt)));
+            return List.of(it, misery, dune);
+        });
+
+        catalogFacetsService.rebuild();
+
+        assertThat(catalogFacetsService.getFacets(null).getTotalCopies()).isEqualTo(6);
+    }
+
+    @Test
+    void startRebuilding_ShouldBuildNowAndScheduleTheNextRebuilds() {
+        catalogFacetsService.startRebuilding();
+
+        verify(bookRepository, times(2)).findAllSnapshots();
+        verify(rebuilder).scheduleWithFixedDelay(any(Runnable.class), eq(600_000L), eq(600_000L),
+                eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void getFacets_ShouldLimitAuthors() {
+        assertThat(catalogFacetsService.getFacets(1).getAuthors()).extracting(FacetDTO::getValue).containsExactly("Stephen King");
+    }
+}
@@ -0,0 +1,126 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.faust0z.BookLibraryAPI.service.CatalogVersionService.COUNTER_FIELD;
+import static com.faust0z.BookLibraryAPI.service.CatalogVersionService.EPOCH_FIELD;
+import static com.faust0z.BookLibraryAPI.service.CatalogVersionService.PAGES_FIELD;
+import static com.faust0z.BookLibraryAPI.service.CatalogVersionService.VERSION_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogVersionServiceTest {
+
+    private static final List<String> FIELDS = List.of(EPOCH_FIELD, COUNTER_FIELD);
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+    @Mock
+    private BookRepository bookRepository;
+
+    @InjectMocks
+    private CatalogVersionService catalogVersionService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+    }
+
+    private void givenVersion(String epoch, String counter) {
+        when(hashOperations.multiGet(VERSION_KEY, List.<Object>copyOf(FIELDS))).thenReturn(Arrays.asList(epoch, counter));
+    }
+
+    @Test
+    void getCatalogETag_ShouldBeAStrongQuotedETagOfTheSharedVersion() {
+        givenVersion("1a2b3c4d", "42");
+
+        assertThat(catalogVersionService.getCatalogETag()).isEqualTo("\"1a2b3c4d-42\"").doesNotStartWith("W/");
+    }
+
+    @Test
+    void getCatalogVersionKey_WhenVersionWasLost_ShouldStartANewEpoch() {
+        when(hashOperations.multiGet(VERSION_KEY, List.<Object>copyOf(FIELDS)))
+                .thenReturn(Arrays.asList(null, "3"))
+                .thenReturn(Arrays.asList("9f8e7d6c", "3"));
+
+        assertThat(catalogVersionService.getCatalogVersionKey()).isEqualTo("9f8e7d6c-3");
+        verify(hashOperations).putIfAbsent(eq(VERSION_KEY), eq(EPOCH_FIELD), anyString());
+    }
+
+    @Test
+    void getCatalogVersionKey_WhenRedisIsDown_ShouldNeverRepeatAVersion() {
+        when(hashOperations.multiGet(VERSION_KEY, List.<Object>copyOf(FIELDS)))
+                .thenThrow(new RedisConnectionFailureException("Redis is down"));
+
+        assertThat(catalogVersionService.getCatalogVersionKey()).isNotEqualTo(catalogVersionService.getCatalogVersionKey());
+    }
+
+    @Test
+    void onBooksChanged_ShouldIncrementTheSharedCounter() {
+        catalogVersionService.onBooksChanged(new BooksChangedEvent(List.of(
+                new BookSnapshot(UUID.randomUUID(), "IT", "Stephen King", null, 3))));
+
+        verify(hashOperations).increment(VERSION_KEY, COUNTER_FIELD, 1);
+    }
+
+    @Test
+    void getPagesVersionKey_ShouldUseThePagesCounterWithTheSharedEpoch() {
+        when(hashOperations.multiGet(VERSION_KEY, List.<Object>of(EPOCH_FIELD, PAGES_FIELD)))
+                .thenReturn(Arrays.asList("1a2b3c4d", "7"));
+
+        assertThat(catalogVersionService.getPagesVersionKey()).isEqualTo("1a2b3c4d-7");
+    }
+
+    @Test
+    void bumpPagesVersion_ShouldOnlyIncrementThePagesCounter() {
+        catalogVersionService.bumpPagesVersion();
+
+        verify(hashOperations).increment(VERSION_KEY, PAGES_FIELD, 1);
+        verify(hashOperations, never()).increment(VERSION_KEY, COUNTER_FIELD, 1);
+    }
+
+    @Test
+    void getBookETag_ShouldChangeWithLastModifiedAt() {
+        UUID bookId = UUID.randomUUID();
+        LocalDateTime modifiedAt = LocalDateTime.of(2026, 10, 18, 12, 0, 0, 123_456_000);
+
+        String before = catalogVersionService.getBookETag(bookId, modifiedAt);
+        String after = catalogVersionService.getBookETag(bookId, modifiedAt.plusNanos(1_000));
+
+        assertThat(before).startsWith("\"" + bookId).endsWith("\"");
+        assertThat(after).isNotEqualTo(before);
+    }
+
+    @Test
+    void getBookLastModifiedAt_WhenBookDoesNotExist_ShouldBeEmpty() {
+        UUID bookId = UUID.randomUUID();
+        when(bookRepository.findLastModifiedAt(bookId)).thenReturn(Optional.empty());
+
+        assertThat(catalogVersionService.getBookLastModifiedAt(bookId)).isEmpty();
+    }
+}
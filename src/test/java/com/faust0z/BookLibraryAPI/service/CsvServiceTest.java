@@ -0,0 +1,116 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.exception.ExcelProcessingException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvServiceTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private CsvService csvService;
+
+    @BeforeEach
+    void setUp() {
+        csvService = new CsvService();
+    }
+
+    private BookEntity book(String name, String author, LocalDate publicationDate, int copies) {
+        BookEntity book = new BookEntity();
+        book.setName(name);
+        book.setAuthor(author);
+        book.setPublicationDate(publicationDate);
+        book.setCopies(copies);
+        return book;
+    }
+
+    private String export(List<BookEntity> books) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        csvService.exportBooksToCsv(books.stream(), out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private List<BookEntity> read(String csv, List<String> errors) throws IOException {
+        Path file = Files.writeString(tempDir.resolve("books.csv"), csv);
+        List<BookEntity> books = new ArrayList<>();
+        csvService.readBooksFromCsv(file, books::add, invalidRow -> errors.add(invalidRow.getMessage()));
+        return books;
+    }
+
+    @Test
+    void exportBooksToCsv_ShouldQuoteOnlyFieldsThatNeedIt() {
+        String csv = export(List.of(book("Dune, Messiah", "Frank \"The\" Herbert", LocalDate.of(1969, 10, 15), 2)));
+
+        assertThat(csv).isEqualTo("Title,Author,Publication Date,Available Copies\r\n" +
+                "\"Dune, Messiah\",\"Frank \"\"The\"\" Herbert\",1969-10-15,2\r\n");
+    }
+
+    @Test
+    void readBooksFromCsv_ShouldReadWhatWasExported() throws IOException {
+        // Enough rows to span several read buffers, with values holding separators, quotes and line breaks
+        List<BookEntity> books = IntStream.range(0, 5_000)
+                .mapToObj(i -> book("Book, \"" + i + "\"\nVolume ñ " + i, "Author " + i % 7,
+                        LocalDate.of(2000, 1, 1).plusDays(i), i % 5))
+                .toList();
+        List<String> errors = new ArrayList<>();
+
+        List<BookEntity> imported = read(export(books), errors);
+
+        assertThat(errors).isEmpty();
+        assertThat(imported).hasSize(books.size());
+        for (int i = 0; i < books.size(); i++) {
+            assertThat(imported.get(i).getName()).isEqualTo(books.get(i).getName());
+            assertThat(imported.get(i).getAuthor()).isEqualTo(books.get(i).getAuthor());
+            assertThat(imported.get(i).getPublicationDate()).isEqualTo(books.get(i).getPublicationDate());
+            assertThat(imported.get(i).getCopies()).isEqualTo(books.get(i).getCopies());
+        }
+    }
+
+    @Test
+    void readBooksFromCsv_ShouldMapColumnsByHeaderAndReportInvalidRows() throws IOException {
+        String csv = "\uFEFFAvailable Copies,Publication Date,Author,Title\n" +
+                "3,1965-08-01,Frank Herbert,Dune\n" +
+                "\n" +
+                "1,1951-06-01,,Foundation\n" +
+                "4,1954-07-29,J. R. R. Tolkien,The Fellowship of the Ring";
+        List<String> errors = new ArrayList<>();
+
+        List<BookEntity> imported = read(csv, errors);
+
+        assertThat(imported).extracting(BookEntity::getName).containsExactly("Dune", "The Fellowship of the Ring");
+        assertThat(imported.get(0).getCopies()).isEqualTo(3);
+        assertThat(errors).containsExactly("Author is required at row 4");
+    }
+
+    @Test
+    void readBooksFromCsv_WhenColumnIsMissing_ShouldFail() {
+        assertThatThrownBy(() -> read("Title,Author,Available Copies\nDune,Frank Herbert,3\n", new ArrayList<>()))
+                .isInstanceOf(ExcelProcessingException.class)
+                .hasMessageContaining("Missing required column: Publication Date");
+    }
+
+    @Test
+    void readBooksFromCsv_WhenQuoteIsNotClosed_ShouldFail() {
+        String csv = "Title,Author,Publication Date,Available Copies\n\"Dune,Frank Herbert,1965-08-01,3\n";
+
+        assertThatThrownBy(() -> read(csv, new ArrayList<>()))
+                .isInstanceOf(ExcelProcessingException.class)
+                .hasMessageContaining("Unterminated quoted value at row 2");
+    }
+}
@@ -2,12 +2,24 @@ package com.faust0z.BookLibraryAPI.service;
 
 import com.faust0z.BookLibraryAPI.entity.BookEntity;
 import com.faust0z.BookLibraryAPI.exception.ExcelProcessingException;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -23,15 +35,21 @@ class ExcelServiceTest {
         excelService = new ExcelService();
     }
 
+    private byte[] export(List<BookEntity> books) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        excelService.exportBooksToExcel(books.stream(), out);
+        return out.toByteArray();
+    }
+
     @Test
-    void exportBooksToExcel_ShouldReturnByteArray() {
+    void exportBooksToExcel_ShouldWriteWorkbook() {
         BookEntity book = new BookEntity();
         book.setName("Test Book");
         book.setAuthor("Test Author");
         book.setCopies(10);
         book.setPublicationDate(LocalDate.of(2023, 1, 1));
 
-        byte[] result = excelService.exportBooksToExcel(List.of(book));
+        byte[] result = export(List.of(book));
 
         assertNotNull(result);
         assertTrue(result.length > 0);
@@ -45,7 +63,7 @@ class ExcelServiceTest {
         book.setCopies(5);
         book.setPublicationDate(LocalDate.of(2022, 5, 20));
 
-        byte[] excelData = excelService.exportBooksToExcel(List.of(book));
+        byte[] excelData = export(List.of(book));
         ByteArrayInputStream is = new ByteArrayInputStream(excelData);
 
         List<BookEntity> result = excelService.importBooksFromExcel(is);
@@ -57,9 +75,72 @@ class ExcelServiceTest {
         assertEquals(LocalDate.of(2022, 5, 20), result.get(0).getPublicationDate());
     }
 
+    @Test
+    void importBooksFromExcel_WithManyRows_ShouldKeepFileOrderAcrossConcurrentImports() throws Exception {
+        List<BookEntity> books = IntStream.range(0, 2_500).mapToObj(i -> {
+            BookEntity book = new BookEntity();
+            book.setName("Book " + i);
+            book.setAuthor("Author " + i % 7);
+            book.setCopies(i % 5);
+            book.setPublicationDate(LocalDate.of(2000, 1, 1).plusDays(i));
+            return book;
+        }).toList();
+        byte[] excelData = export(books);
+
+        ExecutorService imports = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<List<BookEntity>>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(imports.submit(() -> excelService.importBooksFromExcel(new ByteArrayInputStream(excelData))));
+            }
+
+            for (Future<List<BookEntity>> result : results) {
+                List<BookEntity> imported = result.get(30, TimeUnit.SECONDS);
+                assertEquals(books.size(), imported.size());
+                for (int i = 0; i < books.size(); i++) {
+                    assertEquals(books.get(i).getName(), imported.get(i).getName());
+                    assertEquals(books.get(i).getPublicationDate(), imported.get(i).getPublicationDate());
+                }
+            }
+        } finally {
+            imports.shutdownNow();
+        }
+    }
+
+    @Test
+    void importBooksFromExcel_WithFormattedDateAndNumberCells_ShouldReadTheirValues() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Workbook workbook = new XSSFWorkbook()) {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("d/m/yy"));
+            CellStyle thousandsStyle = workbook.createCellStyle();
+            thousandsStyle.setDataFormat(workbook.createDataFormat().getFormat("#,##0"));
+
+            Sheet sheet = workbook.createSheet();
+            Row header = sheet.createRow(0);
+            List.of("Title", "Author", "Publication Date", "Available Copies")
+                    .forEach(title -> header.createCell(header.getPhysicalNumberOfCells()).setCellValue(title));
+
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue("Dune");
+            row.createCell(1).setCellValue("Frank Herbert");
+            row.createCell(2).setCellValue(LocalDate.of(1965, 8, 1));
+            row.getCell(2).setCellStyle(dateStyle);
+            row.createCell(3).setCellValue(1200);
+            row.getCell(3).setCellStyle(thousandsStyle);
+            workbook.write(out);
+        }
+
+        List<BookEntity> result = excelService.importBooksFromExcel(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(1, result.size());
+        assertEquals(LocalDate.of(1965, 8, 1), result.get(0).getPublicationDate());
+        assertEquals(1200, result.get(0).getCopies());
+    }
+
     @Test
     void importBooksFromExcel_MissingHeader_ShouldThrowException() {
-        byte[] excelData = excelService.exportBooksToExcel(List.of());
+        byte[] excelData = export(List.of());
         ByteArrayInputStream is = new ByteArrayInputStream(new byte[0]);
 
         assertThrows(ExcelProcessingException.class, () -> excelService.importBooksFromExcel(is));
@@ -71,7 +152,7 @@ class ExcelServiceTest {
         invalidBook.setName("");
         invalidBook.setAuthor("Author");
 
-        byte[] excelData = excelService.exportBooksToExcel(List.of(invalidBook));
+        byte[] excelData = export(List.of(invalidBook));
         ByteArrayInputStream is = new ByteArrayInputStream(excelData);
 
         assertThrows(ExcelProcessingException.class, () -> excelService.importBooksFromExcel(is));
@@ -0,0 +1,136 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.BaseIntegrationTest;
+import com.faust0z.BookLibraryAPI.dto.CreateLoanDTO;
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.exception.ResourceUnavailableException;
+import com.faust0z.BookLibraryAPI.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Loan creation in hot-item mode against a real database. The flush interval is long enough for the tests to flush
+ * by hand.
+ */
+@Slf4j
+@TestPropertySource(properties = {
+        "spring.flyway.enabled=true",
+        "app.loans.hot-items.enabled=true",
+        "app.loans.hot-items.flush-interval=1h"
+})
+class HotBookLedgerConcurrencyTests extends BaseIntegrationTest {
+
+    private static final int THREADS = 16;
+    private static final int COPIES = 25;
+    private static final int BORROWERS = 200;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private HotBookLedger hotBookLedger;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private int availableCopies(BookEntity book) {
+        return loanRepository.findAvailableCopies(book.getId()).map(BookSnapshot::copies).orElseThrow();
+    }
+
+    @Test
+    void createLoan_WithConcurrentCheckouts_ShouldNeverOversellAndApplyCopiesOnFlush() throws Exception {
+        BookEntity book = saveBook(COPIES);
+        AtomicInteger loaned = new AtomicInteger();
+        AtomicInteger unavailable = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        double seconds;
+        try {
+            List<Future<Void>> checkouts = saveUsers(BORROWERS).stream().map(user -> pool.submit((Callable<Void>) () -> {
+                start.await();
+                CreateLoanDTO dto = new CreateLoanDTO();
+                dto.setUserId(user.getId());
+                dto.setBookId(book.getId());
+                try {
+                    loanService.createLoan(dto);
+                    loaned.incrementAndGet();
+                } catch (ResourceUnavailableException e) {
+                    unavailable.incrementAndGet();
+                }
+                return null;
+            })).toList();
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<Void> checkout : checkouts) checkout.get(2, TimeUnit.MINUTES);
+            seconds = (System.nanoTime() - startedAt) / 1e9;
+        } finally {
+            pool.shutdownNow();
+        }
+        log.info("{} concurrent hot-item checkouts of one book took {} s ({} requests/s)", BORROWERS, seconds,
+                BORROWERS / seconds);
+
+        assertThat(loaned.get()).isEqualTo(COPIES);
+        assertThat(unavailable.get()).isEqualTo(BORROWERS - COPIES);
+        // The copies are pending until the flush
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getCopies()).isEqualTo(COPIES);
+        assertThat(availableCopies(book)).isZero();
+
+        hotBookLedger.flush();
+
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getCopies()).isZero();
+        assertThat(availableCopies(book)).isZero();
+        assertThat(loanRepository.findAll()).filteredOn(loan -> loan.getBook().getId().equals(book.getId()))
+                .hasSize(COPIES)
+                .noneMatch(loan -> loan.isCopyPending());
+    }
+
+    @Test
+    void tryReserve_AfterRestart_ShouldCountCopiesStillPending() {
+        BookEntity book = saveBook(2);
+        saveUsers(2).forEach(user -> {
+            CreateLoanDTO dto = new CreateLoanDTO();
+            dto.setUserId(user.getId());
+            dto.setBookId(book.getId());
+            loanService.createLoan(dto);
+        });
+
+        // A new instance starts with empty counters, like after a restart before any flush
+        HotBookLedger restarted = new HotBookLedger(loanRepository, eventPublisher, transactionTemplate, true, 4, 1000,
+                Duration.ofHours(1), Executors.newSingleThreadScheduledExecutor());
+        try {
+            assertThat(bookRepository.findById(book.getId()).orElseThrow().getCopies()).isEqualTo(2);
+            assertThatThrownBy(() -> restarted.tryReserve(book.getId())).isInstanceOf(ResourceUnavailableException.class);
+
+            restarted.flush();
+
+            assertThat(bookRepository.findById(book.getId()).orElseThrow().getCopies()).isZero();
+        } finally {
+            restarted.shutdown();
+        }
+    }
+}
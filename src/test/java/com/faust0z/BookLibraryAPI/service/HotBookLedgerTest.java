@@ -0,0 +1,194 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.exception.ResourceNotFoundException;
+import com.faust0z.BookLibraryAPI.exception.ResourceUnavailableException;
+import com.faust0z.BookLibraryAPI.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HotBookLedgerTest {
+
+    private static final int STRIPES = 4;
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ScheduledExecutorService flusher;
+
+    private HotBookLedger hotBookLedger;
+
+    private final UUID bookId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        hotBookLedger = new HotBookLedger(loanRepository, eventPublisher, transactionTemplate, true, STRIPES, 2,
+                Duration.ofMillis(200), flusher);
+    }
+
+    private BookSnapshot book(int copies) {
+        return new BookSnapshot(bookId, "Hyped Release", "Author", LocalDate.of(2026, 10, 1), copies);
+    }
+
+    private void givenAvailableCopies(int... copies) {
+        var stubbing = when(loanRepository.findAvailableCopies(bookId)).thenReturn(Optional.of(book(copies[0])));
+        for (int i = 1; i < copies.length; i++) stubbing = stubbing.thenReturn(Optional.of(book(copies[i])));
+    }
+
+    @Test
+    void tryReserve_ShouldLoadCopiesOnceAndRejectWhenSoldOut() {
+        // Fewer copies than stripes, so some stripes start empty
+        givenAvailableCopies(3);
+
+        for (int i = 0; i < 3; i++) hotBookLedger.tryReserve(bookId).complete(true);
+
+        assertThatThrownBy(() -> hotBookLedger.tryReserve(bookId))
+                .isInstanceOf(ResourceUnavailableException.class)
+                .hasMessageContaining("Hyped Release");
+        verify(loanRepository, times(1)).findAvailableCopies(bookId);
+    }
+
+    @Test
+    void tryReserve_WhenTransactionRollsBack_ShouldGiveCopyBack() {
+        givenAvailableCopies(1);
+
+        hotBookLedger.tryReserve(bookId).complete(false);
+        hotBookLedger.tryReserve(bookId).complete(true);
+
+        assertThatThrownBy(() -> hotBookLedger.tryReserve(bookId)).isInstanceOf(ResourceUnavailableException.class);
+    }
+
+    @Test
+    void tryReserve_WhenBookDoesNotExist_ShouldThrowException() {
+        when(loanRepository.findAvailableCopies(bookId)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> hotBookLedger.tryReserve(bookId))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining(bookId.toString());
+    }
+
+    @Test
+    void reserve_OutsideTransaction_ShouldThrowException() {
+        assertThatThrownBy(() -> hotBookLedger.reserve(bookId)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void onBooksChanged_ShouldReloadCopiesOnNextReservation() {
+        // A copy was returned meanwhile
+        givenAvailableCopies(1, 1);
+
+        hotBookLedger.tryReserve(bookId).complete(true);
+        hotBookLedger.onBooksChanged(new BooksChangedEvent(List.of(book(1))));
+        hotBookLedger.tryReserve(bookId).complete(true);
+
+        verify(loanRepository, times(2)).findAvailableCopies(bookId);
+        assertThatThrownBy(() -> hotBookLedger.tryReserve(bookId)).isInstanceOf(ResourceUnavailableException.class);
+    }
+
+    @Test
+    void onBooksChanged_ShouldWaitForReservationsInFlightBeforeReloading() throws Exception {
+        givenAvailableCopies(5, 4);
+        HotBookLedger.Reservation inFlight = hotBookLedger.tryReserve(bookId);
+        hotBookLedger.onBooksChanged(new BooksChangedEvent(List.of(book(5))));
+
+        CompletableFuture<HotBookLedger.Reservation> next = CompletableFuture.supplyAsync(() -> hotBookLedger.tryReserve(bookId));
+        Thread.sleep(200);
+
+        assertThat(next).isNotDone();
+        inFlight.complete(true);
+        next.get(5, TimeUnit.SECONDS).complete(true);
+        verify(loanRepository, times(2)).findAvailableCopies(bookId);
+    }
+
+    @Test
+    void reserveInTransaction_WhenBookChangesBetweenItsCheckouts_ShouldNotWaitForItsOwnReservations() {
+        givenAvailableCopies(5, 5);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            hotBookLedger.reserveInTransaction(bookId);
+            hotBookLedger.onBooksChanged(new BooksChangedEvent(List.of(book(5))));
+
+            // The reload would otherwise wait for the first reservation until the drain timeout
+            assertTimeout(Duration.ofSeconds(1), () -> hotBookLedger.reserveInTransaction(bookId));
+            // The copy held by the first checkout is not in the database yet, so it is not counted again
+            for (int i = 0; i < 3; i++) hotBookLedger.reserveInTransaction(bookId);
+            assertThatThrownBy(() -> hotBookLedger.reserveInTransaction(bookId))
+                    .isInstanceOf(ResourceUnavailableException.class);
+            verify(loanRepository, times(2)).findAvailableCopies(bookId);
+        } finally {
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(TransactionSynchronizationManager.getResourceMap()).isEmpty();
+    }
+
+    @Test
+    void flush_ShouldApplyPendingCopiesUntilNoneAreLeft() {
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(loanRepository.applyPendingCopies(2))
+                .thenReturn(List.of(book(8)))
+                .thenReturn(List.of(book(7)))
+                .thenReturn(List.of());
+        // Events are delivered back to the ledger, like Spring does
+        doAnswer(invocation -> {
+            hotBookLedger.onBooksChanged(invocation.getArgument(0));
+            return null;
+        }).when(eventPublisher).publishEvent(any(BooksChangedEvent.class));
+        givenAvailableCopies(1);
+        hotBookLedger.tryReserve(bookId).complete(true);
+
+        hotBookLedger.flush();
+
+        verify(loanRepository, times(3)).applyPendingCopies(2);
+        verify(eventPublisher, times(2)).publishEvent(any(BooksChangedEvent.class));
+        // Flushing does not change how many copies are available, so the book is not reloaded
+        assertThatThrownBy(() -> hotBookLedger.tryReserve(bookId)).isInstanceOf(ResourceUnavailableException.class);
+        verify(loanRepository, times(1)).findAvailableCopies(bookId);
+    }
+
+    @Test
+    void flush_WhenDatabaseFails_ShouldKeepCopiesPending() {
+        when(transactionTemplate.execute(any())).thenThrow(new IllegalStateException("Connection refused"));
+
+        hotBookLedger.flush();
+
+        verify(transactionTemplate).execute(any());
+    }
+}
@@ -0,0 +1,220 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.BaseIntegrationTest;
+import com.faust0z.BookLibraryAPI.dto.BatchLoanResultDTO;
+import com.faust0z.BookLibraryAPI.dto.CreateLoanDTO;
+import com.faust0z.BookLibraryAPI.dto.LoanDTO;
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.faust0z.BookLibraryAPI.entity.UserEntity;
+import com.faust0z.BookLibraryAPI.exception.AlreadyLoanedBookException;
+import com.faust0z.BookLibraryAPI.exception.LoanLimitExceededException;
+import com.faust0z.BookLibraryAPI.exception.ResourceNotFoundException;
+import com.faust0z.BookLibraryAPI.exception.ResourceUnavailableException;
+import com.faust0z.BookLibraryAPI.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Loan creation against a real database, where its rules are enforced by SQL, including concurrent checkouts of the
+ * same book. Timings are only logged, they depend too much on the machine running the build. Throughput is measured
+ * by LoanCheckoutBenchmark in the benchmark profile.
+ */
+@Slf4j
+@TestPropertySource(properties = "spring.flyway.enabled=true")
+class LoanServiceConcurrencyTests extends BaseIntegrationTest {
+
+    private static final int THREADS = 16;
+    private static final int COPIES = 25;
+    private static final int BORROWERS = 200;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    // Runs every task at once on THREADS threads and returns the elapsed seconds
+    private double runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<Void> future : futures) {
+                // Rethrows any unexpected failure
+                future.get(2, TimeUnit.MINUTES);
+            }
+            return (System.nanoTime() - startedAt) / 1e9;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private CreateLoanDTO request(UserEntity user, BookEntity book) {
+        CreateLoanDTO dto = new CreateLoanDTO();
+        dto.setUserId(user.getId());
+        dto.setBookId(book.getId());
+        return dto;
+    }
+
+    private long activeLoans(UUID userId) {
+        return loanRepository.findByUserIdWithUserAndBook(userId).stream()
+                .filter(loan -> loan.getReturnDate() == null)
+                .count();
+    }
+
+    private LoanDTO loan(UserEntity user, BookEntity book) {
+        return loanService.createLoan(request(user, book));
+    }
+
+    @Test
+    void createLoan_ShouldEnforceEachRuleInTheCheckoutStatement() {
+        UserEntity user = saveUsers(1).getFirst();
+        List<BookEntity> books = IntStream.range(0, 4).mapToObj(i -> saveBook(1)).toList();
+        BookEntity soldOut = saveBook(0);
+
+        LoanDTO created = loan(user, books.get(0));
+
+        assertThat(created.getBookName()).isEqualTo(books.get(0).getName());
+        assertThat(created.getDueDate()).isEqualTo(created.getLoanDate().plusWeeks(2));
+        assertThat(bookRepository.findById(books.get(0).getId()).orElseThrow().getCopies()).isZero();
+        assertThat(activeLoans(user.getId())).isEqualTo(1);
+
+        assertThatThrownBy(() -> loan(user, soldOut)).isInstanceOf(ResourceUnavailableException.class);
+        bookRepository.incrementCopies(books.get(0).getId());
+        assertThatThrownBy(() -> loan(user, books.get(0))).isInstanceOf(AlreadyLoanedBookException.class);
+        loan(user, books.get(1));
+        loan(user, books.get(2));
+        assertThatThrownBy(() -> loan(user, books.get(3))).isInstanceOf(LoanLimitExceededException.class);
+        UserEntity missingUser = new UserEntity();
+        missingUser.setId(UUID.randomUUID());
+        assertThatThrownBy(() -> loan(missingUser, books.get(3)))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining("User not found");
+
+        // Rejected checkouts change nothing
+        assertThat(bookRepository.findById(books.get(3).getId()).orElseThrow().getCopies()).isEqualTo(1);
+        assertThat(activeLoans(user.getId())).isEqualTo(3);
+    }
+
+    @Test
+    void createLoans_ShouldApplyTheRulesToEachLoanInOrder() {
+        List<UserEntity> users = saveUsers(3);
+        UserEntity reader = users.get(0);
+        List<BookEntity> books = IntStream.range(0, 4).mapToObj(i -> saveBook(2)).toList();
+        BookEntity lastCopy = saveBook(1);
+
+        List<CreateLoanDTO> cart = new ArrayList<>();
+        for (BookEntity book : books) cart.add(request(reader, book));
+        cart.add(request(reader, books.get(0)));
+        cart.add(request(users.get(1), lastCopy));
+        cart.add(request(users.get(1), lastCopy));
+        cart.add(request(users.get(2), lastCopy));
+        List<BatchLoanResultDTO> results = loanService.createLoans(cart);
+
+        // The fourth book is over the limit, then repeated and sold out items are rejected without stopping the rest.
+        // The last copy is taken by the first request for it, so the repeated one finds the book sold out first
+        assertThat(results).extracting(BatchLoanResultDTO::isSuccess)
+                .containsExactly(true, true, true, false, false, true, false, false);
+        assertThat(results).extracting(BatchLoanResultDTO::getError).containsExactly(null, null, null,
+                "LoanLimitExceededException", "AlreadyLoanedBookException", null, "ResourceUnavailableException",
+                "ResourceUnavailableException");
+        assertThat(bookRepository.findById(books.get(0).getId()).orElseThrow().getCopies()).isEqualTo(1);
+        assertThat(bookRepository.findById(books.get(3).getId()).orElseThrow().getCopies()).isEqualTo(2);
+        assertThat(bookRepository.findById(lastCopy.getId()).orElseThrow().getCopies()).isZero();
+        assertThat(activeLoans(reader.getId())).isEqualTo(3);
+
+        UUID firstLoan = results.get(0).getLoanId();
+        UUID missingLoan = UUID.randomUUID();
+        List<BatchLoanResultDTO> returns = loanService.returnLoans(List.of(firstLoan, missingLoan, firstLoan,
+                results.get(5).getLoanId()));
+
+        assertThat(returns).extracting(BatchLoanResultDTO::getError).containsExactly(null,
+                "ResourceNotFoundException", "ResourceUnavailableException", null);
+        assertThat(returns.get(0).getLoan().getReturnDate()).isToday();
+        assertThat(bookRepository.findById(books.get(0).getId()).orElseThrow().getCopies()).isEqualTo(2);
+        assertThat(bookRepository.findById(lastCopy.getId()).orElseThrow().getCopies()).isEqualTo(1);
+        assertThat(activeLoans(reader.getId())).isEqualTo(2);
+    }
+
+    @Test
+    void createLoans_WhenAnItemIsSoldOut_ShouldNotCountItTowardsTheLoanLimit() {
+        UserEntity reader = saveUsers(1).getFirst();
+        loan(reader, saveBook(1));
+        loan(reader, saveBook(1));
+        BookEntity soldOut = saveBook(0);
+        BookEntity available = saveBook(1);
+
+        List<BatchLoanResultDTO> results = loanService.createLoans(List.of(request(reader, soldOut),
+                request(reader, available)));
+
+        assertThat(results).extracting(BatchLoanResultDTO::getError)
+                .containsExactly("ResourceUnavailableException", null);
+        assertThat(bookRepository.findById(available.getId()).orElseThrow().getCopies()).isZero();
+        assertThat(activeLoans(reader.getId())).isEqualTo(3);
+    }
+
+    @Test
+    void createLoans_WhenARepeatedItemFollowsARejectedOne_ShouldReportItsOwnRejection() {
+        UserEntity reader = saveUsers(1).getFirst();
+        for (int i = 0; i < 3; i++) loan(reader, saveBook(1));
+        BookEntity book = saveBook(2);
+
+        List<BatchLoanResultDTO> results = loanService.createLoans(List.of(request(reader, book),
+                request(reader, book)));
+
+        // The first item took no copy, so the second one is not already loaned
+        assertThat(results).extracting(BatchLoanResultDTO::getError)
+                .containsExactly("LoanLimitExceededException", "LoanLimitExceededException");
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getCopies()).isEqualTo(2);
+    }
+
+    @Test
+    void createLoan_WithConcurrentCheckouts_ShouldNeverOversell() throws Exception {
+        BookEntity book = saveBook(COPIES);
+        AtomicInteger loaned = new AtomicInteger();
+        AtomicInteger unavailable = new AtomicInteger();
+
+        List<Callable<Void>> checkouts = saveUsers(BORROWERS).stream().<Callable<Void>>map(user -> () -> {
+            try {
+                loan(user, book);
+                loaned.incrementAndGet();
+            } catch (ResourceUnavailableException e) {
+                unavailable.incrementAndGet();
+            }
+            return null;
+        }).toList();
+        double seconds = runConcurrently(checkouts);
+        log.info("{} concurrent checkouts of one book took {} s ({} requests/s)", BORROWERS, seconds, BORROWERS / seconds);
+
+        assertThat(loaned.get()).isEqualTo(COPIES);
+        assertThat(unavailable.get()).isEqualTo(BORROWERS - COPIES);
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getCopies()).isZero();
+        assertThat(loanRepository.findAll()).filteredOn(loan -> loan.getBook().getId().equals(book.getId()))
+                .hasSize(COPIES);
+    }
+}
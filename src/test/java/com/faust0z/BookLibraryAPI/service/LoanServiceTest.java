@@ -1,32 +1,50 @@
 package com.faust0z.BookLibraryAPI.service;
 
+import com.faust0z.BookLibraryAPI.dto.BatchLoanResultDTO;
 import com.faust0z.BookLibraryAPI.dto.CreateLoanDTO;
 import com.faust0z.BookLibraryAPI.dto.LoanDTO;
 import com.faust0z.BookLibraryAPI.entity.BookEntity;
 import com.faust0z.BookLibraryAPI.entity.LoanEntity;
-import com.faust0z.BookLibraryAPI.entity.UserEntity;
+import com.faust0z.BookLibraryAPI.event.BookSnapshot;
+import com.faust0z.BookLibraryAPI.event.BooksChangedEvent;
+import com.faust0z.BookLibraryAPI.event.LoansChangedEvent;
 import com.faust0z.BookLibraryAPI.exception.AlreadyLoanedBookException;
 import com.faust0z.BookLibraryAPI.exception.LoanLimitExceededException;
 import com.faust0z.BookLibraryAPI.exception.ResourceNotFoundException;
 import com.faust0z.BookLibraryAPI.exception.ResourceUnavailableException;
 import com.faust0z.BookLibraryAPI.mapper.LoanMapper;
 import com.faust0z.BookLibraryAPI.repository.BookRepository;
+import com.faust0z.BookLibraryAPI.repository.LoanCheckout;
 import com.faust0z.BookLibraryAPI.repository.LoanRepository;
-import com.faust0z.BookLibraryAPI.repository.UserRepository;
+import com.faust0z.BookLibraryAPI.repository.LoanReturn;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,61 +55,95 @@ class LoanServiceTest {
     @Mock
     private BookRepository bookRepository;
     @Mock
-    private UserRepository userRepository;
-    @Mock
     private LoanMapper loanMapper;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private HotBookLedger hotBookLedger;
+    @Mock
+    private CacheManager cacheManager;
 
     @InjectMocks
     private LoanService loanService;
 
 
-    @Test
-    void createLoan_WhenValid_ShouldSuccessAndDecrementCopies() {
-        UUID userId = UUID.randomUUID();
-        UUID bookId = UUID.randomUUID();
+    private CreateLoanDTO loanRequest(UUID userId, UUID bookId) {
         CreateLoanDTO dto = new CreateLoanDTO();
         dto.setUserId(userId);
         dto.setBookId(bookId);
+        return dto;
+    }
 
-        UserEntity userEntity = new UserEntity();
-        userEntity.setId(userId);
+    private void givenCheckout(UUID userId, UUID bookId, LoanCheckout checkout) {
+        when(loanRepository.checkout(any(UUID.class), eq(userId), eq(bookId), any(LocalDate.class), any(LocalDate.class),
+                eq(3))).thenReturn(checkout);
+    }
 
-        BookEntity book = new BookEntity();
-        book.setId(bookId);
-        book.setCopies(5);
-        book.setName("Test Book");
+    @Test
+    void createLoan_WhenValid_ShouldSuccessAndDecrementCopies() {
+        UUID userId = UUID.randomUUID();
+        UUID bookId = UUID.randomUUID();
+        BookSnapshot loanedBook = new BookSnapshot(bookId, "Test Book", "Author", LocalDate.of(2020, 1, 1), 4);
+        givenCheckout(userId, bookId, new LoanCheckout(true, true, "Test Book", 5, false, 0, loanedBook));
+
+        LoanDTO result = loanService.createLoan(loanRequest(userId, bookId));
+
+        assertThat(result.getUserId()).isEqualTo(userId);
+        assertThat(result.getBookId()).isEqualTo(bookId);
+        assertThat(result.getBookName()).isEqualTo("Test Book");
+        assertThat(result.getLoanDate()).isEqualTo(LocalDate.now());
+        assertThat(result.getDueDate()).isEqualTo(LocalDate.now().plusWeeks(2));
+        assertThat(result.getReturnDate()).isNull();
+        // The rules, the copy and the loan are handled by the single checkout statement
+        verify(loanRepository, never()).save(any());
+        verify(bookRepository, never()).save(any());
+        verify(eventPublisher).publishEvent(new BooksChangedEvent(List.of(loanedBook)));
+    }
 
-        LoanDTO expectedDto = new LoanDTO();
+    @Test
+    void createLoan_WhenUserDoesNotExist_ShouldThrowException() {
+        UUID userId = UUID.randomUUID();
+        UUID bookId = UUID.randomUUID();
+        givenCheckout(userId, bookId, new LoanCheckout(false, true, "Test Book", 5, false, 0, null));
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(userEntity));
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(loanRepository.countByUserIdAndReturnDateIsNull(userId)).thenReturn(0);
-        when(loanRepository.save(any(LoanEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(loanMapper.toDto(any(LoanEntity.class))).thenReturn(expectedDto);
+        assertThatThrownBy(() -> loanService.createLoan(loanRequest(userId, bookId)))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining("User not found");
+        verify(eventPublisher, never()).publishEvent(any());
+    }
 
-        LoanDTO result = loanService.createLoan(dto);
+    @Test
+    void createLoan_WhenBookDoesNotExist_ShouldThrowException() {
+        UUID userId = UUID.randomUUID();
+        UUID bookId = UUID.randomUUID();
+        givenCheckout(userId, bookId, new LoanCheckout(true, false, null, 0, false, 0, null));
 
-        assertThat(result).isEqualTo(expectedDto);
-        assertThat(book.getCopies()).isEqualTo(4); // Verify logic: 5 - 1
-        verify(bookRepository).save(book);
-        verify(loanRepository).save(any(LoanEntity.class));
+        assertThatThrownBy(() -> loanService.createLoan(loanRequest(userId, bookId)))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining("Book not found");
     }
 
     @Test
-    void createLoan_WhenBookHasNoCopies_ShouldThrowException() {
+    void createLoan_WhenLastCopyIsTakenMeanwhile_ShouldThrowException() {
         UUID userId = UUID.randomUUID();
         UUID bookId = UUID.randomUUID();
-        CreateLoanDTO dto = new CreateLoanDTO();
-        dto.setUserId(userId);
-        dto.setBookId(bookId);
+        // Every rule held when the statement started, yet no copy could be taken
+        givenCheckout(userId, bookId, new LoanCheckout(true, true, "Test Book", 1, false, 0, null));
 
-        BookEntity book = new BookEntity();
-        book.setCopies(0);
+        assertThatThrownBy(() -> loanService.createLoan(loanRequest(userId, bookId)))
+                .isInstanceOf(ResourceUnavailableException.class)
+                .hasMessageContaining("Book is unavailable");
+        verify(eventPublisher, never()).publishEvent(any());
+    }
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(new UserEntity()));
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+    @Test
+    void createLoan_WhenBookHasNoCopies_ShouldThrowException() {
+        UUID userId = UUID.randomUUID();
+        UUID bookId = UUID.randomUUID();
+        // Also over the limit, the copies are reported first
+        givenCheckout(userId, bookId, new LoanCheckout(true, true, "Test Book", 0, false, 3, null));
 
-        assertThatThrownBy(() -> loanService.createLoan(dto))
+        assertThatThrownBy(() -> loanService.createLoan(loanRequest(userId, bookId)))
                 .isInstanceOf(ResourceUnavailableException.class)
                 .hasMessageContaining("Book is unavailable");
     }
@@ -100,50 +152,160 @@ class LoanServiceTest {
     void createLoan_WhenUserAlreadyHasBook_ShouldThrowException() {
         UUID userId = UUID.randomUUID();
         UUID bookId = UUID.randomUUID();
-        CreateLoanDTO dto = new CreateLoanDTO();
-        dto.setUserId(userId);
-        dto.setBookId(bookId);
+        givenCheckout(userId, bookId, new LoanCheckout(true, true, "Test Book", 5, true, 1, null));
 
-        UserEntity userEntity = new UserEntity();
-        userEntity.setId(userId);
+        assertThatThrownBy(() -> loanService.createLoan(loanRequest(userId, bookId)))
+                .isInstanceOf(AlreadyLoanedBookException.class)
+                .hasMessageContaining("is already loaning book");
+    }
 
-        BookEntity book = new BookEntity();
-        book.setId(bookId);
-        book.setCopies(5);
+    @Test
+    void createLoan_WhenUserReachedLimit_ShouldThrowException() {
+        UUID userId = UUID.randomUUID();
+        UUID bookId = UUID.randomUUID();
+        givenCheckout(userId, bookId, new LoanCheckout(true, true, "Test Book", 10, false, 3, null));
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(userEntity));
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+        assertThatThrownBy(() -> loanService.createLoan(loanRequest(userId, bookId)))
+                .isInstanceOf(LoanLimitExceededException.class)
+                .hasMessageContaining("maximum loan limit");
+    }
 
-        when(loanRepository.existsByUserIdAndBookIdAndReturnDateIsNull(userId, bookId)).thenReturn(true);
+    @Test
+    void createLoan_InHotItemMode_ShouldReserveCopyAndLeaveItPending() {
+        UUID userId = UUID.randomUUID();
+        UUID bookId = UUID.randomUUID();
+        BookSnapshot loanedBook = new BookSnapshot(bookId, "Test Book", "Author", LocalDate.of(2020, 1, 1), 5);
+        when(hotBookLedger.isEnabled()).thenReturn(true);
+        when(loanRepository.checkoutReserved(any(UUID.class), eq(userId), eq(bookId), any(LocalDate.class),
+                any(LocalDate.class), eq(3))).thenReturn(new LoanCheckout(true, true, "Test Book", 5, false, 0, loanedBook));
+
+        LoanDTO result = loanService.createLoan(loanRequest(userId, bookId));
+
+        assertThat(result.getBookName()).isEqualTo("Test Book");
+        verify(hotBookLedger).reserve(bookId);
+        verify(loanRepository, never()).checkout(any(), any(), any(), any(), any(), anyInt());
+        // The book is only changed by the ledger's flush, which publishes it
+        verify(eventPublisher, never()).publishEvent(any());
+    }
 
-        assertThatThrownBy(() -> loanService.createLoan(dto))
-                .isInstanceOf(AlreadyLoanedBookException.class)
-                .hasMessageContaining("is already loaning book");
+    @Test
+    void createLoan_InHotItemMode_WhenSoldOut_ShouldNotQueryDatabase() {
+        UUID bookId = UUID.randomUUID();
+        when(hotBookLedger.isEnabled()).thenReturn(true);
+        doThrow(new ResourceUnavailableException("Book is unavailable: Test Book")).when(hotBookLedger).reserve(bookId);
+
+        assertThatThrownBy(() -> loanService.createLoan(loanRequest(UUID.randomUUID(), bookId)))
+                .isInstanceOf(ResourceUnavailableException.class);
+        verifyNoInteractions(loanRepository, bookRepository);
     }
 
     @Test
-    void createLoan_WhenUserReachedLimit_ShouldThrowException() {
+    void createLoans_ShouldReportEachLoanAndPublishOnceForTheBatch() {
         UUID userId = UUID.randomUUID();
         UUID bookId = UUID.randomUUID();
-        CreateLoanDTO dto = new CreateLoanDTO();
-        dto.setUserId(userId);
-        dto.setBookId(bookId);
+        UUID otherBookId = UUID.randomUUID();
+        BookSnapshot loanedBook = new BookSnapshot(bookId, "Test Book", "Author", LocalDate.of(2020, 1, 1), 3);
+        when(loanRepository.checkoutAll(anyList(), any(LocalDate.class), any(LocalDate.class), eq(3))).thenReturn(List.of(
+                new LoanCheckout(true, true, "Test Book", 5, false, 0, loanedBook),
+                new LoanCheckout(true, true, "Other Book", 0, false, 1, null),
+                new LoanCheckout(true, true, "Test Book", 4, false, 1, loanedBook)));
+
+        List<BatchLoanResultDTO> results = loanService.createLoans(List.of(loanRequest(userId, bookId),
+                loanRequest(userId, otherBookId), loanRequest(UUID.randomUUID(), bookId)));
+
+        assertThat(results).extracting(BatchLoanResultDTO::getIndex).containsExactly(0, 1, 2);
+        assertThat(results).extracting(BatchLoanResultDTO::isSuccess).containsExactly(true, false, true);
+        assertThat(results.get(0).getLoanId()).isNotNull();
+        assertThat(results.get(0).getLoan().getBookName()).isEqualTo("Test Book");
+        assertThat(results.get(1).getError()).isEqualTo("ResourceUnavailableException");
+        assertThat(results.get(1).getMessage()).contains("Other Book");
+        // The book loaned twice is published once
+        verify(eventPublisher).publishEvent(new BooksChangedEvent(List.of(loanedBook)));
+        verify(eventPublisher).publishEvent(any(LoansChangedEvent.class));
+    }
 
-        UserEntity userEntity = new UserEntity();
-        userEntity.setId(userId);
+    @Test
+    void createLoans_WhenEveryLoanIsRejected_ShouldPublishNothing() {
+        UUID bookId = UUID.randomUUID();
+        when(loanRepository.checkoutAll(anyList(), any(LocalDate.class), any(LocalDate.class), eq(3)))
+                .thenReturn(List.of(new LoanCheckout(false, true, "Test Book", 5, false, 0, null)));
 
-        BookEntity book = new BookEntity();
-        book.setCopies(10);
+        List<BatchLoanResultDTO> results = loanService.createLoans(List.of(loanRequest(UUID.randomUUID(), bookId)));
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(userEntity));
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(loanRepository.countByUserIdAndReturnDateIsNull(userId)).thenReturn(3);
+        assertThat(results.getFirst().isSuccess()).isFalse();
+        assertThat(results.getFirst().getError()).isEqualTo("ResourceNotFoundException");
+        assertThat(results.getFirst().getMessage()).contains("User not found");
+        verify(eventPublisher, never()).publishEvent(any());
+    }
 
-        assertThatThrownBy(() -> loanService.createLoan(dto))
-                .isInstanceOf(LoanLimitExceededException.class)
-                .hasMessageContaining("maximum loan limit");
+    @Test
+    void createLoans_InHotItemMode_ShouldSkipSoldOutBooksAndGiveBackRejectedCopies() {
+        UUID userId = UUID.randomUUID();
+        UUID soldOutId = UUID.randomUUID();
+        UUID bookId = UUID.randomUUID();
+        HotBookLedger.Reservation reservation = mock(HotBookLedger.Reservation.class);
+        when(hotBookLedger.isEnabled()).thenReturn(true);
+        when(hotBookLedger.reserveInTransaction(soldOutId))
+                .thenThrow(new ResourceUnavailableException("Book is unavailable: Sold Out"));
+        when(hotBookLedger.reserveInTransaction(bookId)).thenReturn(reservation);
+        when(loanRepository.checkoutAllReserved(anyList(), any(LocalDate.class), any(LocalDate.class), eq(3)))
+                .thenReturn(List.of(new LoanCheckout(true, true, "Test Book", 5, true, 1, null)));
+
+        List<BatchLoanResultDTO> results = loanService.createLoans(List.of(loanRequest(userId, soldOutId),
+                loanRequest(userId, bookId)));
+
+        assertThat(results).extracting(BatchLoanResultDTO::getError)
+                .containsExactly("ResourceUnavailableException", "AlreadyLoanedBookException");
+        // Only the reserved item is sent to the database
+        verify(loanRepository).checkoutAllReserved(argThat(items -> items.size() == 1
+                && items.getFirst().bookId().equals(bookId)), any(), any(), eq(3));
+        verify(reservation).cancel();
+        verify(loanRepository, never()).checkoutAll(anyList(), any(), any(), anyInt());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void returnLoans_ShouldReportEachLoanAndPublishOnceForTheBatch() {
+        UUID userId = UUID.randomUUID();
+        UUID returnedId = UUID.randomUUID();
+        UUID missingId = UUID.randomUUID();
+        UUID alreadyReturnedId = UUID.randomUUID();
+        LocalDate loanDate = LocalDate.now().minusDays(3);
+        BookSnapshot book = new BookSnapshot(UUID.randomUUID(), "Test Book", "Author", LocalDate.of(2020, 1, 1), 2);
+        List<UUID> loanIds = List.of(returnedId, missingId, alreadyReturnedId);
+        when(loanRepository.returnAll(eq(loanIds), any(LocalDate.class))).thenReturn(List.of(
+                new LoanReturn(returnedId, true, null, userId, loanDate, loanDate.plusWeeks(2), book),
+                new LoanReturn(missingId, false, null, null, null, null, null),
+                new LoanReturn(alreadyReturnedId, true, loanDate, userId, loanDate, loanDate.plusWeeks(2), null)));
+
+        List<BatchLoanResultDTO> results = loanService.returnLoans(loanIds);
+
+        assertThat(results).extracting(BatchLoanResultDTO::isSuccess).containsExactly(true, false, false);
+        assertThat(results).extracting(BatchLoanResultDTO::getLoanId).containsExactlyElementsOf(loanIds);
+        assertThat(results.get(0).getLoan().getReturnDate()).isToday();
+        assertThat(results.get(1).getError()).isEqualTo("ResourceNotFoundException");
+        assertThat(results.get(2).getMessage()).isEqualTo("This loan has already been returned on " + loanDate);
+        verify(eventPublisher).publishEvent(new BooksChangedEvent(List.of(book)));
+        verify(eventPublisher).publishEvent(new LoansChangedEvent(Set.of(userId), Set.of(returnedId)));
     }
 
+    @Test
+    void onLoansChanged_ShouldEvictEachKeyOnce() {
+        UUID userId = UUID.randomUUID();
+        UUID loanId = UUID.randomUUID();
+        Cache loans = mock(Cache.class);
+        Cache userLoans = mock(Cache.class);
+        when(cacheManager.getCache("loans")).thenReturn(loans);
+        when(cacheManager.getCache("user_loans")).thenReturn(userLoans);
+        doThrow(new IllegalStateException("Redis is down")).when(loans).evict("details:" + userId);
+
+        loanService.onLoansChanged(new LoansChangedEvent(Set.of(userId), Set.of(loanId)));
+
+        verify(loans, times(1)).evict("list:all");
+        verify(loans).evict("details:" + userId);
+        verify(loans).evict("details:" + loanId);
+        verify(userLoans).evict(userId);
+    }
 
     @Test
     void returnLoan_WhenValid_ShouldSetReturnDateAndIncrementCopies() {
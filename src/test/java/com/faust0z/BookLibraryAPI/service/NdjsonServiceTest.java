@@ -0,0 +1,103 @@
+package com.faust0z.BookLibraryAPI.service;
+
+import com.faust0z.BookLibraryAPI.entity.BookEntity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NdjsonServiceTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private NdjsonService ndjsonService;
+
+    @BeforeEach
+    void setUp() {
+        ndjsonService = new NdjsonService(new ObjectMapper());
+    }
+
+    private BookEntity book(String name, String author, LocalDate publicationDate, int copies) {
+        BookEntity book = new BookEntity();
+        book.setName(name);
+        book.setAuthor(author);
+        book.setPublicationDate(publicationDate);
+        book.setCopies(copies);
+        return book;
+    }
+
+    private String export(List<BookEntity> books) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ndjsonService.exportBooksToNdjson(books.stream(), out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private List<BookEntity> read(String ndjson, List<String> errors) throws IOException {
+        Path file = Files.writeString(tempDir.resolve("books.ndjson"), ndjson);
+        List<BookEntity> books = new ArrayList<>();
+        ndjsonService.readBooksFromNdjson(file, books::add, invalidRow -> errors.add(invalidRow.getMessage()));
+        return books;
+    }
+
+    @Test
+    void exportBooksToNdjson_ShouldWriteOneObjectPerLine() {
+        String ndjson = export(List.of(
+                book("Dune", "Frank Herbert", LocalDate.of(1965, 8, 1), 3),
+                book("Foundation", "Isaac Asimov", LocalDate.of(1951, 6, 1), 0)));
+
+        assertThat(ndjson).isEqualTo(
+                "{\"name\":\"Dune\",\"author\":\"Frank Herbert\",\"publicationDate\":\"1965-08-01\",\"copies\":3}\n" +
+                "{\"name\":\"Foundation\",\"author\":\"Isaac Asimov\",\"publicationDate\":\"1951-06-01\",\"copies\":0}\n");
+    }
+
+    @Test
+    void readBooksFromNdjson_ShouldReadWhatWasExported() throws IOException {
+        // Enough lines to span several read buffers, with values holding line breaks and non ASCII characters
+        List<BookEntity> books = IntStream.range(0, 5_000)
+                .mapToObj(i -> book("Book \"" + i + "\"\nVolume ñ " + i, "Author " + i % 7,
+                        LocalDate.of(2000, 1, 1).plusDays(i), i % 5))
+                .toList();
+        List<String> errors = new ArrayList<>();
+
+        List<BookEntity> imported = read(export(books), errors);
+
+        assertThat(errors).isEmpty();
+        assertThat(imported).hasSize(books.size());
+        for (int i = 0; i < books.size(); i++) {
+            assertThat(imported.get(i).getName()).isEqualTo(books.get(i).getName());
+            assertThat(imported.get(i).getPublicationDate()).isEqualTo(books.get(i).getPublicationDate());
+            assertThat(imported.get(i).getCopies()).isEqualTo(books.get(i).getCopies());
+        }
+    }
+
+    @Test
+    void readBooksFromNdjson_ShouldReportInvalidLinesAndKeepGoing() throws IOException {
+        String ndjson = "{\"name\":\"Dune\",\"author\":\"Frank Herbert\",\"publicationDate\":\"1965-08-01\",\"copies\":3}\n" +
+                "{\"name\":\"Foundation\"\n" +
+                "\n" +
+                "{\"name\":\"Emma\",\"author\":\"Jane Austen\",\"copies\":1}\n" +
+                "[1, 2]\n" +
+                "{\"name\":\"Solaris\",\"author\":\"Stanisław Lem\",\"publicationDate\":\"1961-01-01\",\"copies\":\"2\"}";
+        List<String> errors = new ArrayList<>();
+
+        List<BookEntity> imported = read(ndjson, errors);
+
+        assertThat(imported).extracting(BookEntity::getName).containsExactly("Dune", "Solaris");
+        assertThat(imported.get(1).getCopies()).isEqualTo(2);
+        assertThat(errors).containsExactly("Invalid JSON at row 2", "Valid Publication Date is required at row 4",
+                "Expected a JSON object at row 5");
+    }
+}
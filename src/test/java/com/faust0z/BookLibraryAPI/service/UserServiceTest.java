@@ -45,16 +45,11 @@ class UserServiceTest {
 
     @Test
     void getAllUsers_ShouldReturnListWithTwoDtos() {
-        UserEntity userEntity1 = new UserEntity();
-        UserEntity userEntity2 = new UserEntity();
-        List<UserEntity> entityList = List.of(userEntity1, userEntity2);
-
         AdminUserDTO dto1 = new AdminUserDTO();
         AdminUserDTO dto2 = new AdminUserDTO();
         List<AdminUserDTO> dtoList = List.of(dto1, dto2);
 
-        when(userRepository.findAll()).thenReturn(entityList);
-        when(userMapper.toAdminDtoList(entityList)).thenReturn(dtoList);
+        when(userRepository.findAllAdminDtos()).thenReturn(dtoList);
 
         List<AdminUserDTO> result = userService.getAllUsers();
 